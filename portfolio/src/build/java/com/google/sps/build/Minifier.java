@@ -0,0 +1,298 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.build;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Conservative minifiers for the hand-written assets of the webapp. They drop comments and
+ * redundant whitespace but never reorder or rename anything, so the output behaves exactly like
+ * the input. JavaScript keeps its line breaks, so automatic semicolon insertion is unaffected.
+ */
+final class Minifier {
+  /** Characters after which a slash starts a regular expression rather than a division. */
+  private static final String REGEX_PRECEDERS = "(,=:[!&|?{};+-*%<>~^";
+  /** Keywords after which a slash starts a regular expression rather than a division. */
+  private static final Set<String> REGEX_KEYWORDS = new HashSet<>(Arrays.asList("await", "case",
+      "delete", "do", "else", "in", "instanceof", "new", "return", "throw", "typeof", "void",
+      "yield"));
+  /** Keywords whose parenthesized condition may be followed by a regular expression. */
+  private static final Set<String> CONDITION_KEYWORDS =
+      new HashSet<>(Arrays.asList("for", "if", "while", "with"));
+
+  private Minifier() {}
+
+  static String minifyJs(String source) {
+    JsMinifier minifier = new JsMinifier(source);
+    minifier.copyCode(0, false);
+    return minifier.out.toString().trim() + "\n";
+  }
+
+  static String minifyCss(String source) {
+    StringBuilder out = new StringBuilder(source.length());
+    int i = 0;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = copyQuoted(source, i, out);
+      } else if (source.startsWith("/*", i)) {
+        int end = source.indexOf("*/", i + 2);
+        i = end < 0 ? source.length() : end + 2;
+      } else if (Character.isWhitespace(c)) {
+        while (i < source.length() && Character.isWhitespace(source.charAt(i))) {
+          i++;
+        }
+        char previous = out.length() == 0 ? '{' : out.charAt(out.length() - 1);
+        char following = i < source.length() ? source.charAt(i) : '}';
+        if ("{};,".indexOf(previous) < 0 && "{};,".indexOf(following) < 0) {
+          out.append(' ');
+        }
+      } else if (c == '}' && out.length() > 0 && out.charAt(out.length() - 1) == ';') {
+        out.setCharAt(out.length() - 1, '}');
+        i++;
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+    return out.toString();
+  }
+
+  /**
+   * Drops comments and indentation. Lines inside pre and textarea elements are left alone, since
+   * their whitespace is displayed.
+   */
+  static String minifyHtml(String source) {
+    String withoutComments = source.replaceAll("(?s)<!--(?!\\[if).*?-->", "");
+
+    StringBuilder out = new StringBuilder(withoutComments.length());
+    boolean preformatted = false;
+    for (String line : withoutComments.split("\n")) {
+      String trimmed = preformatted ? line : line.trim();
+      if (!trimmed.isEmpty() || preformatted) {
+        out.append(trimmed).append('\n');
+      }
+
+      String lower = line.toLowerCase(Locale.ROOT);
+      int opened = Math.max(lower.lastIndexOf("<pre"), lower.lastIndexOf("<textarea"));
+      int closed = Math.max(lower.lastIndexOf("</pre"), lower.lastIndexOf("</textarea"));
+      if (opened > closed) {
+        preformatted = true;
+      } else if (closed > opened) {
+        preformatted = false;
+      }
+    }
+    return out.toString();
+  }
+
+  /** Collapses a run of whitespace in JavaScript, keeping a line break if it had one. */
+  private static void appendWhitespace(StringBuilder out, boolean hasNewline) {
+    if (out.length() == 0) {
+      return;
+    }
+    char last = out.charAt(out.length() - 1);
+    if (last == '\n') {
+      return;
+    }
+    if (hasNewline) {
+      if (last == ' ') {
+        out.setLength(out.length() - 1);
+      }
+      out.append('\n');
+    } else if (last != ' ') {
+      out.append(' ');
+    }
+  }
+
+  /** Copies a string literal, including its quotes, and returns the index after it. */
+  private static int copyQuoted(String source, int start, StringBuilder out) {
+    char quote = source.charAt(start);
+    int i = start + 1;
+    while (i < source.length() && source.charAt(i) != quote) {
+      i += source.charAt(i) == '\\' ? 2 : 1;
+    }
+    int end = Math.min(i + 1, source.length());
+    out.append(source, start, end);
+    return end;
+  }
+
+  /** Copies a regular expression literal and returns the index after its closing slash. */
+  private static int copyRegex(String source, int start, StringBuilder out) {
+    int i = start + 1;
+    boolean inClass = false;
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      if (c == '\\') {
+        i += 2;
+        continue;
+      }
+      if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if ((c == '/' && !inClass) || c == '\n') {
+        break;
+      }
+      i++;
+    }
+    int end = Math.min(i + 1, source.length());
+    out.append(source, start, end);
+    return end;
+  }
+
+  /**
+   * Lexes JavaScript just far enough to tell code apart from strings, template literals, comments
+   * and regular expressions, which are all copied unchanged.
+   */
+  private static final class JsMinifier {
+    private final String source;
+    private final StringBuilder out;
+    /** For every open parenthesis, whether it holds the condition of an if, for, while or with. */
+    private final Deque<Boolean> openParens = new ArrayDeque<>();
+    /** Whether the last closing parenthesis ended such a condition, e.g. if (x) /re/.test(y). */
+    private boolean closedCondition = false;
+
+    JsMinifier(String source) {
+      this.source = source;
+      this.out = new StringBuilder(source.length());
+    }
+
+    /**
+     * Copies code from the start index until the end of the source or, inside a template
+     * substitution, until the brace that closes it.
+     *
+     * @return the index of that closing brace, or the length of the source
+     */
+    int copyCode(int start, boolean inSubstitution) {
+      int braceDepth = 0;
+      int i = start;
+      while (i < source.length()) {
+        char c = source.charAt(i);
+        char next = i + 1 < source.length() ? source.charAt(i + 1) : '\0';
+
+        if (c == '\'' || c == '"') {
+          i = copyQuoted(source, i, out);
+        } else if (c == '`') {
+          i = copyTemplate(i);
+        } else if (c == '/' && next == '/') {
+          while (i < source.length() && source.charAt(i) != '\n') {
+            i++;
+          }
+        } else if (c == '/' && next == '*') {
+          int end = source.indexOf("*/", i + 2);
+          end = end < 0 ? source.length() : end + 2;
+          appendWhitespace(out, source.substring(i, end).indexOf('\n') >= 0);
+          i = end;
+        } else if (c == '/' && startsRegex()) {
+          i = copyRegex(source, i, out);
+        } else if (Character.isWhitespace(c)) {
+          boolean hasNewline = false;
+          while (i < source.length() && Character.isWhitespace(source.charAt(i))) {
+            hasNewline |= source.charAt(i) == '\n';
+            i++;
+          }
+          appendWhitespace(out, hasNewline);
+        } else {
+          if (c == '{') {
+            braceDepth++;
+          } else if (c == '}' && braceDepth == 0 && inSubstitution) {
+            return i;
+          } else if (c == '}') {
+            braceDepth--;
+          } else if (c == '(') {
+            openParens.push(CONDITION_KEYWORDS.contains(lastWord()));
+          } else if (c == ')') {
+            closedCondition = !openParens.isEmpty() && openParens.pop();
+          }
+          out.append(c);
+          i++;
+        }
+      }
+      return i;
+    }
+
+    /**
+     * Copies a template literal and returns the index after it. Substitutions are code, which may
+     * hold strings, braces and further template literals of their own.
+     */
+    private int copyTemplate(int start) {
+      out.append('`');
+      int i = start + 1;
+      while (i < source.length()) {
+        char c = source.charAt(i);
+        if (c == '\\') {
+          out.append(source, i, Math.min(i + 2, source.length()));
+          i += 2;
+        } else if (c == '`') {
+          out.append(c);
+          return i + 1;
+        } else if (source.startsWith("${", i)) {
+          out.append("${");
+          i = copyCode(i + 2, true);
+          if (i < source.length()) {
+            out.append('}');
+            i++;
+          }
+        } else {
+          out.append(c);
+          i++;
+        }
+      }
+      return i;
+    }
+
+    private boolean startsRegex() {
+      int end = out.length() - 1;
+      while (end >= 0 && Character.isWhitespace(out.charAt(end))) {
+        end--;
+      }
+      if (end < 0) {
+        return true;
+      }
+
+      char last = out.charAt(end);
+      if (last == ')') {
+        return closedCondition;
+      }
+      if ((last == '+' || last == '-') && end > 0 && out.charAt(end - 1) == last) {
+        // A postfix increment or decrement ends an operand, so this is a division.
+        return false;
+      }
+      return REGEX_PRECEDERS.indexOf(last) >= 0 || REGEX_KEYWORDS.contains(lastWord());
+    }
+
+    /** @return the identifier or keyword at the end of the output, or "" if there is none */
+    private String lastWord() {
+      int end = out.length() - 1;
+      while (end >= 0 && Character.isWhitespace(out.charAt(end))) {
+        end--;
+      }
+      int start = end;
+      while (start >= 0 && Character.isJavaIdentifierPart(out.charAt(start))) {
+        start--;
+      }
+      // A property such as x.return is not a keyword.
+      if (start >= 0 && out.charAt(start) == '.') {
+        return "";
+      }
+      return out.substring(start + 1, end + 1);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.build;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Build step that writes smaller copies of every JPEG and PNG image in the webapp, such as
+ * images/VSE-640w.jpg, and adds a srcset listing them to each img tag, so phones download an image
+ * close to the size they display. Resizing is slow, so derivatives are cached by the hash of their
+ * source image and only made again when the image changes. Run by the exec-maven-plugin with the
+ * staged webapp directory and the cache directory as arguments, before the assets are fingerprinted.
+ */
+public final class ResponsiveImageGenerator {
+  private static final int[] WIDTHS = {320, 640, 960};
+  private static final float JPEG_QUALITY = 0.82f;
+
+  /** The content column is 650px wide, and narrower on small screens. */
+  private static final String SIZES = "(max-width: 650px) 100vw, 650px";
+
+  private static final List<String> IMAGE_EXTENSIONS = Arrays.asList(".jpg", ".jpeg", ".png");
+  private static final Pattern IMG_TAG = Pattern.compile("<img\\b[^>]*>");
+  private static final Pattern SRC_ATTRIBUTE = Pattern.compile("\\bsrc=\"([^\"]+)\"");
+
+  private final Path webappDirectory;
+  private final Path cacheDirectory;
+
+  private ResponsiveImageGenerator(Path webappDirectory, Path cacheDirectory) {
+    this.webappDirectory = webappDirectory;
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  public static void main(String[] args) throws IOException {
+    new ResponsiveImageGenerator(Paths.get(args[0]), Paths.get(args[1])).run();
+  }
+
+  private void run() throws IOException {
+    Files.createDirectories(cacheDirectory);
+
+    List<Path> pages;
+    try (Stream<Path> walk = Files.walk(webappDirectory)) {
+      pages = walk.filter(file -> file.getFileName().toString().endsWith(".html"))
+                  .filter(file -> !file.toString().contains("WEB-INF"))
+                  .collect(Collectors.toList());
+    }
+
+    for (Path page : pages) {
+      String html = new String(Files.readAllBytes(page), StandardCharsets.UTF_8);
+      Files.write(page, addSrcsets(page, html).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private String addSrcsets(Path page, String html) throws IOException {
+    Matcher tags = IMG_TAG.matcher(html);
+    StringBuffer out = new StringBuffer();
+    while (tags.find()) {
+      String tag = tags.group();
+      Matcher src = SRC_ATTRIBUTE.matcher(tag);
+      if (!tag.contains("srcset=") && src.find()) {
+        String srcset = writeDerivatives(page, src.group(1));
+        if (srcset != null) {
+          tag = tag.substring(0, src.end()) + " srcset=\"" + srcset + "\" sizes=\"" + SIZES + "\""
+              + tag.substring(src.end());
+        }
+      }
+      tags.appendReplacement(out, Matcher.quoteReplacement(tag));
+    }
+    tags.appendTail(out);
+    return out.toString();
+  }
+
+  /**
+   * Writes the derivatives of the image next to it.
+   *
+   * @return the srcset for the image, or null if it is not a local image that can be resized
+   */
+  private String writeDerivatives(Path page, String url) throws IOException {
+    String extension = url.substring(url.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    if (url.contains(":") || url.startsWith("//") || !IMAGE_EXTENSIONS.contains("." + extension)) {
+      return null;
+    }
+
+    Path image = url.startsWith("/")
+        ? webappDirectory.resolve(url.substring(1))
+        : page.resolveSibling(url);
+    if (!Files.isRegularFile(image)) {
+      return null;
+    }
+
+    byte[] original = Files.readAllBytes(image);
+    BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+    if (source == null) {
+      return null;
+    }
+
+    String baseUrl = url.substring(0, url.lastIndexOf('.'));
+    String baseName = image.getFileName().toString();
+    baseName = baseName.substring(0, baseName.lastIndexOf('.'));
+    String hash = hash(original);
+
+    List<String> candidates = new ArrayList<>();
+    for (int width : WIDTHS) {
+      if (width >= source.getWidth()) {
+        break;
+      }
+
+      // Derivatives are always JPEG, since the webapp's images are photos and charts without
+      // transparency, and JPEG is the smallest format ImageIO can write.
+      String derivativeName = baseName + "-" + width + "w.jpg";
+      Path cached = cacheDirectory.resolve(hash + "-" + width + ".jpg");
+      if (!Files.exists(cached)) {
+        writeJpeg(resize(source, width), cached);
+      }
+      Files.copy(cached, image.resolveSibling(derivativeName), StandardCopyOption.REPLACE_EXISTING);
+
+      candidates.add(baseUrl + "-" + width + "w.jpg " + width + "w");
+      System.out.println(webappDirectory.relativize(image) + " -> " + derivativeName + " ("
+          + Files.size(cached) + " bytes)");
+    }
+    if (candidates.isEmpty()) {
+      return null;
+    }
+
+    candidates.add(url + " " + source.getWidth() + "w");
+    return String.join(", ", candidates);
+  }
+
+  /**
+   * Scales the image down by halves before the last step, since a single bilinear step to a much
+   * smaller size skips most of the source pixels and looks grainy.
+   */
+  private static BufferedImage resize(BufferedImage source, int width) {
+    int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+
+    BufferedImage current = source;
+    int currentWidth = source.getWidth();
+    int currentHeight = source.getHeight();
+    do {
+      currentWidth = Math.max(width, currentWidth / 2);
+      currentHeight = Math.max(height, currentHeight / 2);
+
+      BufferedImage next =
+          new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = next.createGraphics();
+      graphics.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+      graphics.dispose();
+      current = next;
+    } while (currentWidth != width);
+    return current;
+  }
+
+  private static void writeJpeg(BufferedImage image, Path file) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(JPEG_QUALITY);
+    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+    // Written to a temporary file first, so an interrupted build never leaves a partial image in
+    // the cache.
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.deleteIfExists(temporary);
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(temporary.toFile())) {
+      writer.setOutput(out);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static String hash(byte[] content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+      StringBuilder hex = new StringBuilder();
+      for (int i = 0; i < 8; i++) {
+        hex.append(String.format("%02x", digest[i]));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is always available", e);
+    }
+  }
+}
@@ -0,0 +1,231 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.build;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build step that minifies the scripts, stylesheets and pages of the webapp and writes a copy of
+ * every script, stylesheet and image under a name containing a hash of its content, such as
+ * style.0123456789.css. References in pages and stylesheets are rewritten to the new names, and
+ * the staged appengine-web.xml gets a static-files include for each copy, so App Engine tells
+ * browsers to cache them forever. Run by the exec-maven-plugin with the staged webapp directory as
+ * its only argument.
+ */
+public final class StaticAssetFingerprinter {
+  /** Number of hex digits of the content hash that are put in file names. */
+  private static final int HASH_LENGTH = 10;
+  private static final Pattern FINGERPRINTED_NAME =
+      Pattern.compile(".+\\.[0-9a-f]{" + HASH_LENGTH + "}\\.[a-z0-9]+");
+
+  private static final List<String> IMAGE_EXTENSIONS =
+      Arrays.asList(".jpg", ".jpeg", ".png", ".gif", ".svg", ".webp", ".ico");
+
+  private static final Pattern HTML_URL_ATTRIBUTE =
+      Pattern.compile("\\b(src|href|srcset)=\"([^\"]*)\"");
+  private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+
+  private static final String STATIC_FILES_START = "<static-files>";
+  private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+  private final Path webappDirectory;
+  /** Fingerprinted file names, keyed by the original path relative to the webapp. */
+  private final Map<String, String> fingerprintedNames = new HashMap<>();
+
+  private StaticAssetFingerprinter(Path webappDirectory) {
+    this.webappDirectory = webappDirectory;
+  }
+
+  public static void main(String[] args) throws IOException {
+    new StaticAssetFingerprinter(Paths.get(args[0])).run();
+  }
+
+  private static boolean isFingerprinted(String name) {
+    return FINGERPRINTED_NAME.matcher(name).matches();
+  }
+
+  private void run() throws IOException {
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(webappDirectory)) {
+      files = walk.filter(Files::isRegularFile)
+                  .filter(file -> !file.toString().contains("WEB-INF"))
+                  .filter(file -> !isFingerprinted(file.getFileName().toString()))
+                  .collect(Collectors.toList());
+    }
+
+    // Images go first, since stylesheets refer to them, and pages go last.
+    for (Path file : filesWithExtensions(files, IMAGE_EXTENSIONS)) {
+      fingerprint(file, Files.readAllBytes(file));
+    }
+    for (Path file : filesWithExtensions(files, Arrays.asList(".css"))) {
+      String css = rewriteCssUrls(file, Minifier.minifyCss(read(file)));
+      fingerprint(file, write(file, css));
+    }
+    for (Path file : filesWithExtensions(files, Arrays.asList(".js"))) {
+      fingerprint(file, write(file, Minifier.minifyJs(read(file))));
+    }
+    for (Path file : filesWithExtensions(files, Arrays.asList(".html"))) {
+      write(file, rewriteHtmlUrls(file, Minifier.minifyHtml(read(file))));
+    }
+    addStaticFileIncludes(webappDirectory.resolve("WEB-INF/appengine-web.xml"));
+  }
+
+  private static List<Path> filesWithExtensions(List<Path> files, List<String> extensions) {
+    List<Path> matching = new ArrayList<>();
+    for (Path file : files) {
+      String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+      if (extensions.stream().anyMatch(name::endsWith)) {
+        matching.add(file);
+      }
+    }
+    return matching;
+  }
+
+  /** Writes a copy of the file named after a hash of its content. */
+  private void fingerprint(Path file, byte[] content) throws IOException {
+    String name = file.getFileName().toString();
+    int extensionStart = name.lastIndexOf('.');
+    String fingerprintedName = name.substring(0, extensionStart) + "." + hash(content)
+        + name.substring(extensionStart).toLowerCase(Locale.ROOT);
+
+    Files.write(file.resolveSibling(fingerprintedName), content);
+    fingerprintedNames.put(relativePath(file), fingerprintedName);
+    System.out.println(relativePath(file) + " -> " + fingerprintedName + " (" + content.length
+        + " bytes)");
+  }
+
+  /**
+   * Puts an include for every fingerprinted copy ahead of the existing ones, since App Engine
+   * applies the first include that matches a path.
+   */
+  private void addStaticFileIncludes(Path appengineWebXml) throws IOException {
+    String xml = read(appengineWebXml);
+    int insertAt = xml.indexOf(STATIC_FILES_START);
+    if (insertAt < 0) {
+      throw new IllegalStateException(appengineWebXml + " has no " + STATIC_FILES_START);
+    }
+    insertAt += STATIC_FILES_START.length();
+
+    StringBuilder includes = new StringBuilder();
+    for (String original : new TreeSet<>(fingerprintedNames.keySet())) {
+      String directory = original.substring(0, original.lastIndexOf('/') + 1);
+      includes.append("\n    <include path=\"/").append(directory)
+          .append(fingerprintedNames.get(original)).append("\" expiration=\"365d\">")
+          .append("<http-header name=\"Cache-Control\" value=\"").append(IMMUTABLE)
+          .append("\" /></include>");
+    }
+    write(appengineWebXml, xml.substring(0, insertAt) + includes + xml.substring(insertAt));
+  }
+
+  private String rewriteHtmlUrls(Path page, String html) {
+    Matcher matcher = HTML_URL_ATTRIBUTE.matcher(html);
+    StringBuffer out = new StringBuffer();
+    while (matcher.find()) {
+      String value = matcher.group(2);
+      if (matcher.group(1).equals("srcset")) {
+        // A srcset is a list of "url descriptor" candidates.
+        List<String> candidates = new ArrayList<>();
+        for (String candidate : value.split(",")) {
+          String[] parts = candidate.trim().split("\\s+", 2);
+          parts[0] = rewriteUrl(page, parts[0]);
+          candidates.add(String.join(" ", parts));
+        }
+        value = String.join(", ", candidates);
+      } else {
+        value = rewriteUrl(page, value);
+      }
+      matcher.appendReplacement(
+          out, Matcher.quoteReplacement(matcher.group(1) + "=\"" + value + "\""));
+    }
+    matcher.appendTail(out);
+    return out.toString();
+  }
+
+  private String rewriteCssUrls(Path stylesheet, String css) {
+    Matcher matcher = CSS_URL.matcher(css);
+    StringBuffer out = new StringBuffer();
+    while (matcher.find()) {
+      String url = rewriteUrl(stylesheet, matcher.group(2));
+      matcher.appendReplacement(
+          out, Matcher.quoteReplacement("url(" + matcher.group(1) + url + matcher.group(1) + ")"));
+    }
+    matcher.appendTail(out);
+    return out.toString();
+  }
+
+  /**
+   * @return the URL pointing at the fingerprinted copy of the file it refers to, or the URL as is
+   *         if it refers to anything else
+   */
+  private String rewriteUrl(Path referrer, String url) {
+    if (url.isEmpty() || url.contains(":") || url.startsWith("//") || url.contains("?")
+        || url.contains("#")) {
+      return url;
+    }
+
+    Path target = url.startsWith("/")
+        ? webappDirectory.resolve(url.substring(1))
+        : referrer.resolveSibling(url);
+    String fingerprintedName = fingerprintedNames.get(relativePath(target.normalize()));
+    if (fingerprintedName == null) {
+      return url;
+    }
+    return url.substring(0, url.lastIndexOf('/') + 1) + fingerprintedName;
+  }
+
+  private String relativePath(Path file) {
+    return webappDirectory.relativize(file).toString().replace('\\', '/');
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+
+  private static byte[] write(Path file, String content) throws IOException {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    Files.write(file, bytes);
+    return bytes;
+  }
+
+  private static String hash(byte[] content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.substring(0, HASH_LENGTH);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is always available", e);
+    }
+  }
+}
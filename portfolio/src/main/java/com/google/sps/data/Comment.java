@@ -0,0 +1,54 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/** A comment left on the portfolio page. */
+public final class Comment {
+  private final long id;
+  private final String body;
+  private final long timestamp;
+  private final Float sentimentScore;
+
+  public Comment(long id, String body, long timestamp) {
+    this(id, body, timestamp, null);
+  }
+
+  public Comment(long id, String body, long timestamp, Float sentimentScore) {
+    this.id = id;
+    this.body = body;
+    this.timestamp = timestamp;
+    this.sentimentScore = sentimentScore;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getBody() {
+    return body;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return the sentiment of the comment from -1 (negative) to 1 (positive), or null if it has
+   *         not been scored yet
+   */
+  public Float getSentimentScore() {
+    return sentimentScore;
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * The stored record of a comment purge job, including the checkpoint it resumes from and the lease
+ * of the instance that is running it.
+ */
+public final class PurgeJob {
+  public static final String STATE_RUNNING = "RUNNING";
+  public static final String STATE_DONE = "DONE";
+  public static final String STATE_FAILED = "FAILED";
+
+  private final long id;
+  private final String state;
+  private final long deletedCount;
+  private final long startTime;
+  private final long lastUpdate;
+  private final String cursor;
+  private final String error;
+  private final String leaseOwner;
+  private final long leaseExpiry;
+
+  public PurgeJob(long id, String state, long deletedCount, long startTime, long lastUpdate,
+      String cursor, String error, String leaseOwner, long leaseExpiry) {
+    this.id = id;
+    this.state = state;
+    this.deletedCount = deletedCount;
+    this.startTime = startTime;
+    this.lastUpdate = lastUpdate;
+    this.cursor = cursor;
+    this.error = error;
+    this.leaseOwner = leaseOwner;
+    this.leaseExpiry = leaseExpiry;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public long getDeletedCount() {
+    return deletedCount;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getLastUpdate() {
+    return lastUpdate;
+  }
+
+  /** @return the cursor of the last deleted batch, or null if no batch has been deleted yet */
+  public String getCursor() {
+    return cursor;
+  }
+
+  /** @return what made the job fail, or null if it has not failed */
+  public String getError() {
+    return error;
+  }
+
+  /** @return the instance that holds the job's lease, or null if none ever has */
+  public String getLeaseOwner() {
+    return leaseOwner;
+  }
+
+  /** @return when the lease runs out and another instance may take the job over */
+  public long getLeaseExpiry() {
+    return leaseExpiry;
+  }
+
+  /** @return whether the owner may run the job: it is running and not leased by anyone else */
+  public boolean isClaimableBy(String owner, long now) {
+    return STATE_RUNNING.equals(state) && (owner.equals(leaseOwner) || leaseExpiry <= now);
+  }
+}
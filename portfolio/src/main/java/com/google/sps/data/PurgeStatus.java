@@ -0,0 +1,38 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/** Object for holding the progress of a comment purge job that is sent to the client. */
+public class PurgeStatus {
+  long jobId;
+  String state;
+  long deletedCount;
+  long elapsedMillis;
+  double keysPerSecond;
+  String error;
+
+  public PurgeStatus(
+      long jobId, String state, long deletedCount, long elapsedMillis, String error) {
+    this.jobId = jobId;
+    this.state = state;
+    this.deletedCount = deletedCount;
+    this.elapsedMillis = elapsedMillis;
+    this.error = error;
+
+    if (elapsedMillis > 0) {
+      keysPerSecond = deletedCount * 1000.0 / elapsedMillis;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.events;
+
+import com.google.sps.util.JsonResponses;
+import com.google.sps.util.ThreadFactories;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * Pushes newly posted comments to every open Server-Sent Events stream. Each event is serialized
+ * once and queued for every client; a single thread writes the queues out with non-blocking
+ * writes, so a client that stops reading never holds up the others. An idle client costs one
+ * parked AsyncContext and an empty queue, and a client that falls more than
+ * {@link #MAX_QUEUED_EVENTS} events behind is disconnected instead of buffering without bound.
+ */
+public final class CommentBroadcaster {
+  private static final int MAX_QUEUED_EVENTS = 64;
+  private static final long HEARTBEAT_SECONDS = 20;
+  private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] CONNECTED = "retry: 5000\n\n".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] DATA_PREFIX = "data: ".getBytes(StandardCharsets.UTF_8);
+
+  private static final CommentBroadcaster INSTANCE = new CommentBroadcaster();
+
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+  private ScheduledExecutorService writer;
+
+  private CommentBroadcaster() {}
+
+  public static CommentBroadcaster getInstance() {
+    return INSTANCE;
+  }
+
+  /** Starts streaming comments to the client of an async request. */
+  public void subscribe(AsyncContext asyncContext) {
+    Subscriber subscriber = new Subscriber(asyncContext);
+    asyncContext.addListener(subscriber);
+    subscribers.add(subscriber);
+    subscriber.offer(CONNECTED);
+
+    // The container calls onWritePossible as soon as the stream can take the first event.
+    try {
+      asyncContext.getResponse().getOutputStream().setWriteListener(subscriber);
+    } catch (IOException | IllegalStateException e) {
+      subscriber.close();
+    }
+  }
+
+  /** Sends a comment to every connected client. */
+  public void publish(String comment) {
+    if (subscribers.isEmpty()) {
+      return;
+    }
+
+    byte[] event = toEvent(JsonResponses.toBytes(comment));
+    for (Subscriber subscriber : subscribers) {
+      subscriber.offer(event);
+    }
+    scheduleWrite();
+  }
+
+  private static byte[] toEvent(byte[] json) {
+    byte[] event = new byte[DATA_PREFIX.length + json.length + 2];
+    System.arraycopy(DATA_PREFIX, 0, event, 0, DATA_PREFIX.length);
+    System.arraycopy(json, 0, event, DATA_PREFIX.length, json.length);
+    event[event.length - 2] = '\n';
+    event[event.length - 1] = '\n';
+    return event;
+  }
+
+  /** Bursts of comments are coalesced into a single pass over the subscribers. */
+  private void scheduleWrite() {
+    if (writeScheduled.compareAndSet(false, true)) {
+      getWriter().execute(() -> {
+        writeScheduled.set(false);
+        writeQueuedEvents();
+      });
+    }
+  }
+
+  /** The writer thread is created lazily because App Engine thread factories need a request. */
+  private synchronized ScheduledExecutorService getWriter() {
+    if (writer == null) {
+      writer = Executors.newSingleThreadScheduledExecutor(ThreadFactories.background());
+      writer.scheduleAtFixedRate(this::sendHeartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS,
+          TimeUnit.SECONDS);
+    }
+    return writer;
+  }
+
+  private void writeQueuedEvents() {
+    for (Subscriber subscriber : subscribers) {
+      subscriber.writeQueued();
+    }
+  }
+
+  /** Lets proxies know the connection is alive, and finds clients that have gone away. */
+  private void sendHeartbeat() {
+    for (Subscriber subscriber : subscribers) {
+      subscriber.offer(HEARTBEAT);
+    }
+    writeQueuedEvents();
+  }
+
+  /**
+   * One connected client and the events that have not been written to it yet. Writes and closes
+   * are synchronized on the subscriber, so they never overlap on the same response.
+   */
+  private final class Subscriber implements AsyncListener, WriteListener {
+    private final AsyncContext asyncContext;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(MAX_QUEUED_EVENTS);
+    /** Set when the queue overflows; the next write closes the stream. */
+    private volatile boolean overflowed = false;
+    private boolean unflushed = false;
+    private boolean closed = false;
+
+    Subscriber(AsyncContext asyncContext) {
+      this.asyncContext = asyncContext;
+    }
+
+    /** Queues an event. Called from any thread, so it never touches the response. */
+    void offer(byte[] event) {
+      if (!queue.offer(event)) {
+        overflowed = true;
+      }
+    }
+
+    /**
+     * Writes queued events for as long as the stream accepts them without blocking. Whatever is
+     * left is written from {@link #onWritePossible} once the client catches up.
+     */
+    synchronized void writeQueued() {
+      if (closed) {
+        return;
+      }
+      if (overflowed) {
+        close();
+        return;
+      }
+
+      try {
+        ServletOutputStream out = asyncContext.getResponse().getOutputStream();
+        while (out.isReady()) {
+          byte[] event = queue.poll();
+          if (event != null) {
+            out.write(event);
+            unflushed = true;
+          } else if (unflushed) {
+            unflushed = false;
+            out.flush();
+          } else {
+            return;
+          }
+        }
+      } catch (IOException | IllegalStateException e) {
+        close();
+      }
+    }
+
+    synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      subscribers.remove(this);
+      try {
+        asyncContext.complete();
+      } catch (IllegalStateException e) {
+        // The request already completed or timed out.
+      }
+    }
+
+    @Override
+    public void onWritePossible() {
+      writeQueued();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      subscribers.remove(this);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+}
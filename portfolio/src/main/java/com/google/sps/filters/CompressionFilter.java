@@ -0,0 +1,130 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import java.io.IOException;
+import java.util.Locale;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Gzip-compresses servlet responses for clients that accept it, once they grow past {@link
+ * GzipResponseWrapper#MIN_COMPRESSED_SIZE}. Static files are served by App Engine, which compresses
+ * them itself.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
+      FilterChain chain) throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+    response.addHeader("Vary", "Accept-Encoding");
+    if (!acceptsGzip(request)) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    GzipResponseWrapper wrapper = new GzipResponseWrapper(response);
+    try {
+      chain.doFilter(request, wrapper);
+    } finally {
+      if (request.isAsyncStarted()) {
+        // The body is still being written, so the gzip stream is finished with the request.
+        request.getAsyncContext().addListener(new FinishOnComplete(wrapper));
+      } else {
+        wrapper.finish();
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {}
+
+  /** Finishes the compressed body of an async request once the request completes. */
+  private static final class FinishOnComplete implements AsyncListener {
+    private final GzipResponseWrapper wrapper;
+
+    FinishOnComplete(GzipResponseWrapper wrapper) {
+      this.wrapper = wrapper;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) throws IOException {
+      wrapper.finish();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {}
+
+    @Override
+    public void onError(AsyncEvent event) {}
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+
+  /**
+   * @return whether Accept-Encoding gives gzip a non-zero quality value, either by name or through
+   *         "*". An explicit gzip entry overrides "*".
+   */
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    double gzipQuality = -1;
+    double wildcardQuality = -1;
+    for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      if (name.equals("gzip")) {
+        gzipQuality = Math.max(gzipQuality, quality(parts));
+      } else if (name.equals("*")) {
+        wildcardQuality = Math.max(wildcardQuality, quality(parts));
+      }
+    }
+    return (gzipQuality >= 0 ? gzipQuality : wildcardQuality) > 0;
+  }
+
+  /** @return the q parameter of one Accept-Encoding entry, 1 if it has none, or 0 if it is bad */
+  private static double quality(String[] parts) {
+    for (int i = 1; i < parts.length; i++) {
+      String parameter = parts[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+}
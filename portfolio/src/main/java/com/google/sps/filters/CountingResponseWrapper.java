@@ -0,0 +1,155 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response that counts the size of the body as it is written, without buffering it. Text written
+ * through {@link #getWriter()} is counted in the bytes it encodes to, since comments are often not
+ * ASCII.
+ */
+class CountingResponseWrapper extends HttpServletResponseWrapper {
+  private long count = 0;
+  private ServletOutputStream outputStream;
+  private PrintWriter writer;
+
+  CountingResponseWrapper(HttpServletResponse response) {
+    super(response);
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (outputStream == null) {
+      outputStream = new CountingOutputStream(super.getOutputStream());
+    }
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      PrintWriter out = super.getWriter();
+      writer = new PrintWriter(new CountingWriter(out, Charset.forName(getCharacterEncoding())));
+    }
+    return writer;
+  }
+
+  long getCount() {
+    return count;
+  }
+
+  private class CountingOutputStream extends ServletOutputStream {
+    private final ServletOutputStream out;
+
+    CountingOutputStream(ServletOutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+      count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return out.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      out.setWriteListener(writeListener);
+    }
+  }
+
+  /**
+   * Counts as it passes text on, so the PrintWriter around it never holds anything back. UTF-8
+   * lengths are worked out from the characters; other charsets are encoded to be measured.
+   */
+  private class CountingWriter extends FilterWriter {
+    private final Charset charset;
+    private final boolean isUtf8;
+
+    CountingWriter(PrintWriter out, Charset charset) {
+      super(out);
+      this.charset = charset;
+      this.isUtf8 = charset.equals(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      out.write(c);
+      count += encodedLength(String.valueOf((char) c));
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+      out.write(chars, offset, length);
+      count += encodedLength(CharBuffer.wrap(chars, offset, length));
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+      out.write(string, offset, length);
+      count += encodedLength(string.subSequence(offset, offset + length));
+    }
+
+    private long encodedLength(CharSequence text) {
+      if (!isUtf8) {
+        return charset.encode(CharBuffer.wrap(text)).remaining();
+      }
+
+      // Each half of a surrogate pair counts 2, since the pair encodes to 4 bytes.
+      long length = 0;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (c < 0x80) {
+          length += 1;
+        } else if (c < 0x800 || Character.isSurrogate(c)) {
+          length += 2;
+        } else {
+          length += 3;
+        }
+      }
+      return length;
+    }
+  }
+}
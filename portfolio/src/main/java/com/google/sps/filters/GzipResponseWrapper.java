@@ -0,0 +1,245 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response that holds back the first {@link #MIN_COMPRESSED_SIZE} bytes of the body. Bodies that
+ * stay below that size, or that are not text, are passed through unchanged; anything larger is
+ * streamed through gzip as it is written rather than buffered in full.
+ */
+class GzipResponseWrapper extends HttpServletResponseWrapper {
+  /** Below this size the gzip header and the extra CPU cost more than they save. */
+  static final int MIN_COMPRESSED_SIZE = 1024;
+
+  private final HttpServletResponse response;
+  private ThresholdGzipOutputStream outputStream;
+  private PrintWriter writer;
+  /** The length the servlet declared, or -1; it only holds if the body goes out uncompressed. */
+  private long contentLength = -1;
+
+  GzipResponseWrapper(HttpServletResponse response) {
+    super(response);
+    this.response = response;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called");
+    }
+    return getThresholdOutputStream();
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      if (outputStream != null) {
+        throw new IllegalStateException("getOutputStream() has already been called");
+      }
+      writer = new PrintWriter(
+          new OutputStreamWriter(getThresholdOutputStream(), getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void setContentLength(int length) {
+    setContentLengthLong(length);
+  }
+
+  // The length is held back until it is known whether the body is compressed.
+  @Override
+  public void setContentLengthLong(long length) {
+    if (outputStream == null || outputStream.target == null) {
+      contentLength = length;
+    } else if (!outputStream.compressing) {
+      response.setContentLengthLong(length);
+    }
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    } else if (outputStream != null) {
+      outputStream.flush();
+    }
+  }
+
+  @Override
+  public void resetBuffer() {
+    super.resetBuffer();
+    if (outputStream != null) {
+      outputStream.discardPending();
+    }
+  }
+
+  /** Writes out whatever is still held back and completes the gzip stream. */
+  void finish() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+    if (outputStream != null) {
+      outputStream.finish();
+    }
+  }
+
+  private ThresholdGzipOutputStream getThresholdOutputStream() {
+    if (outputStream == null) {
+      outputStream = new ThresholdGzipOutputStream();
+    }
+    return outputStream;
+  }
+
+  private boolean isCompressible() {
+    String contentType = response.getContentType();
+    if (contentType == null || response.containsHeader("Content-Encoding")) {
+      return false;
+    }
+
+    contentType = contentType.toLowerCase(Locale.ROOT);
+    if (contentType.startsWith("text/event-stream")) {
+      // Events have to reach the client as soon as they are flushed.
+      return false;
+    }
+    return contentType.startsWith("text/")
+        || contentType.startsWith("application/json")
+        || contentType.startsWith("application/javascript")
+        || contentType.startsWith("image/svg+xml");
+  }
+
+  /** Output stream that decides between gzip and plain output once enough has been written. */
+  private class ThresholdGzipOutputStream extends ServletOutputStream {
+    private final byte[] pending = new byte[MIN_COMPRESSED_SIZE];
+    private int pendingCount = 0;
+    private OutputStream target;
+    private boolean compressing = false;
+    private boolean nonBlocking = false;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (target == null && pendingCount + length <= pending.length) {
+        System.arraycopy(bytes, offset, pending, pendingCount, length);
+        pendingCount += length;
+        return;
+      }
+
+      if (target == null) {
+        chooseTarget(true);
+      }
+      target.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      // Holding back a small compressible body is fine, but anything else must go out now.
+      if (target == null && !isCompressible()) {
+        chooseTarget(false);
+      }
+      if (target != null) {
+        target.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      finish();
+    }
+
+    @Override
+    public boolean isReady() {
+      if (target == null || compressing) {
+        return true;
+      }
+      try {
+        return response.getOutputStream().isReady();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Switches to non-blocking writes. Those can't be held back or compressed, so the body goes
+     * out as it is, and the container's stream does the work.
+     */
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      try {
+        if (target == null) {
+          chooseTarget(false);
+        }
+        if (compressing) {
+          throw new IllegalStateException("The body is already being compressed");
+        }
+        nonBlocking = true;
+        response.getOutputStream().setWriteListener(writeListener);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    void discardPending() {
+      pendingCount = 0;
+    }
+
+    void finish() throws IOException {
+      if (nonBlocking) {
+        // The servlet writes and flushes through its listener, and completing the request
+        // closes the stream.
+        return;
+      }
+      if (target == null) {
+        chooseTarget(false);
+      }
+      if (target instanceof GZIPOutputStream) {
+        ((GZIPOutputStream) target).finish();
+      }
+      target.flush();
+    }
+
+    private void chooseTarget(boolean largeEnough) throws IOException {
+      if (largeEnough && isCompressible()) {
+        response.setHeader("Content-Encoding", "gzip");
+        target = new GZIPOutputStream(response.getOutputStream(), 8192);
+        compressing = true;
+      } else {
+        if (contentLength >= 0) {
+          response.setContentLengthLong(contentLength);
+        }
+        target = response.getOutputStream();
+      }
+
+      target.write(pending, 0, pendingCount);
+      pendingCount = 0;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import com.google.sps.metrics.Counter;
+import com.google.sps.metrics.Histogram;
+import com.google.sps.metrics.MetricFamily;
+import com.google.sps.metrics.MetricsRegistry;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the latency, response size and status of every request, labeled by the servlet that
+ * handled it. Requests for static files share one "static" label so the number of series stays
+ * fixed. Long-lived async requests, such as the comment stream, are only counted, not timed.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+  private static final String STATIC_ENDPOINT = "static";
+
+  private static final MetricFamily<Histogram> REQUEST_SECONDS =
+      MetricsRegistry.getInstance().histogram("sps_http_request_duration_seconds",
+          "Time spent handling requests.", MetricsRegistry.LATENCY_BUCKETS, "endpoint");
+  private static final MetricFamily<Histogram> RESPONSE_BYTES =
+      MetricsRegistry.getInstance().histogram("sps_http_response_size_bytes",
+          "Size of response bodies.", MetricsRegistry.SIZE_BUCKETS, "endpoint");
+  private static final MetricFamily<Counter> RESPONSES =
+      MetricsRegistry.getInstance().counter("sps_http_responses_total",
+          "Responses sent, by status class.", "endpoint", "status");
+
+  private final Set<String> servletPaths = new HashSet<>();
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+    for (ServletRegistration registration :
+        filterConfig.getServletContext().getServletRegistrations().values()) {
+      servletPaths.addAll(registration.getMappings());
+    }
+  }
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
+      FilterChain chain) throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    CountingResponseWrapper response =
+        new CountingResponseWrapper((HttpServletResponse) servletResponse);
+
+    long startNanos = System.nanoTime();
+    boolean failed = true;
+    try {
+      chain.doFilter(request, response);
+      failed = false;
+    } finally {
+      String endpoint = getEndpoint(request);
+      int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+      RESPONSES.labels(endpoint, status / 100 + "xx").increment();
+
+      if (!request.isAsyncStarted()) {
+        REQUEST_SECONDS.labels(endpoint).observeSecondsSince(startNanos);
+        RESPONSE_BYTES.labels(endpoint).observe(response.getCount());
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {}
+
+  private String getEndpoint(HttpServletRequest request) {
+    String servletPath = request.getServletPath();
+    return servletPaths.contains(servletPath) ? servletPath : STATIC_ENDPOINT;
+  }
+}
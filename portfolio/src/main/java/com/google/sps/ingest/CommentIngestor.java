@@ -0,0 +1,107 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.ingest;
+
+import com.google.sps.data.Comment;
+import com.google.sps.events.CommentBroadcaster;
+import com.google.sps.metrics.Counter;
+import com.google.sps.metrics.MetricFamily;
+import com.google.sps.metrics.MetricsRegistry;
+import com.google.sps.moderation.ModerationQueue;
+import com.google.sps.search.CommentIndex;
+import com.google.sps.storage.Repositories;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks submitted comments before they are stored. Each client IP, and each logged-in user, may
+ * post a few comments in a burst and then one every {@link #INTERVAL_SECONDS} seconds, and text
+ * that was already posted in the last {@link #DUPLICATE_WINDOW_MINUTES} minutes is dropped. Both
+ * checks are in memory, so rejected submissions cost no storage I/O.
+ */
+public final class CommentIngestor {
+  private static final int BURST = 5;
+  private static final long INTERVAL_SECONDS = 10;
+  private static final long DUPLICATE_WINDOW_MINUTES = 10;
+
+  private static final MetricFamily<Counter> SUBMISSIONS =
+      MetricsRegistry.getInstance().counter("sps_comment_submissions_total",
+          "Submitted comments, by outcome.", "outcome");
+
+  private static final CommentIngestor INSTANCE = new CommentIngestor();
+
+  /** What happened to a submitted comment. */
+  public enum Outcome {
+    ACCEPTED,
+    RATE_LIMITED,
+    DUPLICATE
+  }
+
+  private final RateLimiter ipLimiter = new RateLimiter(BURST, INTERVAL_SECONDS, TimeUnit.SECONDS);
+  private final RateLimiter userLimiter =
+      new RateLimiter(BURST, INTERVAL_SECONDS, TimeUnit.SECONDS);
+  private final DuplicateFilter duplicates =
+      new DuplicateFilter(DUPLICATE_WINDOW_MINUTES, TimeUnit.MINUTES);
+
+  private CommentIngestor() {}
+
+  public static CommentIngestor getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Stores the comment, indexes it, sends it to live clients and queues it for moderation,
+   * unless it is rejected.
+   *
+   * @param userId the ID of the logged-in user, or null for anonymous comments
+   */
+  public Outcome submit(String clientIp, String userId, String body, long timestamp) {
+    Outcome outcome = check(clientIp, userId, body);
+    SUBMISSIONS.labels(outcome.name().toLowerCase(Locale.ROOT)).increment();
+    if (outcome != Outcome.ACCEPTED) {
+      return outcome;
+    }
+
+    Comment comment;
+    try {
+      comment = Repositories.comments().add(body, timestamp);
+    } catch (RuntimeException e) {
+      duplicates.forget(body);
+      throw e;
+    }
+    CommentIndex.getInstance().add(comment.getId(), body);
+    CommentBroadcaster.getInstance().publish(body);
+    ModerationQueue.getInstance().enqueue(comment);
+    return outcome;
+  }
+
+  /** @return how long a client that was just rate limited should wait before retrying */
+  public static long getRetryAfterSeconds() {
+    return INTERVAL_SECONDS;
+  }
+
+  private Outcome check(String clientIp, String userId, String body) {
+    if (!ipLimiter.tryAcquire(clientIp)) {
+      return Outcome.RATE_LIMITED;
+    }
+    if (userId != null && !userLimiter.tryAcquire(userId)) {
+      return Outcome.RATE_LIMITED;
+    }
+    if (!duplicates.tryRecord(body)) {
+      return Outcome.DUPLICATE;
+    }
+    return Outcome.ACCEPTED;
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.ingest;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers a hash of every comment accepted within a sliding window, so the same text posted
+ * again, by anyone, is caught without reading storage. Case and surrounding or repeated whitespace
+ * are ignored when comparing.
+ */
+final class DuplicateFilter {
+  private static final int SWEEP_THRESHOLD = 10_000;
+
+  private final long windowNanos;
+  private final Map<HashCode, Long> seenAtNanos = new ConcurrentHashMap<>();
+
+  DuplicateFilter(long window, TimeUnit unit) {
+    this.windowNanos = unit.toNanos(window);
+  }
+
+  /**
+   * Records the body unless an equivalent one was recorded within the window.
+   *
+   * @return whether the body was recorded, i.e. is not a duplicate
+   */
+  boolean tryRecord(String body) {
+    long now = System.nanoTime();
+    if (seenAtNanos.size() >= SWEEP_THRESHOLD) {
+      seenAtNanos.values().removeIf(seenAt -> now - seenAt > windowNanos);
+    }
+
+    HashCode hash = hash(body);
+    boolean[] recorded = {false};
+    seenAtNanos.compute(hash, (unused, seenAt) -> {
+      if (seenAt != null && now - seenAt <= windowNanos) {
+        return seenAt;
+      }
+      recorded[0] = true;
+      return now;
+    });
+    return recorded[0];
+  }
+
+  /** Forgets the body, e.g. because storing it failed and the client may retry. */
+  void forget(String body) {
+    seenAtNanos.remove(hash(body));
+  }
+
+  private static HashCode hash(String body) {
+    String normalized = body.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    return Hashing.sha256().hashString(normalized, StandardCharsets.UTF_8);
+  }
+}
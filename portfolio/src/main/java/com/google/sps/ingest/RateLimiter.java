@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.ingest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket rate limiter keyed by client, using the generic cell rate algorithm: each key holds
+ * only the time at which its bucket will be full again, updated with a compare-and-set. Keys are
+ * spread over the stripes of a ConcurrentHashMap, so checks for different clients never contend.
+ */
+final class RateLimiter {
+  /** Idle keys are swept once the map grows past this, since a full bucket needs no state. */
+  private static final int SWEEP_THRESHOLD = 10_000;
+
+  private final long intervalNanos;
+  private final long burstNanos;
+  private final Map<String, AtomicLong> fullAtNanos = new ConcurrentHashMap<>();
+
+  /**
+   * @param burst how many requests a client with a full bucket may make at once
+   * @param interval how often the bucket gains a token back
+   */
+  RateLimiter(int burst, long interval, TimeUnit unit) {
+    this.intervalNanos = unit.toNanos(interval);
+    this.burstNanos = burst * intervalNanos;
+  }
+
+  /**
+   * Takes a token for the key. A rejected client gets a token back within one interval.
+   *
+   * @return whether the request is allowed
+   */
+  boolean tryAcquire(String key) {
+    long now = System.nanoTime();
+    AtomicLong fullAt = fullAtNanos.get(key);
+    if (fullAt == null) {
+      if (fullAtNanos.size() >= SWEEP_THRESHOLD) {
+        sweep(now);
+      }
+      fullAt = fullAtNanos.computeIfAbsent(key, unused -> new AtomicLong(now));
+    }
+
+    while (true) {
+      long current = fullAt.get();
+      long next = Math.max(current, now) + intervalNanos;
+      if (next - now > burstNanos) {
+        return false;
+      }
+      if (fullAt.compareAndSet(current, next)) {
+        return true;
+      }
+    }
+  }
+
+  private void sweep(long now) {
+    fullAtNanos.values().removeIf(fullAt -> fullAt.get() - now <= 0);
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.jobs;
+
+import com.google.sps.data.PurgeJob;
+import com.google.sps.data.PurgeStatus;
+import com.google.sps.search.CommentIndex;
+import com.google.sps.storage.CommentRepository;
+import com.google.sps.storage.CommentRepository.DeletedBatch;
+import com.google.sps.storage.PurgeJobRepository;
+import com.google.sps.storage.Repositories;
+import com.google.sps.util.ThreadFactories;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Deletes all comments in the background. Every job is recorded in a {@link PurgeJobRepository}
+ * together with the cursor of the last deleted batch, so a job that was interrupted by a restart
+ * picks up where it left off.
+ *
+ * <p>Several instances may try to run the same job, so an instance first claims the job's lease
+ * and renews it with every checkpoint. If it goes away, the lease runs out after
+ * {@link #LEASE_MILLIS} and the next instance to start, or to be asked for the job's status,
+ * takes the job over.
+ */
+public final class PurgeJobRunner {
+  private static final int BATCH_SIZE = 500;
+  /** Much longer than one batch takes, so a running job never loses its lease. */
+  private static final long LEASE_MILLIS = 2 * 60 * 1000;
+
+  private static final PurgeJobRunner INSTANCE = new PurgeJobRunner();
+
+  /** Names this instance as the holder of job leases. */
+  private final String owner = UUID.randomUUID().toString();
+  /** The jobs this instance is running, so it doesn't run one twice itself. */
+  private final Set<Long> activeJobIds = ConcurrentHashMap.newKeySet();
+  private ExecutorService executor;
+
+  private PurgeJobRunner() {}
+
+  public static PurgeJobRunner getInstance() {
+    return INSTANCE;
+  }
+
+  /** Records a new purge job, starts it in the background, and returns its initial status. */
+  public PurgeStatus enqueue() {
+    long now = System.currentTimeMillis();
+    PurgeJob job = Repositories.purgeJobs().add(now, owner, now + LEASE_MILLIS);
+
+    submit(job.getId());
+    return toStatus(job, now);
+  }
+
+  /** Takes over every job whose instance went away while running it. */
+  public void resumeUnfinishedJobs() {
+    for (long jobId : Repositories.purgeJobs().getRunningJobIds()) {
+      submit(jobId);
+    }
+  }
+
+  /**
+   * @return the status of the job, or null if there is no job with that ID. A job whose lease ran
+   *         out is taken over, so clients waiting for it keep it going.
+   */
+  public PurgeStatus getStatus(long jobId) {
+    PurgeJob job = Repositories.purgeJobs().get(jobId);
+    if (job == null) {
+      return null;
+    }
+
+    long now = System.currentTimeMillis();
+    if (job.isClaimableBy(owner, now) && job.getLeaseExpiry() <= now) {
+      submit(jobId);
+    }
+    return toStatus(job, now);
+  }
+
+  private void submit(long jobId) {
+    if (activeJobIds.add(jobId)) {
+      getExecutor().execute(() -> {
+        try {
+          run(jobId);
+        } finally {
+          activeJobIds.remove(jobId);
+        }
+      });
+    }
+  }
+
+  /** The executor is created lazily because App Engine thread factories need a request. */
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(ThreadFactories.background());
+    }
+    return executor;
+  }
+
+  private void run(long jobId) {
+    PurgeJobRepository jobs = Repositories.purgeJobs();
+    long now = System.currentTimeMillis();
+    PurgeJob job = jobs.claim(jobId, owner, now, now + LEASE_MILLIS);
+    if (job == null) {
+      // Finished, or running on another instance.
+      return;
+    }
+
+    String cursor = job.getCursor();
+    long deletedCount = job.getDeletedCount();
+
+    CommentRepository comments = Repositories.comments();
+    try {
+      while (true) {
+        DeletedBatch batch = comments.deleteBatch(cursor, BATCH_SIZE);
+        if (batch.getDeletedCount() == 0) {
+          break;
+        }
+
+        deletedCount += batch.getDeletedCount();
+        cursor = batch.getCursor();
+        // Comments posted while the purge runs are indexed, so only what was deleted is removed.
+        CommentIndex.getInstance().remove(batch.getDeletedIds());
+
+        // Checkpoint after every batch so a restart only repeats the current one.
+        job = withProgress(job, PurgeJob.STATE_RUNNING, deletedCount, cursor, null);
+        if (!jobs.update(job)) {
+          System.err.println("Purge job " + jobId + " was taken over by another instance");
+          return;
+        }
+      }
+
+      jobs.update(withProgress(job, PurgeJob.STATE_DONE, deletedCount, cursor, null));
+    } catch (RuntimeException e) {
+      System.err.println("Purge job " + jobId + " stopped after " + deletedCount
+          + " deletions: " + e);
+      markFailed(jobs, job, e);
+    }
+  }
+
+  /**
+   * Records that the job failed so clients stop waiting for it. If even that write fails, the job
+   * stays RUNNING and is retried from its last checkpoint on the next restart.
+   */
+  private static void markFailed(PurgeJobRepository jobs, PurgeJob job, Exception cause) {
+    try {
+      jobs.update(withProgress(job, PurgeJob.STATE_FAILED, job.getDeletedCount(),
+          job.getCursor(), cause.toString()));
+    } catch (RuntimeException e) {
+      System.err.println("Could not mark purge job " + job.getId() + " as failed: " + e);
+    }
+  }
+
+  /** @return the job with new progress, and its lease renewed */
+  private static PurgeJob withProgress(
+      PurgeJob job, String state, long deletedCount, String cursor, String error) {
+    long now = System.currentTimeMillis();
+    return new PurgeJob(job.getId(), state, deletedCount, job.getStartTime(), now, cursor, error,
+        job.getLeaseOwner(), now + LEASE_MILLIS);
+  }
+
+  private static PurgeStatus toStatus(PurgeJob job, long now) {
+    long endTime = PurgeJob.STATE_RUNNING.equals(job.getState()) ? now : job.getLastUpdate();
+    return new PurgeStatus(job.getId(), job.getState(), job.getDeletedCount(),
+        endTime - job.getStartTime(), job.getError());
+  }
+}
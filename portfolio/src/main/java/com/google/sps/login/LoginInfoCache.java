@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.login;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.api.users.UserService;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.sps.data.LoginInfo;
+import com.google.sps.util.JsonResponses;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Caches the serialized {@link LoginInfo} sent to the client. Logged-out visitors all share one
+ * precomputed response per origin, and logged-in users get a short-lived entry keyed by user ID,
+ * which is dropped as soon as a request shows that user has logged out.
+ */
+public final class LoginInfoCache {
+  private static final String REDIRECT_URL = "/";
+  private static final String USER_ID_ATTRIBUTE = "loginInfoCache.userId";
+  private static final long USER_TTL_SECONDS = 60;
+
+  // The origin comes from the Host header, so only a handful of them are remembered.
+  private static final int MAX_ORIGINS = 16;
+  private static final int MAX_USERS = 10_000;
+
+  private static final LoginInfoCache INSTANCE = new LoginInfoCache();
+
+  private final Cache<String, byte[]> anonymousResponses =
+      CacheBuilder.newBuilder().maximumSize(MAX_ORIGINS).build();
+  private final Cache<String, byte[]> userResponses =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_USERS)
+          .expireAfterWrite(USER_TTL_SECONDS, TimeUnit.SECONDS)
+          .build();
+
+  private LoginInfoCache() {}
+
+  public static LoginInfoCache getInstance() {
+    return INSTANCE;
+  }
+
+  /** @return the login information for the user making the request, serialized as JSON */
+  public byte[] getLoginInfoJson(HttpServletRequest request) {
+    UserService userService = UserServices.get();
+    String origin = getOrigin(request);
+
+    if (!userService.isUserLoggedIn()) {
+      forgetLoggedOutUser(request);
+      return get(anonymousResponses, origin,
+          () -> new LoginInfo(userService.createLoginURL(REDIRECT_URL)));
+    }
+
+    User user = userService.getCurrentUser();
+    rememberLoggedInUser(request, user.getUserId());
+    return get(userResponses, user.getUserId() + " " + origin,
+        () -> new LoginInfo(userService.createLogoutURL(REDIRECT_URL), user.getEmail(),
+            userService.isUserAdmin()));
+  }
+
+  /** Drops every cached response for the user. */
+  public void invalidate(String userId) {
+    userResponses.asMap().keySet().removeIf(key -> key.startsWith(userId + " "));
+  }
+
+  private static byte[] get(Cache<String, byte[]> cache, String key, LoginInfoLoader loader) {
+    try {
+      return cache.get(key, () -> JsonResponses.toBytes(loader.load()));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Could not build login info", e.getCause());
+    }
+  }
+
+  /**
+   * Logging out happens on the Users service's own pages, so the session is how the next request
+   * learns which user just logged out.
+   */
+  private void forgetLoggedOutUser(HttpServletRequest request) {
+    HttpSession session = request.getSession(false);
+    if (session == null) {
+      return;
+    }
+
+    String userId = (String) session.getAttribute(USER_ID_ATTRIBUTE);
+    if (userId != null) {
+      invalidate(userId);
+      session.removeAttribute(USER_ID_ATTRIBUTE);
+    }
+  }
+
+  private static void rememberLoggedInUser(HttpServletRequest request, String userId) {
+    HttpSession session = request.getSession();
+
+    // Only write on change, since every attribute update is persisted with the session.
+    if (!userId.equals(session.getAttribute(USER_ID_ATTRIBUTE))) {
+      session.setAttribute(USER_ID_ATTRIBUTE, userId);
+    }
+  }
+
+  /** The login and logout URLs point back at the host the request was made to. */
+  private static String getOrigin(HttpServletRequest request) {
+    return request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort();
+  }
+
+  private interface LoginInfoLoader {
+    LoginInfo load();
+  }
+}
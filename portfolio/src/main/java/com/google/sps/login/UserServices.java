@@ -0,0 +1,83 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.login;
+
+import com.google.appengine.api.users.User;
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import com.google.apphosting.api.ApiProxy;
+import java.util.Set;
+
+/**
+ * Provides the Users service. Outside App Engine, for example when running with
+ * -Dsps.storage=memory on a plain machine, there is no API environment to call it through, so every
+ * visitor is treated as logged out.
+ */
+public final class UserServices {
+  private static final UserService LOGGED_OUT = new LoggedOutUserService();
+
+  private UserServices() {}
+
+  public static UserService get() {
+    if (ApiProxy.getCurrentEnvironment() != null) {
+      return UserServiceFactory.getUserService();
+    }
+    return LOGGED_OUT;
+  }
+
+  /** Stand-in for the Users service that has nobody logged in; its links lead straight back. */
+  private static final class LoggedOutUserService implements UserService {
+    @Override
+    public String createLoginURL(String destinationUrl) {
+      return destinationUrl;
+    }
+
+    @Override
+    public String createLoginURL(String destinationUrl, String authDomain) {
+      return destinationUrl;
+    }
+
+    @Override
+    public String createLoginURL(String destinationUrl, String authDomain,
+        String federatedIdentity, Set<String> attributesRequest) {
+      return destinationUrl;
+    }
+
+    @Override
+    public String createLogoutURL(String destinationUrl) {
+      return destinationUrl;
+    }
+
+    @Override
+    public String createLogoutURL(String destinationUrl, String authDomain) {
+      return destinationUrl;
+    }
+
+    @Override
+    public boolean isUserLoggedIn() {
+      return false;
+    }
+
+    @Override
+    public boolean isUserAdmin() {
+      throw new IllegalStateException("The current user is not logged in");
+    }
+
+    @Override
+    public User getCurrentUser() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** A count that only goes up, such as the number of failed requests. */
+public final class Counter implements Metric {
+  private final LongAdder count = new LongAdder();
+
+  public void increment() {
+    count.increment();
+  }
+
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  @Override
+  public void writeTo(StringBuilder out, String name, String labels) {
+    out.append(name).append(labels).append(' ').append(count.sum()).append('\n');
+  }
+}
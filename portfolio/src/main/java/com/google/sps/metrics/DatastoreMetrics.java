@@ -0,0 +1,52 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.util.function.Supplier;
+
+/** Times Datastore calls and counts the ones that fail, labeled by operation. */
+public final class DatastoreMetrics {
+  private static final MetricFamily<Histogram> CALL_SECONDS =
+      MetricsRegistry.getInstance().histogram("sps_datastore_call_duration_seconds",
+          "Time spent in Datastore calls.", MetricsRegistry.LATENCY_BUCKETS, "operation");
+  private static final MetricFamily<Counter> CALL_ERRORS =
+      MetricsRegistry.getInstance().counter("sps_datastore_call_errors_total",
+          "Datastore calls that threw an exception.", "operation");
+
+  private DatastoreMetrics() {}
+
+  /**
+   * Runs the call and records how long it took. Lazy query results should be consumed inside the
+   * call, since that is when Datastore is actually read.
+   */
+  public static <T> T time(String operation, Supplier<T> call) {
+    long startNanos = System.nanoTime();
+    try {
+      return call.get();
+    } catch (RuntimeException e) {
+      CALL_ERRORS.labels(operation).increment();
+      throw e;
+    } finally {
+      CALL_SECONDS.labels(operation).observeSecondsSince(startNanos);
+    }
+  }
+
+  public static void time(String operation, Runnable call) {
+    time(operation, () -> {
+      call.run();
+      return null;
+    });
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts observations into fixed buckets. Recording is a short scan of the bucket bounds and two
+ * uncontended adds, so it is cheap enough for every request; the buckets are only made cumulative,
+ * as Prometheus expects, when they are scraped.
+ */
+public final class Histogram implements Metric {
+  private final double[] upperBounds;
+  private final LongAdder[] bucketCounts;
+  private final DoubleAdder sum = new DoubleAdder();
+
+  /** @param upperBounds the inclusive upper bound of each bucket, in increasing order */
+  Histogram(double[] upperBounds) {
+    this.upperBounds = upperBounds;
+
+    // The last bucket holds everything above the highest bound.
+    bucketCounts = new LongAdder[upperBounds.length + 1];
+    for (int i = 0; i < bucketCounts.length; i++) {
+      bucketCounts[i] = new LongAdder();
+    }
+  }
+
+  public void observe(double value) {
+    int bucket = 0;
+    while (bucket < upperBounds.length && value > upperBounds[bucket]) {
+      bucket++;
+    }
+    bucketCounts[bucket].increment();
+    sum.add(value);
+  }
+
+  /** Records the time since startNanos, from {@link System#nanoTime()}, in seconds. */
+  public void observeSecondsSince(long startNanos) {
+    observe((System.nanoTime() - startNanos) / 1e9);
+  }
+
+  @Override
+  public void writeTo(StringBuilder out, String name, String labels) {
+    // Inserts the le label after any existing ones, e.g. {endpoint="/data",le="0.1"}.
+    String labelPrefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+
+    long cumulativeCount = 0;
+    for (int i = 0; i < bucketCounts.length; i++) {
+      cumulativeCount += bucketCounts[i].sum();
+      String bound = i < upperBounds.length ? Double.toString(upperBounds[i]) : "+Inf";
+      out.append(name).append("_bucket").append(labelPrefix).append("le=\"").append(bound)
+          .append("\"} ").append(cumulativeCount).append('\n');
+    }
+    out.append(name).append("_sum").append(labels).append(' ').append(sum.sum()).append('\n');
+    out.append(name).append("_count").append(labels).append(' ').append(cumulativeCount)
+        .append('\n');
+  }
+}
@@ -0,0 +1,25 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+/** A single time series, or a group of them such as the buckets of a histogram. */
+interface Metric {
+  /**
+   * Appends the samples in Prometheus text format.
+   *
+   * @param labels the label pairs of this series, already formatted, or "" if there are none
+   */
+  void writeTo(StringBuilder out, String name, String labels);
+}
@@ -0,0 +1,94 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/** A named metric and its series, one for each combination of label values seen so far. */
+public final class MetricFamily<T extends Metric> {
+  private final String name;
+  private final String help;
+  private final String type;
+  private final String[] labelNames;
+  private final Supplier<T> factory;
+  private final Map<String, T> series = new ConcurrentHashMap<>();
+
+  MetricFamily(String name, String help, String type, String[] labelNames, Supplier<T> factory) {
+    this.name = name;
+    this.help = help;
+    this.type = type;
+    this.labelNames = labelNames;
+    this.factory = factory;
+  }
+
+  /**
+   * @param labelValues one value for each label name the family was registered with. Every
+   *        distinct combination is kept forever, so values must come from a small, fixed set.
+   * @return the series for the label values, created on first use
+   */
+  public T labels(String... labelValues) {
+    if (labelValues.length != labelNames.length) {
+      throw new IllegalArgumentException(
+          name + " expects " + labelNames.length + " label values, got " + labelValues.length);
+    }
+
+    String key = formatLabels(labelValues);
+    T metric = series.get(key);
+    if (metric == null) {
+      metric = series.computeIfAbsent(key, unused -> factory.get());
+    }
+    return metric;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  void writeTo(StringBuilder out) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    for (Map.Entry<String, T> entry : series.entrySet()) {
+      entry.getValue().writeTo(out, name, entry.getKey());
+    }
+  }
+
+  /** The formatted label pairs double as the key of the series. */
+  private String formatLabels(String[] labelValues) {
+    if (labelValues.length == 0) {
+      return "";
+    }
+
+    StringBuilder labels = new StringBuilder("{");
+    for (int i = 0; i < labelValues.length; i++) {
+      if (i > 0) {
+        labels.append(',');
+      }
+      labels.append(labelNames[i]).append("=\"");
+      for (char c : labelValues[i].toCharArray()) {
+        if (c == '\\' || c == '"') {
+          labels.append('\\').append(c);
+        } else if (c == '\n') {
+          labels.append("\\n");
+        } else {
+          labels.append(c);
+        }
+      }
+      labels.append('"');
+    }
+    return labels.append('}').toString();
+  }
+}
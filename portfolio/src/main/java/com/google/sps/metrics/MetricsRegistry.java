@@ -0,0 +1,68 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds every metric the app records, so they can be exposed together in the Prometheus text
+ * format. Metrics are registered once, usually as static fields of the class that records them.
+ */
+public final class MetricsRegistry {
+  /** Bounds for request and Datastore latencies, in seconds. */
+  public static final double[] LATENCY_BUCKETS =
+      {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+  /** Bounds for payload sizes, in bytes. */
+  public static final double[] SIZE_BUCKETS =
+      {128, 512, 2048, 8192, 32768, 131072, 524288, 2097152};
+
+  private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+  private final Map<String, MetricFamily<?>> families = new ConcurrentHashMap<>();
+
+  private MetricsRegistry() {}
+
+  public static MetricsRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  public MetricFamily<Counter> counter(String name, String help, String... labelNames) {
+    return register(new MetricFamily<>(name, help, "counter", labelNames, Counter::new));
+  }
+
+  public MetricFamily<Histogram> histogram(
+      String name, String help, double[] upperBounds, String... labelNames) {
+    return register(new MetricFamily<>(name, help, "histogram", labelNames,
+        () -> new Histogram(upperBounds)));
+  }
+
+  /** @return every registered metric in the Prometheus text exposition format */
+  public String scrape() {
+    StringBuilder out = new StringBuilder();
+    for (MetricFamily<?> family : families.values()) {
+      family.writeTo(out);
+    }
+    return out.toString();
+  }
+
+  private <T extends Metric> MetricFamily<T> register(MetricFamily<T> family) {
+    String name = family.getName();
+    if (families.putIfAbsent(name, family) != null) {
+      throw new IllegalStateException("Metric " + name + " is already registered");
+    }
+    return family;
+  }
+}
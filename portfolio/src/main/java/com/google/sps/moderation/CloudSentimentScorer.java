@@ -0,0 +1,55 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.moderation;
+
+import com.google.cloud.language.v1.Document;
+import com.google.cloud.language.v1.LanguageServiceClient;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scores texts with the Cloud Natural Language API. The API analyzes one document per call, so a
+ * batch is a run of calls over a single client that is kept open, instead of a new client and
+ * connection for every comment.
+ */
+final class CloudSentimentScorer implements SentimentScorer {
+  private LanguageServiceClient client;
+
+  @Override
+  public List<Float> score(List<String> texts) {
+    LanguageServiceClient languageService = getClient();
+
+    List<Float> scores = new ArrayList<>(texts.size());
+    for (String text : texts) {
+      Document doc =
+          Document.newBuilder().setContent(text).setType(Document.Type.PLAIN_TEXT).build();
+      scores.add(languageService.analyzeSentiment(doc).getDocumentSentiment().getScore());
+    }
+    return scores;
+  }
+
+  private synchronized LanguageServiceClient getClient() {
+    if (client == null) {
+      try {
+        client = LanguageServiceClient.create();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not create Natural Language client", e);
+      }
+    }
+    return client;
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.moderation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Scores texts by counting words from short lists of positive and negative words. It stands in for
+ * the Natural Language API when running locally or under load tests, where the cloud calls would
+ * be slow, cost money, or need credentials.
+ */
+final class LexiconSentimentScorer implements SentimentScorer {
+  private static final Set<String> POSITIVE_WORDS = new HashSet<>(Arrays.asList(
+      "amazing", "awesome", "beautiful", "best", "brilliant", "cool", "enjoy", "excellent", "fun",
+      "good", "great", "happy", "helpful", "interesting", "like", "love", "nice", "thanks",
+      "wonderful"));
+  private static final Set<String> NEGATIVE_WORDS = new HashSet<>(Arrays.asList(
+      "angry", "annoying", "awful", "bad", "boring", "broken", "dislike", "hate", "horrible",
+      "sad", "stupid", "terrible", "ugly", "useless", "worst", "wrong"));
+
+  @Override
+  public List<Float> score(List<String> texts) {
+    List<Float> scores = new ArrayList<>(texts.size());
+    for (String text : texts) {
+      scores.add(score(text));
+    }
+    return scores;
+  }
+
+  private static float score(String text) {
+    int positive = 0;
+    int negative = 0;
+    for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}']+")) {
+      if (POSITIVE_WORDS.contains(word)) {
+        positive++;
+      } else if (NEGATIVE_WORDS.contains(word)) {
+        negative++;
+      }
+    }
+
+    if (positive + negative == 0) {
+      return 0;
+    }
+    return (float) (positive - negative) / (positive + negative);
+  }
+}
@@ -0,0 +1,201 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.moderation;
+
+import com.google.sps.data.Comment;
+import com.google.sps.metrics.Counter;
+import com.google.sps.metrics.MetricFamily;
+import com.google.sps.metrics.MetricsRegistry;
+import com.google.sps.storage.CommentRepository;
+import com.google.sps.storage.Repositories;
+import com.google.sps.util.ThreadFactories;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores the sentiment of new comments in the background, so posting a comment never waits for
+ * analysis. Comments that arrive close together are scored as one batch, and each score is then
+ * stored in a transaction of its own. A batch that fails is queued again, up to
+ * {@link #MAX_ATTEMPTS} times. The scorer is a local word list unless the sps.sentiment system
+ * property is set to "cloud", which uses the Natural Language API. That needs credentials and
+ * makes one call per comment.
+ */
+public final class ModerationQueue {
+  private static final String SCORER_PROPERTY = "sps.sentiment";
+
+  static final int MAX_BATCH_SIZE = 25;
+  /** How long the first comment of a batch waits for others to join it. */
+  private static final long LINGER_MILLIS = 200;
+  /** Beyond this many waiting comments, new ones go unscored rather than use up memory. */
+  private static final int MAX_QUEUED_COMMENTS = 10_000;
+  /** How many times a comment is tried before it is left unscored. */
+  static final int MAX_ATTEMPTS = 3;
+  /** How long the worker backs off after a failed batch, so an outage isn't retried in a loop. */
+  private static final long RETRY_DELAY_MILLIS = 5_000;
+
+  private static final MetricFamily<Counter> SCORED =
+      MetricsRegistry.getInstance().counter("sps_moderation_comments_total",
+          "Comments passed through moderation, by outcome.", "outcome");
+
+  private static final ModerationQueue INSTANCE =
+      new ModerationQueue(createScorer(), Repositories.comments());
+
+  private final SentimentScorer scorer;
+  private final CommentRepository comments;
+  private final BlockingQueue<PendingComment> queue =
+      new LinkedBlockingQueue<>(MAX_QUEUED_COMMENTS);
+  private ExecutorService worker;
+
+  ModerationQueue(SentimentScorer scorer, CommentRepository comments) {
+    this.scorer = scorer;
+    this.comments = comments;
+  }
+
+  public static ModerationQueue getInstance() {
+    return INSTANCE;
+  }
+
+  /** Queues the comment to be scored. */
+  public void enqueue(Comment comment) {
+    if (offer(comment)) {
+      getWorker();
+    }
+  }
+
+  /** Queues the comment without starting the worker. */
+  boolean offer(Comment comment) {
+    return offer(new PendingComment(comment, 0));
+  }
+
+  private boolean offer(PendingComment pending) {
+    if (!queue.offer(pending)) {
+      SCORED.labels("dropped").increment();
+      return false;
+    }
+    return true;
+  }
+
+  /** The worker is created lazily because App Engine thread factories need a request. */
+  private synchronized ExecutorService getWorker() {
+    if (worker == null) {
+      worker = Executors.newSingleThreadExecutor(ThreadFactories.background());
+      worker.execute(this::scoreForever);
+    }
+    return worker;
+  }
+
+  private void scoreForever() {
+    while (true) {
+      try {
+        if (!scoreNextBatch()) {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Waits for the next batch, then scores it and stores the scores. If either step fails, the
+   * comments go back in the queue unless they have used up their attempts.
+   *
+   * @return whether the batch was scored and stored
+   */
+  boolean scoreNextBatch() throws InterruptedException {
+    List<PendingComment> batch = takeBatch();
+    try {
+      scoreBatch(batch);
+      return true;
+    } catch (RuntimeException e) {
+      System.err.println("Could not score comments: " + e);
+      for (PendingComment pending : batch) {
+        if (pending.failures + 1 < MAX_ATTEMPTS) {
+          offer(new PendingComment(pending.comment, pending.failures + 1));
+        } else {
+          SCORED.labels("failed").increment();
+        }
+      }
+      return false;
+    }
+  }
+
+  /** Waits for a comment, then gives others a moment to arrive so they share the batch. */
+  private List<PendingComment> takeBatch() throws InterruptedException {
+    List<PendingComment> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    batch.add(queue.take());
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS);
+    while (batch.size() < MAX_BATCH_SIZE) {
+      queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() == MAX_BATCH_SIZE || remaining <= 0) {
+        break;
+      }
+      PendingComment next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+    return batch;
+  }
+
+  private void scoreBatch(List<PendingComment> batch) {
+    List<String> bodies = new ArrayList<>(batch.size());
+    for (PendingComment pending : batch) {
+      bodies.add(pending.comment.getBody());
+    }
+    List<Float> scores = scorer.score(bodies);
+
+    Map<Long, Float> scoresById = new HashMap<>();
+    for (int i = 0; i < batch.size(); i++) {
+      scoresById.put(batch.get(i).comment.getId(), scores.get(i));
+    }
+    comments.setSentimentScores(scoresById);
+    SCORED.labels("scored").add(batch.size());
+  }
+
+  private static SentimentScorer createScorer() {
+    String scorer = System.getProperty(SCORER_PROPERTY, "lexicon");
+    switch (scorer) {
+      case "cloud":
+        return new CloudSentimentScorer();
+      case "lexicon":
+        return new LexiconSentimentScorer();
+      default:
+        throw new IllegalStateException("Unknown " + SCORER_PROPERTY + ": " + scorer);
+    }
+  }
+
+  /** A comment waiting to be scored, and how many times scoring it has failed. */
+  private static final class PendingComment {
+    final Comment comment;
+    final int failures;
+
+    PendingComment(Comment comment, int failures) {
+      this.comment = comment;
+      this.failures = failures;
+    }
+  }
+}
@@ -12,15 +12,14 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-package com.google.sps.data;
+package com.google.sps.moderation;
 
-/** Represents a UFO sighting at a specific lat lng point. */
-public class UfoSighting {
-  private double lat;
-  private double lng;
+import java.util.List;
 
-  public UfoSighting(double lat, double lng) {
-    this.lat = lat;
-    this.lng = lng;
-  }
+/** Rates how positive texts are. Implementations must be thread-safe. */
+public interface SentimentScorer {
+  /**
+   * @return one score from -1 (negative) to 1 (positive) for each text, in the same order
+   */
+  List<Float> score(List<String> texts);
 }
@@ -0,0 +1,202 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over comment bodies. Every term maps to a postings list of the comments
+ * that contain it, and queries are ranked with BM25, so a search only touches the postings of the
+ * query terms instead of every comment.
+ */
+public final class CommentIndex {
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  private static final CommentIndex INSTANCE = new CommentIndex();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, List<Posting>> postings = new HashMap<>();
+  private final Map<Long, String> bodies = new HashMap<>();
+  private final Map<Long, Integer> lengths = new HashMap<>();
+  private long totalLength = 0;
+
+  CommentIndex() {}
+
+  public static CommentIndex getInstance() {
+    return INSTANCE;
+  }
+
+  /** Adds a comment to the index. Comments that are already indexed are ignored. */
+  public void add(long commentId, String body) {
+    List<String> tokens = tokenize(body);
+
+    Map<String, Integer> termFrequencies = new HashMap<>();
+    for (String token : tokens) {
+      termFrequencies.merge(token, 1, Integer::sum);
+    }
+
+    lock.writeLock().lock();
+    try {
+      if (bodies.containsKey(commentId)) {
+        return;
+      }
+
+      bodies.put(commentId, body);
+      lengths.put(commentId, tokens.size());
+      totalLength += tokens.size();
+
+      for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+        postings.computeIfAbsent(entry.getKey(), term -> new ArrayList<>())
+            .add(new Posting(commentId, entry.getValue()));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes comments from the index. IDs that are not indexed are ignored. */
+  public void remove(Collection<Long> commentIds) {
+    lock.writeLock().lock();
+    try {
+      // Only the postings lists of the removed comments' own terms need to be touched.
+      Set<Long> removedIds = new HashSet<>();
+      Set<String> affectedTerms = new HashSet<>();
+      for (long commentId : commentIds) {
+        String body = bodies.remove(commentId);
+        if (body == null) {
+          continue;
+        }
+        removedIds.add(commentId);
+        totalLength -= lengths.remove(commentId);
+        affectedTerms.addAll(tokenize(body));
+      }
+
+      for (String term : affectedTerms) {
+        List<Posting> termPostings = postings.get(term);
+        termPostings.removeIf(posting -> removedIds.contains(posting.commentId));
+        if (termPostings.isEmpty()) {
+          postings.remove(term);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** @return the bodies of the best matching comments keyed by ID, best match first */
+  public Map<Long, String> search(String query, int maxResults) {
+    Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+    if (queryTerms.isEmpty() || maxResults <= 0) {
+      return Collections.emptyMap();
+    }
+
+    lock.readLock().lock();
+    try {
+      int numComments = bodies.size();
+      if (numComments == 0) {
+        return Collections.emptyMap();
+      }
+      double averageLength = (double) totalLength / numComments;
+
+      Map<Long, Double> scores = new HashMap<>();
+      for (String term : queryTerms) {
+        List<Posting> termPostings = postings.get(term);
+        if (termPostings == null) {
+          continue;
+        }
+
+        int documentFrequency = termPostings.size();
+        double idf = Math.log(
+            1 + (numComments - documentFrequency + 0.5) / (documentFrequency + 0.5));
+
+        for (Posting posting : termPostings) {
+          double tf = posting.termFrequency;
+          double lengthRatio = lengths.get(posting.commentId) / averageLength;
+          double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengthRatio));
+          scores.merge(posting.commentId, score, Double::sum);
+        }
+      }
+
+      // Keep only the best results in a min-heap rather than sorting every match.
+      PriorityQueue<Map.Entry<Long, Double>> best =
+          new PriorityQueue<>(Map.Entry.comparingByValue());
+      for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+        best.add(entry);
+        if (best.size() > maxResults) {
+          best.poll();
+        }
+      }
+
+      List<Long> ids = new ArrayList<>(best.size());
+      while (!best.isEmpty()) {
+        ids.add(best.poll().getKey());
+      }
+      Collections.reverse(ids);
+
+      Map<Long, String> results = new LinkedHashMap<>();
+      for (long id : ids) {
+        results.put(id, bodies.get(id));
+      }
+      return results;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Splits text into lowercase runs of letters and digits. */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean isTokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (isTokenChar && start < 0) {
+        start = i;
+      } else if (!isTokenChar && start >= 0) {
+        tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+
+  /** The number of times a term occurs in one comment. */
+  private static final class Posting {
+    final long commentId;
+    final int termFrequency;
+
+    Posting(long commentId, int termFrequency) {
+      this.commentId = commentId;
+      this.termFrequency = termFrequency;
+    }
+  }
+}
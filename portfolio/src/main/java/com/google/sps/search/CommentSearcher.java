@@ -0,0 +1,97 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import com.google.sps.data.Comment;
+import com.google.sps.storage.CommentRepository;
+import com.google.sps.storage.Repositories;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers searches from a {@link CommentIndex} that is kept in line with the stored comments.
+ * Other instances add and delete comments without telling this one, so before a search the index
+ * picks up the comments stored since it last looked, and comments that turn out to be deleted are
+ * dropped from the results. The index is only built by the first search, not on every start.
+ */
+public final class CommentSearcher {
+  /** How often the index looks for comments added elsewhere. */
+  static final long SYNC_INTERVAL_MILLIS = 5_000;
+  /**
+   * Each sync reads this far back from the newest comment it has seen, since the clocks of
+   * instances differ and a comment may show up in queries a little after it was stored.
+   */
+  private static final long SYNC_OVERLAP_MILLIS = 60_000;
+
+  private static final CommentSearcher INSTANCE =
+      new CommentSearcher(CommentIndex.getInstance(), Repositories.comments(),
+          System::currentTimeMillis);
+
+  private final CommentIndex index;
+  private final CommentRepository comments;
+  private final LongSupplier clock;
+
+  private boolean built = false;
+  private long newestTimestamp = Long.MIN_VALUE;
+  private long nextSyncMillis = 0;
+
+  CommentSearcher(CommentIndex index, CommentRepository comments, LongSupplier clock) {
+    this.index = index;
+    this.comments = comments;
+    this.clock = clock;
+  }
+
+  public static CommentSearcher getInstance() {
+    return INSTANCE;
+  }
+
+  /** @return the bodies of the best matching comments that still exist, best match first */
+  public List<String> search(String query, int maxResults) {
+    syncIfDue();
+
+    while (true) {
+      Map<Long, String> results = index.search(query, maxResults);
+      Set<Long> deletedIds = new HashSet<>(results.keySet());
+      deletedIds.removeAll(comments.findExisting(results.keySet()));
+      if (deletedIds.isEmpty()) {
+        return new ArrayList<>(results.values());
+      }
+      // Deleted by another instance, so search again for the results that take their places.
+      index.remove(deletedIds);
+    }
+  }
+
+  private synchronized void syncIfDue() {
+    long now = clock.getAsLong();
+    if (built && now < nextSyncMillis) {
+      return;
+    }
+    nextSyncMillis = now + SYNC_INTERVAL_MILLIS;
+
+    long since = newestTimestamp == Long.MIN_VALUE
+        ? Long.MIN_VALUE
+        : newestTimestamp - SYNC_OVERLAP_MILLIS;
+    for (Comment comment : comments.getNewestSince(since)) {
+      // Comments that are already indexed are ignored.
+      index.add(comment.getId(), comment.getBody());
+      newestTimestamp = Math.max(newestTimestamp, comment.getTimestamp());
+    }
+    built = true;
+  }
+}
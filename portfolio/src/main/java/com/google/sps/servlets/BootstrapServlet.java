@@ -0,0 +1,71 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.login.LoginInfoCache;
+import com.google.sps.storage.Repositories;
+import com.google.sps.util.JsonResponses;
+import com.google.sps.util.ThreadFactories;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that returns everything the page needs when it loads, so it makes one request instead of
+ * one to /login and one to /data. The comments are read on a separate request thread while the
+ * login information is looked up, so the response takes as long as the slower of the two.
+ */
+@WebServlet("/bootstrap")
+public class BootstrapServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    int numComments = DataServlet.getNumCommentsToDisplay(request);
+
+    // Request threads can't be pooled, so each lookup gets a thread of its own.
+    Executor requestThreads = runnable -> ThreadFactories.request().newThread(runnable).start();
+    CompletableFuture<byte[]> comments = CompletableFuture.supplyAsync(
+        () -> Repositories.comments().getNewestBodiesJson(numComments), requestThreads);
+
+    byte[] loginInfoJson = LoginInfoCache.getInstance().getLoginInfoJson(request);
+
+    // The login information is already serialized, so it is spliced in rather than re-parsed.
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    json.write("{\"loginInfo\":".getBytes(StandardCharsets.UTF_8));
+    json.write(loginInfoJson);
+    json.write(",\"comments\":".getBytes(StandardCharsets.UTF_8));
+    json.write(joinComments(comments));
+    json.write('}');
+
+    JsonResponses.writeBytes(response, json.toByteArray());
+  }
+
+  private static byte[] joinComments(CompletableFuture<byte[]> comments) {
+    try {
+      return comments.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.utils.SystemProperty;
+import com.google.sps.events.CommentBroadcaster;
+import javax.servlet.AsyncContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that streams newly posted comments to the client as Server-Sent Events. The request is
+ * parked asynchronously, so an open stream does not hold on to a request thread.
+ *
+ * <p>The App Engine standard java8 runtime sends a response only once the request has finished, so
+ * events would never arrive live there. In production this answers 204 No Content, which tells
+ * EventSource not to reconnect, and the page instead reloads the comments from /data when it is
+ * shown again.
+ */
+@WebServlet(urlPatterns = "/comments-stream", asyncSupported = true)
+public class CommentStreamServlet extends HttpServlet {
+  // Streams are recycled periodically; EventSource reconnects on its own.
+  private static final long STREAM_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) {
+    if (SystemProperty.environment.value() == SystemProperty.Environment.Value.Production) {
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+      return;
+    }
+
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(STREAM_TIMEOUT_MILLIS);
+    CommentBroadcaster.getInstance().subscribe(asyncContext);
+  }
+}
@@ -14,18 +14,14 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.FetchOptions;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
-import com.google.gson.Gson;
+import com.google.appengine.api.users.UserService;
+import com.google.sps.ingest.CommentIngestor;
+import com.google.sps.ingest.CommentIngestor.Outcome;
+import com.google.sps.login.UserServices;
+import com.google.sps.storage.Repositories;
+import com.google.sps.util.JsonResponses;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -34,31 +30,15 @@ import javax.servlet.http.HttpServletResponse;
 /** Servlet that sends and receives comments data. */
 @WebServlet("/data")
 public class DataServlet extends HttpServlet {
+  // HttpServletResponse has no constant for 429.
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+  // Matches the option the page's num-comments select starts on.
+  private static final String DEFAULT_NUM_COMMENTS = "All";
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Comment").addSort("timestamp", SortDirection.DESCENDING);
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
-
-    FetchOptions fetchOptions;
     int numComments = getNumCommentsToDisplay(request);
-
-    if (numComments >= 0) {
-      fetchOptions = FetchOptions.Builder.withLimit(numComments);
-    } else {
-      fetchOptions = FetchOptions.Builder.withDefaults();
-    }
-
-    List<String> comments = new ArrayList();
-    for (Entity entity : results.asIterable(fetchOptions)) {
-      String body = (String) entity.getProperty("body");
-      comments.add(body);
-    }
-
-    Gson gson = new Gson();
-    response.setContentType("text/html;");
-    response.getWriter().println(gson.toJson(comments));
+    JsonResponses.writeBytes(response, Repositories.comments().getNewestBodiesJson(numComments));
   }
 
   @Override
@@ -67,14 +47,19 @@ public class DataServlet extends HttpServlet {
     String body = getParameter(request, "comment-submission", "");
     long timestamp = System.currentTimeMillis();
 
-    Entity commentEntity = new Entity("Comment");
-    commentEntity.setProperty("body", body);
-    commentEntity.setProperty("timestamp", timestamp);
+    UserService userService = UserServices.get();
+    String userId = userService.isUserLoggedIn() ? userService.getCurrentUser().getUserId() : null;
 
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    datastore.put(commentEntity);
+    Outcome outcome =
+        CommentIngestor.getInstance().submit(request.getRemoteAddr(), userId, body, timestamp);
+    if (outcome == Outcome.RATE_LIMITED) {
+      response.setHeader("Retry-After", Long.toString(CommentIngestor.getRetryAfterSeconds()));
+      response.sendError(SC_TOO_MANY_REQUESTS);
+      return;
+    }
 
-    // Redirect back to the HTML page.
+    // Redirect back to the HTML page. A duplicate is dropped quietly, since the same text is
+    // already on the page, e.g. after a double-clicked submit.
     response.sendRedirect("/index.html");
   }
 
@@ -82,7 +67,8 @@ public class DataServlet extends HttpServlet {
    * @return the request parameter, or the default value if the parameter
    *         was not specified by the client
    */
-  private String getParameter(HttpServletRequest request, String name, String defaultValue) {
+  private static String getParameter(
+      HttpServletRequest request, String name, String defaultValue) {
     String value = request.getParameter(name);
     if (value == null) {
       return defaultValue;
@@ -91,11 +77,12 @@ public class DataServlet extends HttpServlet {
   }
 
   /**
-   * @return the number of comments to display, or -1 if all comments should be displayed
+   * @return the number of comments to display, or -1 if all comments should be displayed, which is
+   *         also what the page shows when the request doesn't say
    */
-  private int getNumCommentsToDisplay(HttpServletRequest request) {
+  static int getNumCommentsToDisplay(HttpServletRequest request) {
     // Get the input from the form.
-    String numCommentsString = getParameter(request, "num-comments", null);
+    String numCommentsString = getParameter(request, "num-comments", DEFAULT_NUM_COMMENTS);
 
     if (numCommentsString.equals("All")) {
       return -1;
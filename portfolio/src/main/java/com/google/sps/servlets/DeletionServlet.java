@@ -14,39 +14,42 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
-import com.google.common.collect.Iterables;
+import com.google.sps.data.PurgeStatus;
+import com.google.sps.jobs.PurgeJobRunner;
+import com.google.sps.login.UserServices;
+import com.google.sps.util.JsonResponses;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that enables the deletion of comments data. */
-@WebServlet("/delete-data")
+/**
+ * Servlet that enables the deletion of comments data. Deletion runs as a background job, so the
+ * response only contains the ID of the job, which can be polled through /delete-status.
+ */
+@WebServlet(urlPatterns = "/delete-data", loadOnStartup = 1)
 public class DeletionServlet extends HttpServlet {
+  @Override
+  public void init() {
+    // Pick up any purge that was interrupted by the previous instance shutting down.
+    PurgeJobRunner.getInstance().resumeUnfinishedJobs();
+  }
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    UserService userService = UserServiceFactory.getUserService();
+    UserService userService = UserServices.get();
 
     // Only delete all comments if the user is logged in as an admin
     if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
       return;
     }
 
-    Query query = new Query("Comment");
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
+    PurgeStatus status = PurgeJobRunner.getInstance().enqueue();
 
-    Iterable<Key> keysToDelete = Iterables.transform(results.asIterable(), Entity::getKey);
-    datastore.delete(keysToDelete);
+    response.setStatus(HttpServletResponse.SC_ACCEPTED);
+    JsonResponses.write(response, status);
   }
 }
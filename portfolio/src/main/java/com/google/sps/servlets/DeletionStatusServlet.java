@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.sps.data.PurgeStatus;
+import com.google.sps.jobs.PurgeJobRunner;
+import com.google.sps.login.UserServices;
+import com.google.sps.util.JsonResponses;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that reports the progress of a comment purge job started through /delete-data. */
+@WebServlet("/delete-status")
+public class DeletionStatusServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServices.get();
+
+    // Purge jobs are only visible to the admins who can start them
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    long jobId;
+    try {
+      jobId = Long.parseLong(request.getParameter("job-id"));
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid job-id");
+      return;
+    }
+
+    PurgeStatus status = PurgeJobRunner.getInstance().getStatus(jobId);
+    if (status == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    JsonResponses.write(response, status);
+  }
+}
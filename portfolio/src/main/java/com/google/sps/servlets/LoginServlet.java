@@ -14,10 +14,8 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.users.UserService;
-import com.google.appengine.api.users.UserServiceFactory;
-import com.google.gson.Gson;
-import com.google.sps.data.LoginInfo;
+import com.google.sps.login.LoginInfoCache;
+import com.google.sps.util.JsonResponses;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -29,19 +27,7 @@ import javax.servlet.http.HttpServletResponse;
 public class LoginServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    UserService userService = UserServiceFactory.getUserService();
-    LoginInfo loginInfo;
-    String redirectUrl = "/";
-
-    if (userService.isUserLoggedIn()) {
-      loginInfo = new LoginInfo(userService.createLogoutURL(redirectUrl),
-          userService.getCurrentUser().getEmail(), userService.isUserAdmin());
-    } else {
-      loginInfo = new LoginInfo(userService.createLoginURL(redirectUrl));
-    }
-
-    Gson gson = new Gson();
-    response.setContentType("text/html;");
-    response.getWriter().println(gson.toJson(loginInfo));
+    byte[] loginInfoJson = LoginInfoCache.getInstance().getLoginInfoJson(request);
+    JsonResponses.writeBytes(response, loginInfoJson);
   }
 }
@@ -0,0 +1,56 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.search.CommentSearcher;
+import com.google.sps.util.JsonResponses;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet that returns the comments best matching a full-text query, best match first. */
+@WebServlet("/search")
+public class SearchServlet extends HttpServlet {
+  private static final int DEFAULT_MAX_RESULTS = 10;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String query = request.getParameter("q");
+    List<String> results = CommentSearcher.getInstance().search(query, getMaxResults(request));
+
+    JsonResponses.write(response, results);
+  }
+
+  /**
+   * @return the maximum number of results to return, or the default if the client did not
+   *         specify a valid limit
+   */
+  private int getMaxResults(HttpServletRequest request) {
+    String limitString = request.getParameter("limit");
+    if (limitString == null) {
+      return DEFAULT_MAX_RESULTS;
+    }
+
+    try {
+      return Math.max(0, Integer.parseInt(limitString));
+    } catch (NumberFormatException e) {
+      System.err.println("Could not convert to int: " + limitString);
+      return DEFAULT_MAX_RESULTS;
+    }
+  }
+}
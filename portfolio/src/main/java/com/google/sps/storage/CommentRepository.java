@@ -0,0 +1,98 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Comment;
+import com.google.sps.util.JsonResponses;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Stores the comments left on the portfolio page. Implementations must be thread-safe. */
+public interface CommentRepository {
+  /** Stores a new comment and returns it with the ID it was assigned. */
+  Comment add(String body, long timestamp);
+
+  /**
+   * @param limit the maximum number of comments to return, or -1 for all of them
+   * @return the most recent comments, newest first
+   */
+  List<Comment> getNewest(int limit);
+
+  /**
+   * @return the comments with a timestamp at or after the given one, newest first, for keeping
+   *         copies such as the search index in line with comments that other instances add
+   */
+  List<Comment> getNewestSince(long timestamp);
+
+  /** @return the IDs of those of the comments that have not been deleted */
+  Set<Long> findExisting(Collection<Long> ids);
+
+  /**
+   * @param limit the maximum number of comments to include, or -1 for all of them
+   * @return the bodies of the most recent comments, newest first, as a UTF-8 JSON array of strings
+   */
+  default byte[] getNewestBodiesJson(int limit) {
+    List<String> bodies = new ArrayList<>();
+    for (Comment comment : getNewest(limit)) {
+      bodies.add(comment.getBody());
+    }
+    return JsonResponses.toBytes(bodies);
+  }
+
+  /**
+   * Stores the sentiment scores of comments in one batch. Comments that have been deleted in the
+   * meantime are skipped.
+   *
+   * @param scores sentiment scores keyed by comment ID
+   */
+  void setSentimentScores(Map<Long, Float> scores);
+
+  /**
+   * Deletes the next batch of comments. Batches continue from where the previous one ended, so a
+   * full purge is a loop that feeds each returned cursor into the next call until nothing is left.
+   *
+   * @param cursor the cursor returned by the previous batch, or null to start from the beginning
+   */
+  DeletedBatch deleteBatch(String cursor, int batchSize);
+
+  /** The outcome of one {@link #deleteBatch} call. */
+  final class DeletedBatch {
+    private final List<Long> deletedIds;
+    private final String cursor;
+
+    public DeletedBatch(List<Long> deletedIds, String cursor) {
+      this.deletedIds = deletedIds;
+      this.cursor = cursor;
+    }
+
+    /** @return the number of comments deleted; zero once there is nothing left */
+    public int getDeletedCount() {
+      return deletedIds.size();
+    }
+
+    /** @return the IDs of the deleted comments */
+    public List<Long> getDeletedIds() {
+      return deletedIds;
+    }
+
+    /** @return the cursor to pass to the next batch */
+    public String getCursor() {
+      return cursor;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.sps.data.Comment;
+import com.google.sps.metrics.DatastoreMetrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Stores comments as Comment entities in Datastore. */
+public final class DatastoreCommentRepository implements CommentRepository {
+  private static final String KIND = "Comment";
+
+  @Override
+  public Comment add(String body, long timestamp) {
+    Entity commentEntity = new Entity(KIND);
+    commentEntity.setProperty("body", body);
+    commentEntity.setProperty("timestamp", timestamp);
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    long id = DatastoreMetrics.time("put", () -> datastore.put(commentEntity)).getId();
+    return new Comment(id, body, timestamp);
+  }
+
+  @Override
+  public List<Comment> getNewest(int limit) {
+    Query query = new Query(KIND).addSort("timestamp", SortDirection.DESCENDING);
+
+    FetchOptions fetchOptions;
+    if (limit >= 0) {
+      fetchOptions = FetchOptions.Builder.withLimit(limit);
+    } else {
+      fetchOptions = FetchOptions.Builder.withDefaults();
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    return DatastoreMetrics.time("query", () -> {
+      List<Comment> comments = new ArrayList<>();
+      for (Entity entity : datastore.prepare(query).asIterable(fetchOptions)) {
+        comments.add(toComment(entity));
+      }
+      return comments;
+    });
+  }
+
+  @Override
+  public List<Comment> getNewestSince(long timestamp) {
+    Query query = new Query(KIND)
+                      .setFilter(new FilterPredicate(
+                          "timestamp", FilterOperator.GREATER_THAN_OR_EQUAL, timestamp))
+                      .addSort("timestamp", SortDirection.DESCENDING);
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    return DatastoreMetrics.time("query", () -> {
+      List<Comment> comments = new ArrayList<>();
+      for (Entity entity : datastore.prepare(query).asIterable()) {
+        comments.add(toComment(entity));
+      }
+      return comments;
+    });
+  }
+
+  @Override
+  public Set<Long> findExisting(Collection<Long> ids) {
+    List<Key> keys = new ArrayList<>(ids.size());
+    for (long id : ids) {
+      keys.add(KeyFactory.createKey(KIND, id));
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<Key, Entity> entities = DatastoreMetrics.time("get", () -> datastore.get(keys));
+    Set<Long> existing = new HashSet<>();
+    for (Key key : entities.keySet()) {
+      existing.add(key.getId());
+    }
+    return existing;
+  }
+
+  /**
+   * Writes each score in a transaction of its own, so a comment deleted by a purge since it was
+   * read cannot be brought back by the write. Comments that are already gone are skipped.
+   */
+  @Override
+  public void setSentimentScores(Map<Long, Float> scores) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    for (Map.Entry<Long, Float> score : scores.entrySet()) {
+      Key key = KeyFactory.createKey(KIND, score.getKey());
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity entity = DatastoreMetrics.time(
+            "get", () -> datastore.get(transaction, Collections.singleton(key))).get(key);
+        if (entity == null) {
+          continue;
+        }
+        // Floating point properties come back from Datastore as doubles.
+        entity.setUnindexedProperty("sentimentScore", (double) score.getValue());
+        DatastoreMetrics.time("put", () -> datastore.put(transaction, entity));
+        DatastoreMetrics.time("commit", transaction::commit);
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  @Override
+  public DeletedBatch deleteBatch(String cursor, int batchSize) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(batchSize);
+    if (cursor != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Query query = new Query(KIND).setKeysOnly();
+    QueryResultList<Entity> batch = DatastoreMetrics.time(
+        "query", () -> datastore.prepare(query).asQueryResultList(fetchOptions));
+    if (batch.isEmpty()) {
+      return new DeletedBatch(Collections.emptyList(), cursor);
+    }
+
+    List<Key> keysToDelete = new ArrayList<>(batch.size());
+    List<Long> deletedIds = new ArrayList<>(batch.size());
+    for (Entity entity : batch) {
+      keysToDelete.add(entity.getKey());
+      deletedIds.add(entity.getKey().getId());
+    }
+    DatastoreMetrics.time("delete", () -> datastore.delete(keysToDelete));
+
+    return new DeletedBatch(deletedIds, batch.getCursor().toWebSafeString());
+  }
+
+  private static Comment toComment(Entity entity) {
+    String body = (String) entity.getProperty("body");
+    long timestamp = (long) entity.getProperty("timestamp");
+    Double sentimentScore = (Double) entity.getProperty("sentimentScore");
+    return new Comment(entity.getKey().getId(), body, timestamp,
+        sentimentScore == null ? null : sentimentScore.floatValue());
+  }
+}
@@ -0,0 +1,160 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Text;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.sps.data.PurgeJob;
+import com.google.sps.metrics.DatastoreMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/** Stores purge jobs as PurgeJob entities in Datastore, so they survive a restart. */
+public final class DatastorePurgeJobRepository implements PurgeJobRepository {
+  private static final String KIND = "PurgeJob";
+
+  @Override
+  public PurgeJob add(long startTime, String leaseOwner, long leaseExpiry) {
+    Entity entity = new Entity(KIND);
+    entity.setProperty("state", PurgeJob.STATE_RUNNING);
+    entity.setProperty("deletedCount", 0L);
+    entity.setProperty("startTime", startTime);
+    entity.setUnindexedProperty("lastUpdate", startTime);
+    entity.setUnindexedProperty("leaseOwner", leaseOwner);
+    entity.setUnindexedProperty("leaseExpiry", leaseExpiry);
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    DatastoreMetrics.time("put", () -> datastore.put(entity));
+    return toPurgeJob(entity);
+  }
+
+  @Override
+  public PurgeJob get(long jobId) {
+    // A batch get returns missing entities as absent rather than throwing a checked exception.
+    Key key = KeyFactory.createKey(KIND, jobId);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity entity =
+        DatastoreMetrics.time("get", () -> datastore.get(Collections.singleton(key))).get(key);
+    return entity == null ? null : toPurgeJob(entity);
+  }
+
+  @Override
+  public List<Long> getRunningJobIds() {
+    Query query = new Query(KIND)
+                      .setFilter(new FilterPredicate(
+                          "state", FilterOperator.EQUAL, PurgeJob.STATE_RUNNING))
+                      .setKeysOnly();
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> entities = DatastoreMetrics.time(
+        "query", () -> datastore.prepare(query).asList(FetchOptions.Builder.withDefaults()));
+
+    List<Long> jobIds = new ArrayList<>(entities.size());
+    for (Entity entity : entities) {
+      jobIds.add(entity.getKey().getId());
+    }
+    return jobIds;
+  }
+
+  @Override
+  public PurgeJob claim(long jobId, String owner, long now, long leaseExpiry) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity entity = get(datastore, transaction, KeyFactory.createKey(KIND, jobId));
+      if (entity == null || !toPurgeJob(entity).isClaimableBy(owner, now)) {
+        return null;
+      }
+
+      entity.setUnindexedProperty("leaseOwner", owner);
+      entity.setUnindexedProperty("leaseExpiry", leaseExpiry);
+      DatastoreMetrics.time("put", () -> datastore.put(transaction, entity));
+      DatastoreMetrics.time("commit", transaction::commit);
+      return toPurgeJob(entity);
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  @Override
+  public boolean update(PurgeJob job) {
+    Entity entity = new Entity(KeyFactory.createKey(KIND, job.getId()));
+    entity.setProperty("state", job.getState());
+    entity.setProperty("deletedCount", job.getDeletedCount());
+    entity.setProperty("startTime", job.getStartTime());
+    entity.setUnindexedProperty("lastUpdate", job.getLastUpdate());
+    if (job.getCursor() != null) {
+      entity.setUnindexedProperty("cursor", new Text(job.getCursor()));
+    }
+    if (job.getError() != null) {
+      entity.setUnindexedProperty("error", job.getError());
+    }
+    entity.setUnindexedProperty("leaseOwner", job.getLeaseOwner());
+    entity.setUnindexedProperty("leaseExpiry", job.getLeaseExpiry());
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity current = get(datastore, transaction, entity.getKey());
+      if (current == null
+          || !Objects.equals(current.getProperty("leaseOwner"), job.getLeaseOwner())) {
+        return false;
+      }
+
+      DatastoreMetrics.time("put", () -> datastore.put(transaction, entity));
+      DatastoreMetrics.time("commit", transaction::commit);
+      return true;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  /** A batch get returns a missing entity as null rather than throwing a checked exception. */
+  private static Entity get(DatastoreService datastore, Transaction transaction, Key key) {
+    return DatastoreMetrics.time(
+        "get", () -> datastore.get(transaction, Collections.singleton(key))).get(key);
+  }
+
+  private static PurgeJob toPurgeJob(Entity entity) {
+    Text cursor = (Text) entity.getProperty("cursor");
+    Long leaseExpiry = (Long) entity.getProperty("leaseExpiry");
+    return new PurgeJob(
+        entity.getKey().getId(),
+        (String) entity.getProperty("state"),
+        (long) entity.getProperty("deletedCount"),
+        (long) entity.getProperty("startTime"),
+        (long) entity.getProperty("lastUpdate"),
+        cursor == null ? null : cursor.getValue(),
+        (String) entity.getProperty("error"),
+        (String) entity.getProperty("leaseOwner"),
+        // Jobs recorded before leases existed have none, so any instance may claim them.
+        leaseExpiry == null ? 0 : leaseExpiry);
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Comment;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps comments in memory, for running and profiling the servlets without App Engine. Comments
+ * come back in the same order as from Datastore: newest first, ties broken by ascending ID, and
+ * purges walk the comments in ID order just like a keys-only query.
+ */
+public final class InMemoryCommentRepository implements CommentRepository {
+  private static final Comparator<Comment> NEWEST_FIRST =
+      Comparator.comparingLong(Comment::getTimestamp).reversed().thenComparingLong(Comment::getId);
+
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final ConcurrentNavigableMap<Long, Comment> commentsById = new ConcurrentSkipListMap<>();
+  private final NavigableSet<Comment> commentsByTime = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+
+  @Override
+  public Comment add(String body, long timestamp) {
+    Comment comment = new Comment(nextId.getAndIncrement(), body, timestamp);
+    commentsById.put(comment.getId(), comment);
+    commentsByTime.add(comment);
+    return comment;
+  }
+
+  @Override
+  public List<Comment> getNewest(int limit) {
+    List<Comment> comments = new ArrayList<>();
+    Iterator<Comment> iterator = commentsByTime.iterator();
+    while (iterator.hasNext() && (limit < 0 || comments.size() < limit)) {
+      comments.add(iterator.next());
+    }
+    return comments;
+  }
+
+  @Override
+  public List<Comment> getNewestSince(long timestamp) {
+    List<Comment> comments = new ArrayList<>();
+    for (Comment comment : commentsByTime) {
+      if (comment.getTimestamp() < timestamp) {
+        break;
+      }
+      comments.add(comment);
+    }
+    return comments;
+  }
+
+  @Override
+  public Set<Long> findExisting(Collection<Long> ids) {
+    Set<Long> existing = new HashSet<>();
+    for (long id : ids) {
+      if (commentsById.containsKey(id)) {
+        existing.add(id);
+      }
+    }
+    return existing;
+  }
+
+  @Override
+  public void setSentimentScores(Map<Long, Float> scores) {
+    for (Map.Entry<Long, Float> score : scores.entrySet()) {
+      commentsById.computeIfPresent(score.getKey(), (id, comment) -> {
+        Comment scored =
+            new Comment(id, comment.getBody(), comment.getTimestamp(), score.getValue());
+
+        // The set orders by timestamp and ID only, so the scored copy takes the same place.
+        commentsByTime.remove(comment);
+        commentsByTime.add(scored);
+        return scored;
+      });
+    }
+  }
+
+  @Override
+  public DeletedBatch deleteBatch(String cursor, int batchSize) {
+    ConcurrentNavigableMap<Long, Comment> remaining = cursor == null
+        ? commentsById
+        : commentsById.tailMap(Long.parseLong(cursor), false);
+
+    List<Long> deletedIds = new ArrayList<>();
+    String nextCursor = cursor;
+    for (Comment comment : remaining.values()) {
+      if (deletedIds.size() == batchSize) {
+        break;
+      }
+      if (commentsById.remove(comment.getId()) != null) {
+        commentsByTime.remove(comment);
+        deletedIds.add(comment.getId());
+      }
+      nextCursor = Long.toString(comment.getId());
+    }
+    return new DeletedBatch(deletedIds, nextCursor);
+  }
+}
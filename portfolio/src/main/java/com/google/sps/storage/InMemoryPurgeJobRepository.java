@@ -0,0 +1,80 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.PurgeJob;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps purge jobs in memory, for running the servlets without App Engine. Jobs are lost on
+ * restart, so there is nothing to resume.
+ */
+public final class InMemoryPurgeJobRepository implements PurgeJobRepository {
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final ConcurrentMap<Long, PurgeJob> jobsById = new ConcurrentHashMap<>();
+
+  @Override
+  public PurgeJob add(long startTime, String leaseOwner, long leaseExpiry) {
+    PurgeJob job = new PurgeJob(nextId.getAndIncrement(), PurgeJob.STATE_RUNNING, 0, startTime,
+        startTime, null, null, leaseOwner, leaseExpiry);
+    jobsById.put(job.getId(), job);
+    return job;
+  }
+
+  @Override
+  public PurgeJob get(long jobId) {
+    return jobsById.get(jobId);
+  }
+
+  @Override
+  public List<Long> getRunningJobIds() {
+    List<Long> jobIds = new ArrayList<>();
+    for (PurgeJob job : jobsById.values()) {
+      if (PurgeJob.STATE_RUNNING.equals(job.getState())) {
+        jobIds.add(job.getId());
+      }
+    }
+    return jobIds;
+  }
+
+  @Override
+  public synchronized PurgeJob claim(long jobId, String owner, long now, long leaseExpiry) {
+    PurgeJob job = jobsById.get(jobId);
+    if (job == null || !job.isClaimableBy(owner, now)) {
+      return null;
+    }
+
+    PurgeJob claimed = new PurgeJob(jobId, job.getState(), job.getDeletedCount(),
+        job.getStartTime(), job.getLastUpdate(), job.getCursor(), job.getError(), owner,
+        leaseExpiry);
+    jobsById.put(jobId, claimed);
+    return claimed;
+  }
+
+  @Override
+  public synchronized boolean update(PurgeJob job) {
+    PurgeJob current = jobsById.get(job.getId());
+    if (current == null || !Objects.equals(current.getLeaseOwner(), job.getLeaseOwner())) {
+      return false;
+    }
+    jobsById.put(job.getId(), job);
+    return true;
+  }
+}
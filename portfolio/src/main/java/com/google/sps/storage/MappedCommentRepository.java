@@ -0,0 +1,563 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Comment;
+import com.google.sps.util.JsonResponses;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stores comments in an append-only log on a memory-mapped file, for self-hosted deployments
+ * without App Engine. Every record is framed as [payload length][CRC32 of payload][payload], and
+ * the log is replayed on startup. A torn or corrupt record left by a crash is skipped up to the
+ * next intact record. Deleted comments stay in the log as tombstones, and sentiment scores are
+ * appended as records of their own, until the log is compacted. That happens once a purge has
+ * finished, and whenever more than half of the log is dead.
+ *
+ * <p>Timestamps never go backwards in the log, so log order is both ID order and timestamp order,
+ * and the index of live comments is a set of primitive arrays in that order. Bodies are stored
+ * already encoded as JSON strings, so the newest N bodies are sent by copying the tail of the log
+ * into the response without building a Comment or String per record. The file is limited to 2 GB,
+ * the most one mapping can address.
+ */
+public final class MappedCommentRepository implements CommentRepository {
+  private static final byte[] MAGIC = "SPSCLOG2".getBytes(StandardCharsets.US_ASCII);
+  private static final int INITIAL_CAPACITY = 1 << 20;
+  private static final long MAX_CAPACITY = Integer.MAX_VALUE;
+  private static final int INITIAL_INDEX_SIZE = 1024;
+
+  // The header is the magic number followed by the lowest ID that may be handed out, so IDs are
+  // not reused after compaction drops the newest comments.
+  private static final int NEXT_ID_OFFSET = MAGIC.length;
+  private static final int HEADER_LENGTH = NEXT_ID_OFFSET + 8;
+
+  private static final byte ADD = 1;
+  private static final byte DELETE = 2;
+  private static final byte SCORE = 3;
+
+  // Record layout, relative to the start of the record.
+  private static final int LENGTH_OFFSET = 0;
+  private static final int CRC_OFFSET = 4;
+  private static final int PAYLOAD_OFFSET = 8;
+  private static final int TYPE_OFFSET = PAYLOAD_OFFSET;
+  private static final int ID_OFFSET = TYPE_OFFSET + 1;
+  private static final int TIMESTAMP_OFFSET = ID_OFFSET + 8;
+  private static final int BODY_LENGTH_OFFSET = TIMESTAMP_OFFSET + 8;
+  private static final int BODY_OFFSET = BODY_LENGTH_OFFSET + 4;
+  private static final int SCORE_OFFSET = TIMESTAMP_OFFSET;
+  private static final int SCORE_RECORD_LENGTH = SCORE_OFFSET + 4;
+  private static final int DELETE_RECORD_LENGTH = TIMESTAMP_OFFSET;
+
+  private final Path path;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private FileChannel channel;
+  private MappedByteBuffer log;
+  private int writePosition;
+  private long nextId = 1;
+  private long lastTimestamp = Long.MIN_VALUE;
+  private long deadBytes = 0;
+
+  // Live comments in log order. Entries before liveStart have been deleted; purges delete from
+  // the front, so a deleted batch usually just moves liveStart. Unscored comments have a NaN score.
+  private long[] liveIds;
+  private int[] liveOffsets;
+  private float[] liveScores;
+  private int liveStart;
+  private int liveEnd;
+
+  public MappedCommentRepository(Path path) {
+    this.path = path;
+    try {
+      open();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not open comment log " + path, e);
+    }
+  }
+
+  @Override
+  public Comment add(String body, long timestamp) {
+    byte[] bodyJson = JsonResponses.toBytes(body);
+
+    lock.writeLock().lock();
+    try {
+      long id = nextId++;
+      lastTimestamp = Math.max(lastTimestamp, timestamp);
+      ByteBuffer payload = ByteBuffer.allocate(BODY_OFFSET - PAYLOAD_OFFSET + bodyJson.length);
+      payload.put(ADD).putLong(id).putLong(lastTimestamp).putInt(bodyJson.length).put(bodyJson);
+
+      int offset = append(payload.array());
+      log.force();
+      addLive(id, offset);
+      return new Comment(id, body, lastTimestamp);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Comments with the same timestamp come newest ID first. */
+  @Override
+  public List<Comment> getNewest(int limit) {
+    lock.readLock().lock();
+    try {
+      List<Comment> comments = new ArrayList<>();
+      for (int i = liveEnd - 1; i >= liveStart && (limit < 0 || comments.size() < limit); i--) {
+        comments.add(readComment(i));
+      }
+      return comments;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Timestamps never decrease in log order, so the scan stops at the first older comment. */
+  @Override
+  public List<Comment> getNewestSince(long timestamp) {
+    lock.readLock().lock();
+    try {
+      List<Comment> comments = new ArrayList<>();
+      for (int i = liveEnd - 1;
+          i >= liveStart && log.getLong(liveOffsets[i] + TIMESTAMP_OFFSET) >= timestamp; i--) {
+        comments.add(readComment(i));
+      }
+      return comments;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Set<Long> findExisting(Collection<Long> ids) {
+    lock.readLock().lock();
+    try {
+      Set<Long> existing = new HashSet<>();
+      for (long id : ids) {
+        if (indexOf(id) >= 0) {
+          existing.add(id);
+        }
+      }
+      return existing;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public byte[] getNewestBodiesJson(int limit) {
+    lock.readLock().lock();
+    try {
+      int first = limit < 0 ? liveStart : Math.max(liveStart, liveEnd - limit);
+
+      long length = 2 + Math.max(0, liveEnd - first - 1);
+      for (int i = first; i < liveEnd; i++) {
+        length += log.getInt(liveOffsets[i] + BODY_LENGTH_OFFSET);
+      }
+      if (length > Integer.MAX_VALUE - 8) {
+        throw new IllegalStateException("Too many comments to send at once: " + length);
+      }
+
+      byte[] json = new byte[(int) length];
+      ByteBuffer view = log.duplicate();
+      int position = 0;
+      json[position++] = '[';
+      for (int i = liveEnd - 1; i >= first; i--) {
+        if (i != liveEnd - 1) {
+          json[position++] = ',';
+        }
+        int offset = liveOffsets[i];
+        int bodyLength = log.getInt(offset + BODY_LENGTH_OFFSET);
+        ((Buffer) view).position(offset + BODY_OFFSET);
+        view.get(json, position, bodyLength);
+        position += bodyLength;
+      }
+      json[position] = ']';
+      return json;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void setSentimentScores(Map<Long, Float> scores) {
+    lock.writeLock().lock();
+    try {
+      for (Map.Entry<Long, Float> score : scores.entrySet()) {
+        int index = indexOf(score.getKey());
+        if (index < 0) {
+          continue;
+        }
+
+        append(scorePayload(score.getKey(), score.getValue()));
+        if (!Float.isNaN(liveScores[index])) {
+          deadBytes += SCORE_RECORD_LENGTH;
+        }
+        liveScores[index] = score.getValue();
+      }
+      log.force();
+      compactIfMostlyDead();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not compact comment log " + path, e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public DeletedBatch deleteBatch(String cursor, int batchSize) {
+    lock.writeLock().lock();
+    try {
+      int from = liveStart;
+      if (cursor != null) {
+        // Only IDs after the cursor are left, so the batch starts at its insertion point.
+        int index = indexOf(Long.parseLong(cursor));
+        from = index >= 0 ? index + 1 : -index - 1;
+      }
+      int to = (int) Math.min(liveEnd, (long) from + batchSize);
+
+      List<Long> ids = new ArrayList<>(to - from);
+      for (int i = from; i < to; i++) {
+        long id = liveIds[i];
+        ids.add(id);
+        deadBytes += recordLength(liveOffsets[i]);
+        if (!Float.isNaN(liveScores[i])) {
+          deadBytes += SCORE_RECORD_LENGTH;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(DELETE_RECORD_LENGTH - PAYLOAD_OFFSET);
+        payload.put(DELETE).putLong(id);
+        deadBytes += recordLength(append(payload.array()));
+      }
+      log.force();
+      removeLive(from, to);
+
+      // The purge job keeps asking for batches until none are left, so the log is rewritten once
+      // per purge rather than once per batch.
+      if (ids.isEmpty() && deadBytes > 0) {
+        compact();
+      }
+
+      String nextCursor = ids.isEmpty() ? cursor : Long.toString(ids.get(ids.size() - 1));
+      return new DeletedBatch(ids, nextCursor);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not compact comment log " + path, e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Maps the log and rebuilds the index by replaying every intact record. */
+  private void open() throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    long size = channel.size();
+    if (size > MAX_CAPACITY) {
+      channel.close();
+      throw new IOException(path + " is larger than the 2 GB a comment log may use");
+    }
+    boolean isNew = size == 0;
+    map((int) Math.max(INITIAL_CAPACITY, size));
+
+    if (isNew) {
+      writeHeader(log.duplicate(), 1);
+      log.force();
+    } else {
+      for (int i = 0; i < MAGIC.length; i++) {
+        if (log.get(i) != MAGIC[i]) {
+          throw new IOException(path + " is not a version 2 comment log");
+        }
+      }
+    }
+
+    liveIds = new long[INITIAL_INDEX_SIZE];
+    liveOffsets = new int[INITIAL_INDEX_SIZE];
+    liveScores = new float[INITIAL_INDEX_SIZE];
+    liveStart = 0;
+    liveEnd = 0;
+    deadBytes = 0;
+    nextId = log.getLong(NEXT_ID_OFFSET);
+    lastTimestamp = Long.MIN_VALUE;
+
+    int position = HEADER_LENGTH;
+    boolean skippedTornRecords = false;
+    while (true) {
+      if (!isIntactRecord(position)) {
+        // Appends are forced in order, so a zero length is the end of the log. Anything else is
+        // damage, and the records after it are still worth keeping.
+        boolean atEnd = position + 4 > log.capacity() || log.getInt(position + LENGTH_OFFSET) == 0;
+        int next = atEnd ? -1 : findIntactRecord(position + 1);
+        if (next < 0) {
+          break;
+        }
+        System.err.println("Skipping torn records at offsets " + position + " to " + next
+            + " of " + path);
+        skippedTornRecords = true;
+        position = next;
+      }
+      replay(position);
+      position += recordLength(position);
+    }
+    writePosition = position;
+
+    if (skippedTornRecords) {
+      // Rewrite the log so the next start doesn't have to skip the same damage again.
+      compact();
+    } else if (writePosition + 4 <= log.capacity()
+        && log.getInt(writePosition + LENGTH_OFFSET) != 0) {
+      // The last record was torn and nothing intact follows it. Zero it so a shorter record
+      // appended over it is not followed by leftovers that look like the start of another record.
+      System.err.println("Truncating torn record at offset " + writePosition + " of " + path);
+      for (int i = writePosition; i < log.capacity(); i++) {
+        log.put(i, (byte) 0);
+      }
+      log.force();
+    }
+  }
+
+  /** Applies one intact record to the index. */
+  private void replay(int offset) {
+    long id = log.getLong(offset + ID_OFFSET);
+    nextId = Math.max(nextId, id + 1);
+
+    byte type = log.get(offset + TYPE_OFFSET);
+    if (type == ADD) {
+      lastTimestamp = Math.max(lastTimestamp, log.getLong(offset + TIMESTAMP_OFFSET));
+      addLive(id, offset);
+    } else if (type == SCORE) {
+      // Only the latest score of a live comment counts.
+      int index = indexOf(id);
+      if (index < 0 || !Float.isNaN(liveScores[index])) {
+        deadBytes += SCORE_RECORD_LENGTH;
+      }
+      if (index >= 0) {
+        liveScores[index] = log.getFloat(offset + SCORE_OFFSET);
+      }
+    } else {
+      int index = indexOf(id);
+      if (index >= 0) {
+        deadBytes += recordLength(liveOffsets[index]);
+        if (!Float.isNaN(liveScores[index])) {
+          deadBytes += SCORE_RECORD_LENGTH;
+        }
+        removeLive(index, index + 1);
+      }
+      deadBytes += recordLength(offset);
+    }
+  }
+
+  /** @return the offset of the next intact record at or after the given one, or -1 if none */
+  private int findIntactRecord(int from) {
+    for (int offset = from; offset + PAYLOAD_OFFSET <= log.capacity(); offset++) {
+      if (isIntactRecord(offset)) {
+        return offset;
+      }
+    }
+    return -1;
+  }
+
+  private static void writeHeader(ByteBuffer out, long nextId) {
+    out.put(MAGIC).putLong(nextId);
+  }
+
+  /**
+   * @return whether a complete record whose checksum matches starts at the offset. The zeroes
+   *         after the last record, and a record cut short by a crash, both fail this check.
+   */
+  private boolean isIntactRecord(int offset) {
+    if ((long) offset + PAYLOAD_OFFSET > log.capacity()) {
+      return false;
+    }
+    int payloadLength = log.getInt(offset + LENGTH_OFFSET);
+    if (payloadLength <= 0 || (long) offset + PAYLOAD_OFFSET + payloadLength > log.capacity()) {
+      return false;
+    }
+    return log.getInt(offset + CRC_OFFSET) == checksum(offset + PAYLOAD_OFFSET, payloadLength);
+  }
+
+  private int checksum(int start, int length) {
+    ByteBuffer payload = log.duplicate();
+    ((Buffer) payload).position(start);
+    ((Buffer) payload).limit(start + length);
+
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  /** Appends a framed record and returns its offset. Callers force the log to disk. */
+  private int append(byte[] payload) {
+    int recordLength = PAYLOAD_OFFSET + payload.length;
+    long end = (long) writePosition + recordLength;
+    if (end > MAX_CAPACITY) {
+      throw new IllegalStateException("Comment log " + path + " has reached 2 GB");
+    }
+    try {
+      if (end > log.capacity()) {
+        map((int) Math.min(MAX_CAPACITY, Math.max(2L * log.capacity(), end)));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not grow comment log " + path, e);
+    }
+
+    int offset = writePosition;
+    ByteBuffer record = log.duplicate();
+    ((Buffer) record).position(offset);
+    record.put(frame(payload));
+
+    writePosition += recordLength;
+    return offset;
+  }
+
+  /** @return the payload preceded by its length and checksum */
+  private static ByteBuffer frame(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+
+    ByteBuffer record = ByteBuffer.allocate(PAYLOAD_OFFSET + payload.length);
+    record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+    ((Buffer) record).flip();
+    return record;
+  }
+
+  private static byte[] scorePayload(long id, float score) {
+    ByteBuffer payload = ByteBuffer.allocate(SCORE_RECORD_LENGTH - PAYLOAD_OFFSET);
+    payload.put(SCORE).putLong(id).putFloat(score);
+    return payload.array();
+  }
+
+  private int recordLength(int offset) {
+    return PAYLOAD_OFFSET + log.getInt(offset + LENGTH_OFFSET);
+  }
+
+  /** Decodes the live comment at an index position, for the callers that need objects. */
+  private Comment readComment(int index) {
+    int offset = liveOffsets[index];
+    long timestamp = log.getLong(offset + TIMESTAMP_OFFSET);
+    int bodyLength = log.getInt(offset + BODY_LENGTH_OFFSET);
+
+    byte[] bodyJson = new byte[bodyLength];
+    ByteBuffer record = log.duplicate();
+    ((Buffer) record).position(offset + BODY_OFFSET);
+    record.get(bodyJson);
+    String body = JsonResponses.fromBytes(bodyJson, String.class);
+
+    float score = liveScores[index];
+    return new Comment(
+        liveIds[index], body, timestamp, Float.isNaN(score) ? null : Float.valueOf(score));
+  }
+
+  /** @return the index position of a live comment, or (-(insertion point) - 1) if there is none */
+  private int indexOf(long id) {
+    return Arrays.binarySearch(liveIds, liveStart, liveEnd, id);
+  }
+
+  private void addLive(long id, int offset) {
+    if (liveEnd == liveIds.length) {
+      int liveCount = liveEnd - liveStart;
+      // Reclaim the deleted front first; only grow if the live entries fill most of the arrays.
+      int newLength = liveCount < liveIds.length / 2 ? liveIds.length : liveIds.length * 2;
+      liveIds = Arrays.copyOfRange(liveIds, liveStart, liveStart + newLength);
+      liveOffsets = Arrays.copyOfRange(liveOffsets, liveStart, liveStart + newLength);
+      liveScores = Arrays.copyOfRange(liveScores, liveStart, liveStart + newLength);
+      liveStart = 0;
+      liveEnd = liveCount;
+    }
+    liveIds[liveEnd] = id;
+    liveOffsets[liveEnd] = offset;
+    liveScores[liveEnd] = Float.NaN;
+    liveEnd++;
+  }
+
+  private void removeLive(int from, int to) {
+    if (from == liveStart) {
+      liveStart = to;
+      return;
+    }
+    System.arraycopy(liveIds, to, liveIds, from, liveEnd - to);
+    System.arraycopy(liveOffsets, to, liveOffsets, from, liveEnd - to);
+    System.arraycopy(liveScores, to, liveScores, from, liveEnd - to);
+    liveEnd -= to - from;
+  }
+
+  private void map(int capacity) throws IOException {
+    log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  /** Superseded scores are never purged, so they are what this mostly catches. */
+  private void compactIfMostlyDead() throws IOException {
+    if (deadBytes > INITIAL_CAPACITY && deadBytes * 2 > writePosition - HEADER_LENGTH) {
+      compact();
+    }
+  }
+
+  /**
+   * Rewrites the log with only its live comments, in their original order, followed by their
+   * latest scores, then atomically replaces the old file and replays the new one.
+   */
+  private void compact() throws IOException {
+    Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+    try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      writeHeader(header, nextId);
+      ((Buffer) header).flip();
+      out.write(header);
+
+      for (int i = liveStart; i < liveEnd; i++) {
+        int offset = liveOffsets[i];
+        ByteBuffer record = log.duplicate();
+        ((Buffer) record).position(offset);
+        ((Buffer) record).limit(offset + recordLength(offset));
+        while (record.hasRemaining()) {
+          out.write(record);
+        }
+      }
+      for (int i = liveStart; i < liveEnd; i++) {
+        if (Float.isNaN(liveScores[i])) {
+          continue;
+        }
+        ByteBuffer record = frame(scorePayload(liveIds[i], liveScores[i]));
+        while (record.hasRemaining()) {
+          out.write(record);
+        }
+      }
+      out.force(true);
+    }
+
+    channel.close();
+    Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    open();
+  }
+}
@@ -0,0 +1,49 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.PurgeJob;
+import java.util.List;
+
+/** Stores the records of comment purge jobs. Implementations must be thread-safe. */
+public interface PurgeJobRepository {
+  /**
+   * Records a new running job, leased to the given owner, and returns it with the ID it was
+   * assigned.
+   */
+  PurgeJob add(long startTime, String leaseOwner, long leaseExpiry);
+
+  /** @return the job, or null if there is no job with that ID */
+  PurgeJob get(long jobId);
+
+  /** @return the IDs of the jobs that are still running */
+  List<Long> getRunningJobIds();
+
+  /**
+   * Atomically takes over the lease of a job that {@link PurgeJob#isClaimableBy can be claimed},
+   * so only one instance runs it at a time.
+   *
+   * @return the job with its new lease, or null if it is missing, done, or leased by another owner
+   */
+  PurgeJob claim(long jobId, String owner, long now, long leaseExpiry);
+
+  /**
+   * Atomically replaces the stored record of a job, unless another owner has taken over its lease
+   * since the job was read.
+   *
+   * @return whether the record was replaced
+   */
+  boolean update(PurgeJob job);
+}
@@ -0,0 +1,63 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import java.nio.file.Paths;
+
+/**
+ * Chooses where the servlets keep their data. Datastore is used unless the sps.storage system
+ * property says otherwise, e.g. -Dsps.storage=memory to run and load-test without App Engine, or
+ * -Dsps.storage=local to keep comments in a log file named by sps.storage.path.
+ */
+public final class Repositories {
+  private static final String STORAGE_PROPERTY = "sps.storage";
+  private static final String PATH_PROPERTY = "sps.storage.path";
+
+  private static final CommentRepository COMMENTS = createCommentRepository();
+  private static final PurgeJobRepository PURGE_JOBS = createPurgeJobRepository();
+
+  private Repositories() {}
+
+  public static CommentRepository comments() {
+    return COMMENTS;
+  }
+
+  public static PurgeJobRepository purgeJobs() {
+    return PURGE_JOBS;
+  }
+
+  private static CommentRepository createCommentRepository() {
+    String storage = System.getProperty(STORAGE_PROPERTY, "datastore");
+    switch (storage) {
+      case "datastore":
+        return new DatastoreCommentRepository();
+      case "memory":
+        return new InMemoryCommentRepository();
+      case "local":
+        return new MappedCommentRepository(
+            Paths.get(System.getProperty(PATH_PROPERTY, "comments.log")));
+      default:
+        throw new IllegalStateException("Unknown " + STORAGE_PROPERTY + ": " + storage);
+    }
+  }
+
+  /** Only Datastore keeps purge jobs across restarts; a local comment log purges in one go. */
+  private static PurgeJobRepository createPurgeJobRepository() {
+    String storage = System.getProperty(STORAGE_PROPERTY, "datastore");
+    return storage.equals("datastore")
+        ? new DatastorePurgeJobRepository()
+        : new InMemoryPurgeJobRepository();
+  }
+}
@@ -0,0 +1,53 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.util;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Writes JSON responses. Gson instances are thread-safe and cache the type adapters they build,
+ * so every servlet shares one instead of creating and warming up a new one per request.
+ */
+public final class JsonResponses {
+  private static final Gson GSON = new Gson();
+
+  private JsonResponses() {}
+
+  /** Serializes the value straight into the response body, without building a String first. */
+  public static void write(HttpServletResponse response, Object value) throws IOException {
+    response.setContentType("application/json;charset=UTF-8");
+    GSON.toJson(value, response.getWriter());
+  }
+
+  /** @return the value serialized as UTF-8 JSON, for responses that are cached and reused */
+  public static byte[] toBytes(Object value) {
+    return GSON.toJson(value).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** @return the value parsed from UTF-8 JSON */
+  public static <T> T fromBytes(byte[] json, Class<T> type) {
+    return GSON.fromJson(new String(json, StandardCharsets.UTF_8), type);
+  }
+
+  /** Writes JSON that was serialized ahead of time with {@link #toBytes}. */
+  public static void writeBytes(HttpServletResponse response, byte[] json) throws IOException {
+    response.setContentType("application/json;charset=UTF-8");
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
+  }
+}
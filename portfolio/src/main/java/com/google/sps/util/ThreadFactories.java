@@ -0,0 +1,60 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.util;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.apphosting.api.ApiProxy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/** Creates threads that are allowed to call App Engine APIs such as Datastore. */
+public final class ThreadFactories {
+
+  private ThreadFactories() {}
+
+  /**
+   * @return a factory for threads that may outlive the current request. On App Engine this
+   *         requires basic or manual scaling; elsewhere plain daemon threads are used.
+   */
+  public static ThreadFactory background() {
+    if (isRunningOnAppEngine()) {
+      return ThreadManager.backgroundThreadFactory();
+    }
+    return daemonThreadFactory();
+  }
+
+  /**
+   * @return a factory for threads that end with the current request, for running parts of one
+   *         request in parallel. They must be joined before the request returns.
+   */
+  public static ThreadFactory request() {
+    if (isRunningOnAppEngine()) {
+      return ThreadManager.currentRequestThreadFactory();
+    }
+    return daemonThreadFactory();
+  }
+
+  private static boolean isRunningOnAppEngine() {
+    return ApiProxy.getCurrentEnvironment() != null;
+  }
+
+  private static ThreadFactory daemonThreadFactory() {
+    return runnable -> {
+      Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -52,6 +52,14 @@ async function displayComments() {
   const numComments = document.getElementById('num-comments').value;
   const response = await fetch('/data?num-comments=' + numComments);
   const comments = await response.json();
+
+  renderComments(comments);
+}
+
+/**
+ * Replaces the comments on the page with the given ones.
+ */
+function renderComments(comments) {
   const commentsContainer = document.getElementById('comments-container');
 
   commentsContainer.innerHTML = '';
@@ -64,13 +72,87 @@ async function displayComments() {
 }
 
 /**
- * Retrieves the login information for the user.
+ * The shortest time between two reloads of the comments when they can't be
+ * streamed, since focusing a tab can fire several events at once.
+ */
+const COMMENT_REFRESH_MIN_INTERVAL_MS = 15 * 1000;
+
+/** How long the comment stream may take to open before it is given up on. */
+const COMMENT_STREAM_OPEN_TIMEOUT_MS = 5 * 1000;
+
+/**
+ * Adds comments to the top of the page as soon as anyone posts them. Where
+ * the server can't stream them, for example on App Engine, which holds back
+ * responses until they are complete, the comments are instead reloaded when
+ * the page is shown or focused again. Posting a comment reloads the page.
+ */
+function streamNewComments() {
+  const eventSource = new EventSource('/comments-stream');
+
+  let refreshing = false;
+  const refreshOnDemand = () => {
+    if (refreshing) {
+      return;
+    }
+    refreshing = true;
+    eventSource.close();
+
+    let lastRefresh = Date.now();
+    const refresh = () => {
+      if (document.visibilityState !== 'visible' ||
+          Date.now() - lastRefresh < COMMENT_REFRESH_MIN_INTERVAL_MS) {
+        return;
+      }
+      lastRefresh = Date.now();
+      displayComments();
+    };
+    document.addEventListener('visibilitychange', refresh);
+    window.addEventListener('focus', refresh);
+  };
+
+  const openTimeout =
+      setTimeout(refreshOnDemand, COMMENT_STREAM_OPEN_TIMEOUT_MS);
+  eventSource.onopen = () => clearTimeout(openTimeout);
+  eventSource.onerror = () => {
+    // A closed source won't reconnect, for example after a 204 response.
+    if (eventSource.readyState === EventSource.CLOSED) {
+      clearTimeout(openTimeout);
+      refreshOnDemand();
+    }
+  };
+
+  eventSource.onmessage = (event) => {
+    const numComments = document.getElementById('num-comments').value;
+    const commentsContainer = document.getElementById('comments-container');
+
+    const commentElement = document.createElement('div');
+    commentElement.innerText = JSON.parse(event.data);
+    commentsContainer.prepend(commentElement);
+
+    // Keep showing no more than the number of comments that was selected.
+    if (numComments !== 'All' &&
+        commentsContainer.childElementCount > Number(numComments)) {
+      commentsContainer.lastElementChild.remove();
+    }
+  };
+}
+
+/**
+ * Displays the comments that best match the search query, best match first.
  */
-async function getLoginInfo() {
-  const response = await fetch('/login');
-  const loginInfo = await response.json();
+async function searchComments() {
+  const query = document.getElementById('search-query').value;
+  const response = await fetch('/search?q=' + encodeURIComponent(query));
+  const results = await response.json();
+  const resultsContainer = document.getElementById('search-results-container');
 
-  return loginInfo;
+  resultsContainer.innerHTML = '';
+
+  for (const result of results) {
+    const resultElement = document.createElement('div');
+    resultElement.innerText = result;
+    resultsContainer.appendChild(resultElement);
+  }
 }
 
 /**
@@ -134,18 +216,56 @@ function displayChart() {
  * Initializes all JavaScript portions of the page.
  */
 async function initializePage() {
-  displayComments();
+  streamNewComments();
   displayChart();
-  const loginInfo = await getLoginInfo();
 
-  displayLoginInfo(loginInfo);
-  displayDeleteCommentsButton(loginInfo);
+  // The comments and login information arrive together in one request.
+  const numComments = document.getElementById('num-comments').value;
+  const response = await fetch('/bootstrap?num-comments=' + numComments);
+  const bootstrap = await response.json();
+
+  renderComments(bootstrap.comments);
+  displayLoginInfo(bootstrap.loginInfo);
+  displayDeleteCommentsButton(bootstrap.loginInfo);
 }
 
+/** How long to wait for a purge job before giving up on it. */
+const PURGE_TIMEOUT_MS = 5 * 60 * 1000;
+
 /**
- * Deletes all comments currently being stored.
+ * Deletes all comments currently being stored. The deletion runs on the
+ * server in the background, so this polls its status until it is done,
+ * fails, or takes longer than PURGE_TIMEOUT_MS.
  */
 async function deleteAllComments() {
-  await fetch('/delete-data', {method: 'POST'});
+  const response = await fetch('/delete-data', {method: 'POST'});
+  if (!response.ok) {
+    return;
+  }
+
+  let purgeStatus = await response.json();
+  const deadline = Date.now() + PURGE_TIMEOUT_MS;
+  while (purgeStatus.state === 'RUNNING') {
+    if (Date.now() > deadline) {
+      console.error('Gave up waiting for purge job ' + purgeStatus.jobId);
+      break;
+    }
+
+    await new Promise((resolve) => setTimeout(resolve, 500));
+    const statusResponse =
+        await fetch('/delete-status?job-id=' + purgeStatus.jobId);
+    if (!statusResponse.ok) {
+      console.error('Could not get the status of purge job ' +
+          purgeStatus.jobId + ': ' + statusResponse.status);
+      break;
+    }
+    purgeStatus = await statusResponse.json();
+  }
+
+  if (purgeStatus.state === 'FAILED') {
+    console.error('Purge job ' + purgeStatus.jobId + ' failed: ' +
+        purgeStatus.error);
+  }
+
   displayComments();
 }
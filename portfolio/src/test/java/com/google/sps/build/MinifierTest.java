@@ -0,0 +1,167 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.build;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link Minifier} only drops comments and whitespace, and keeps literals intact. */
+@RunWith(JUnit4.class)
+public final class MinifierTest {
+  private static final String WEBAPP = "src/main/webapp/";
+
+  @Test
+  public void scriptKeepsEveryCodeLine() throws IOException {
+    String source = read("script.js");
+    List<String> expected = new ArrayList<>();
+    boolean inBlockComment = false;
+    // The script only has comments on lines of their own.
+    for (String line : source.split("\n")) {
+      String trimmed = line.trim();
+      if (trimmed.startsWith("/*")) {
+        inBlockComment = true;
+      }
+      if (!inBlockComment && !trimmed.isEmpty() && !trimmed.startsWith("//")) {
+        expected.add(withoutWhitespace(trimmed));
+      }
+      if (trimmed.endsWith("*/")) {
+        inBlockComment = false;
+      }
+    }
+
+    String minified = Minifier.minifyJs(source);
+    List<String> actual = new ArrayList<>();
+    for (String line : minified.split("\n")) {
+      actual.add(withoutWhitespace(line));
+    }
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(minified, Minifier.minifyJs(minified));
+  }
+
+  @Test
+  public void styleKeepsEveryRule() throws IOException {
+    String source = read("style.css");
+    String minified = Minifier.minifyCss(source);
+
+    Assert.assertEquals(withoutWhitespace(source).replace(";}", "}"), minified.replace(" ", ""));
+    Assert.assertFalse(minified.contains("\n"));
+    Assert.assertEquals(minified, Minifier.minifyCss(minified));
+  }
+
+  @Test
+  public void jsDropsCommentsAndCollapsesWhitespace() {
+    Assert.assertEquals("let a = 1;\nlet b = a;\n",
+        Minifier.minifyJs("// header\nlet  a = 1; /* one */\n\n   let b =\ta; // two\n"));
+  }
+
+  @Test
+  public void jsBlockCommentSpanningLinesKeepsLineBreak() {
+    Assert.assertEquals("a\nb\n", Minifier.minifyJs("a /* one\n two */ b"));
+  }
+
+  @Test
+  public void jsKeepsStrings() {
+    assertUnchanged("const url = 'http://example.com/*not a comment*/';");
+    assertUnchanged("const s = \"it\\\"s  //\";");
+  }
+
+  @Test
+  public void jsKeepsTemplateLiterals() {
+    assertUnchanged("const s = `a  // b /* c */ ${x}  d`;");
+  }
+
+  @Test
+  public void jsKeepsNestedTemplateLiterals() {
+    assertUnchanged("const s = `outer  ${ cond ? `inner  ${ `deepest  ${x}` }` : '`' }  end`;");
+    assertUnchanged("const s = `a ${ {b: `}  {`}.b } c`;");
+    assertUnchanged("const s = `a ${ f('}  `') } b`;");
+  }
+
+  @Test
+  public void jsMinifiesCodeInsideTemplateSubstitutions() {
+    Assert.assertEquals("const s = `${ a + b }`;\n",
+        Minifier.minifyJs("const s = `${  a /* sum */ +   b }`;"));
+  }
+
+  @Test
+  public void jsKeepsRegexAfterOperatorsAndKeywords() {
+    assertUnchanged("const re = /a  b/g;");
+    assertUnchanged("f(/a  [/]  b/);");
+    assertUnchanged("return /a  b/.test(s);");
+    assertUnchanged("x = typeof /a  b/;");
+    assertUnchanged("x = y + /a  b/.source;");
+  }
+
+  @Test
+  public void jsKeepsRegexAfterConditionParenthesis() {
+    assertUnchanged("if (ok) /a  b/.test(s);");
+    assertUnchanged("while (f(x)) /a  b/.exec(s);");
+  }
+
+  @Test
+  public void jsTreatsSlashAfterExpressionAsDivision() {
+    Assert.assertEquals("const x = (a + b) / 2 / c;\n",
+        Minifier.minifyJs("const x = (a + b)  /  2  /  c;"));
+    Assert.assertEquals("const x = a++ / 2 / b;\n",
+        Minifier.minifyJs("const x = a++  /  2  /  b;"));
+    Assert.assertEquals("const x = a-- / 2 / b;\n",
+        Minifier.minifyJs("const x = a--  /  2  /  b;"));
+    Assert.assertEquals("const x = a[0] / 2 / b;\n",
+        Minifier.minifyJs("const x = a[0]  /  2  /  b;"));
+    Assert.assertEquals("const x = y.return / 2 / b;\n",
+        Minifier.minifyJs("const x = y.return  /  2  /  b;"));
+  }
+
+  @Test
+  public void cssDropsCommentsWhitespaceAndLastSemicolons() {
+    Assert.assertEquals("a,b{color: red}p{margin: 0 auto}",
+        Minifier.minifyCss("/* header */\na,\nb {\n  color: red;\n}\n\np { margin: 0  auto; }\n"));
+  }
+
+  @Test
+  public void cssKeepsStrings() {
+    Assert.assertEquals("p::after{content: \"a  /* b */\"}",
+        Minifier.minifyCss("p::after {\n  content: \"a  /* b */\";\n}\n"));
+  }
+
+  @Test
+  public void htmlKeepsPreformattedText() {
+    Assert.assertEquals("<div>\n<pre>\n  keep\n    this\n</pre>\n<p>x</p>\n",
+        Minifier.minifyHtml(
+            "<div>\n  <!-- note -->\n  <pre>\n  keep\n    this\n</pre>\n    <p>x</p>\n"));
+  }
+
+  private static void assertUnchanged(String js) {
+    Assert.assertEquals(js + "\n", Minifier.minifyJs(js));
+  }
+
+  private static String read(String name) throws IOException {
+    return new String(Files.readAllBytes(Paths.get(WEBAPP + name)), StandardCharsets.UTF_8);
+  }
+
+  private static String withoutWhitespace(String text) {
+    return text.replaceAll("\\s+", "");
+  }
+}
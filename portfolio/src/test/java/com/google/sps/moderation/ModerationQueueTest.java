@@ -0,0 +1,137 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.moderation;
+
+import com.google.sps.data.Comment;
+import com.google.sps.storage.InMemoryCommentRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link ModerationQueue} batches comments, stores their scores and retries. */
+@RunWith(JUnit4.class)
+public final class ModerationQueueTest {
+  private InMemoryCommentRepository comments;
+  private RecordingScorer scorer;
+  private ModerationQueue moderationQueue;
+
+  @Before
+  public void setUp() {
+    comments = new InMemoryCommentRepository();
+    scorer = new RecordingScorer();
+    moderationQueue = new ModerationQueue(scorer, comments);
+  }
+
+  @Test
+  public void scoresQueuedCommentsInBatches() throws InterruptedException {
+    int count = ModerationQueue.MAX_BATCH_SIZE + 5;
+    for (int i = 0; i < count; i++) {
+      moderationQueue.offer(comments.add("Comment " + i, i));
+    }
+
+    Assert.assertTrue(moderationQueue.scoreNextBatch());
+    Assert.assertTrue(moderationQueue.scoreNextBatch());
+
+    Assert.assertEquals(Arrays.asList(ModerationQueue.MAX_BATCH_SIZE, 5), scorer.batchSizes);
+  }
+
+  @Test
+  public void storesScores() throws InterruptedException {
+    Comment positive = comments.add("What a great and helpful page", 1);
+    Comment negative = comments.add("This is awful", 2);
+    Comment neutral = comments.add("Hello there", 3);
+    moderationQueue.offer(positive);
+    moderationQueue.offer(negative);
+    moderationQueue.offer(neutral);
+
+    Assert.assertTrue(moderationQueue.scoreNextBatch());
+
+    List<Float> expected = new LexiconSentimentScorer().score(
+        Arrays.asList(neutral.getBody(), negative.getBody(), positive.getBody()));
+    List<Float> actual = new ArrayList<>();
+    for (Comment comment : comments.getNewest(-1)) {
+      actual.add(comment.getSentimentScore());
+    }
+    Assert.assertEquals(expected, actual);
+    Assert.assertTrue(actual.get(0) == 0);
+    Assert.assertTrue(actual.get(1) < 0);
+    Assert.assertTrue(actual.get(2) > 0);
+  }
+
+  @Test
+  public void skipsCommentsDeletedBeforeScoring() throws InterruptedException {
+    Comment deleted = comments.add("Nice", 1);
+    moderationQueue.offer(deleted);
+    comments.deleteBatch(null, 10);
+
+    Assert.assertTrue(moderationQueue.scoreNextBatch());
+
+    Assert.assertTrue(comments.getNewest(-1).isEmpty());
+  }
+
+  @Test
+  public void retriesFailedBatch() throws InterruptedException {
+    Comment comment = comments.add("Good", 1);
+    moderationQueue.offer(comment);
+    scorer.failuresLeft = 1;
+
+    Assert.assertFalse(moderationQueue.scoreNextBatch());
+    Assert.assertTrue(moderationQueue.scoreNextBatch());
+
+    Assert.assertNotNull(comments.getNewest(1).get(0).getSentimentScore());
+  }
+
+  @Test
+  public void givesUpAfterMaxAttempts() throws InterruptedException {
+    Comment comment = comments.add("Good", 1);
+    moderationQueue.offer(comment);
+    scorer.failuresLeft = Integer.MAX_VALUE;
+
+    for (int i = 0; i < ModerationQueue.MAX_ATTEMPTS; i++) {
+      Assert.assertFalse(moderationQueue.scoreNextBatch());
+    }
+
+    // Only the new comment is left in the queue.
+    scorer.failuresLeft = 0;
+    Comment next = comments.add("Fun", 2);
+    moderationQueue.offer(next);
+    Assert.assertTrue(moderationQueue.scoreNextBatch());
+    Assert.assertEquals(ModerationQueue.MAX_ATTEMPTS + 1, scorer.batchSizes.size());
+    Assert.assertEquals(1, (int) scorer.batchSizes.get(ModerationQueue.MAX_ATTEMPTS));
+    Assert.assertNull(comments.getNewest(-1).get(1).getSentimentScore());
+  }
+
+  /** Scores with the word lists, after failing a given number of times. */
+  private static final class RecordingScorer implements SentimentScorer {
+    private final SentimentScorer lexicon = new LexiconSentimentScorer();
+    final List<Integer> batchSizes = new ArrayList<>();
+    int failuresLeft = 0;
+
+    @Override
+    public List<Float> score(List<String> texts) {
+      batchSizes.add(texts.size());
+      if (failuresLeft > 0) {
+        failuresLeft--;
+        throw new IllegalStateException("Scoring failed");
+      }
+      return lexicon.score(texts);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link CommentIndex} tokenizes comments and ranks matches with BM25. */
+@RunWith(JUnit4.class)
+public final class CommentIndexTest {
+  private CommentIndex index;
+
+  @Before
+  public void setUp() {
+    index = new CommentIndex();
+  }
+
+  @Test
+  public void tokenizeSplitsOnNonAlphanumericsAndLowercases() {
+    Assert.assertEquals(Arrays.asList("hello", "world", "it", "s", "2019"),
+        CommentIndex.tokenize("Hello, WORLD! It's  2019..."));
+  }
+
+  @Test
+  public void tokenizeKeepsNonAsciiLetters() {
+    Assert.assertEquals(Arrays.asList("café", "über"), CommentIndex.tokenize("Café-Über"));
+  }
+
+  @Test
+  public void tokenizeEmptyAndNull() {
+    Assert.assertEquals(Collections.emptyList(), CommentIndex.tokenize(""));
+    Assert.assertEquals(Collections.emptyList(), CommentIndex.tokenize(" ?! "));
+    Assert.assertEquals(Collections.emptyList(), CommentIndex.tokenize(null));
+  }
+
+  @Test
+  public void ranksHigherTermFrequencyFirst() {
+    index.add(1, "cat dog bird fish");
+    index.add(2, "cat cat cat fish");
+    index.add(3, "dog bird fish frog");
+
+    Assert.assertEquals(Arrays.asList(2L, 1L), ids(index.search("cat", 10)));
+  }
+
+  @Test
+  public void ranksRareTermsAboveCommonOnes() {
+    index.add(1, "pizza is good");
+    index.add(2, "pasta is good");
+    index.add(3, "soup is good");
+
+    // "good" is in every comment, so the comment matching the rare "pasta" comes first.
+    List<Long> ids = ids(index.search("good pasta", 10));
+    Assert.assertEquals(3, ids.size());
+    Assert.assertEquals(Long.valueOf(2), ids.get(0));
+  }
+
+  @Test
+  public void ranksShorterCommentsFirstForEqualMatches() {
+    index.add(1, "garden with many flowers and trees and a pond and a fence");
+    index.add(2, "garden party");
+
+    Assert.assertEquals(Arrays.asList(2L, 1L), ids(index.search("garden", 10)));
+  }
+
+  @Test
+  public void scoresMatchBm25() {
+    index.add(1, "apple banana");
+    index.add(2, "apple apple cherry date");
+    index.add(3, "elderberry");
+
+    // Average length is 7 / 3. "apple" occurs in 2 of 3 comments.
+    double idf = Math.log(1 + (3 - 2 + 0.5) / (2 + 0.5));
+    double score1 = idf * 1 * 2.2 / (1 + 1.2 * (0.25 + 0.75 * 2 / (7 / 3.0)));
+    double score2 = idf * 2 * 2.2 / (2 + 1.2 * (0.25 + 0.75 * 4 / (7 / 3.0)));
+
+    List<Long> expected = score1 > score2 ? Arrays.asList(1L, 2L) : Arrays.asList(2L, 1L);
+    Assert.assertEquals(expected, ids(index.search("apple", 10)));
+  }
+
+  @Test
+  public void returnsBodiesAndLimitsResults() {
+    for (int i = 1; i <= 20; i++) {
+      index.add(i, "comment number " + i);
+    }
+
+    Assert.assertEquals(5, index.search("comment", 5).size());
+    Assert.assertEquals("comment number 7", index.search("7", 5).get(7L));
+    Assert.assertTrue(index.search("comment", 0).isEmpty());
+  }
+
+  @Test
+  public void queryWithoutTermsOrMatchesFindsNothing() {
+    index.add(1, "hello world");
+
+    Assert.assertTrue(index.search("", 10).isEmpty());
+    Assert.assertTrue(index.search("...", 10).isEmpty());
+    Assert.assertTrue(index.search("goodbye", 10).isEmpty());
+  }
+
+  @Test
+  public void ignoresCommentsThatAreAlreadyIndexed() {
+    index.add(1, "first body");
+    index.add(1, "second body");
+
+    Assert.assertEquals("first body", index.search("body", 10).get(1L));
+    Assert.assertTrue(index.search("second", 10).isEmpty());
+  }
+
+  @Test
+  public void removedCommentsAreNotFound() {
+    index.add(1, "shared words here");
+    index.add(2, "shared words there");
+    index.add(3, "unique");
+
+    index.remove(Arrays.asList(1L, 3L, 99L));
+
+    Assert.assertEquals(Arrays.asList(2L), ids(index.search("shared unique", 10)));
+    Assert.assertTrue(index.search("here", 10).isEmpty());
+  }
+
+  private static List<Long> ids(Map<Long, String> results) {
+    return new ArrayList<>(results.keySet());
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.search;
+
+import com.google.sps.storage.InMemoryCommentRepository;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link CommentSearcher} keeps its index in line with the stored comments. */
+@RunWith(JUnit4.class)
+public final class CommentSearcherTest {
+  private InMemoryCommentRepository comments;
+  private long now;
+  private CommentSearcher searcher;
+
+  @Before
+  public void setUp() {
+    comments = new InMemoryCommentRepository();
+    now = 1_000_000;
+    searcher = new CommentSearcher(new CommentIndex(), comments, () -> now);
+  }
+
+  @Test
+  public void buildsIndexOnFirstSearch() {
+    comments.add("hello world", 1);
+    comments.add("goodbye world", 2);
+
+    Assert.assertEquals(Arrays.asList("hello world"), searcher.search("hello", 10));
+  }
+
+  @Test
+  public void picksUpCommentsStoredElsewhereOnceSyncIsDue() {
+    Assert.assertEquals(Collections.emptyList(), searcher.search("hello", 10));
+
+    comments.add("hello from another instance", now);
+    Assert.assertEquals(Collections.emptyList(), searcher.search("hello", 10));
+
+    now += CommentSearcher.SYNC_INTERVAL_MILLIS;
+    Assert.assertEquals(Arrays.asList("hello from another instance"),
+        searcher.search("hello", 10));
+  }
+
+  @Test
+  public void picksUpCommentsWithSlightlyOlderTimestamps() {
+    comments.add("first hello", now);
+    searcher.search("hello", 10);
+
+    // Stored by an instance whose clock is behind.
+    comments.add("late hello", now - 10_000);
+    now += CommentSearcher.SYNC_INTERVAL_MILLIS;
+
+    Assert.assertEquals(2, searcher.search("hello", 10).size());
+  }
+
+  @Test
+  public void dropsDeletedCommentsAndFillsTheirPlaces() {
+    comments.add("apple apple apple", 1);
+    comments.add("apple pie", 2);
+    comments.add("apple tree and a lot of other words", 3);
+    searcher.search("apple", 2);
+
+    // Deleted elsewhere, so the index still holds the best match.
+    comments.deleteBatch(null, 1);
+
+    Assert.assertEquals(Arrays.asList("apple pie", "apple tree and a lot of other words"),
+        searcher.search("apple", 2));
+  }
+}
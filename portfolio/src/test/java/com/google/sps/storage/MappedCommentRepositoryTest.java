@@ -0,0 +1,275 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Comment;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that {@link MappedCommentRepository} recovers what was written before a crash. A crash is
+ * simulated by copying the log, cut short or damaged, to a new file and opening that.
+ */
+@RunWith(JUnit4.class)
+public final class MappedCommentRepositoryTest {
+  // The magic number and the next ID.
+  private static final int HEADER_LENGTH = 16;
+  // The payload length and its checksum.
+  private static final int FRAME_LENGTH = 8;
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path path;
+  private MappedCommentRepository comments;
+
+  @Before
+  public void setUp() throws IOException {
+    path = folder.getRoot().toPath().resolve("comments.log");
+    comments = new MappedCommentRepository(path);
+  }
+
+  @Test
+  public void reopenRestoresCommentsScoresAndDeletes() throws IOException {
+    comments.add("first", 10);
+    comments.add("second", 20);
+    comments.add("third", 30);
+    comments.setSentimentScores(scores(2L, 0.5f));
+    comments.setSentimentScores(scores(2L, -0.25f));
+    comments.deleteBatch(null, 1);
+
+    MappedCommentRepository reopened = reopen(read());
+
+    List<Comment> newest = reopened.getNewest(-1);
+    Assert.assertEquals(Arrays.asList(3L, 2L), ids(newest));
+    Assert.assertEquals(Arrays.asList("third", "second"), bodies(newest));
+    Assert.assertEquals(Arrays.asList(30L, 20L), timestamps(newest));
+    Assert.assertNull(newest.get(0).getSentimentScore());
+    Assert.assertEquals(-0.25f, newest.get(1).getSentimentScore(), 0);
+    Assert.assertEquals(4, reopened.add("fourth", 40).getId());
+  }
+
+  @Test
+  public void truncationAtRecordBoundaryKeepsEarlierRecords() throws IOException {
+    for (int i = 1; i <= 3; i++) {
+      comments.add("comment " + i, i);
+    }
+    byte[] log = read();
+    List<Integer> offsets = recordOffsets(log);
+
+    for (int kept = 0; kept < offsets.size(); kept++) {
+      MappedCommentRepository reopened = reopen(Arrays.copyOf(log, offsets.get(kept)));
+
+      List<Long> expectedIds = new ArrayList<>();
+      for (long id = kept; id >= 1; id--) {
+        expectedIds.add(id);
+      }
+      Assert.assertEquals(expectedIds, ids(reopened.getNewest(-1)));
+      Assert.assertEquals(kept + 1, reopened.add("next", 10).getId());
+    }
+  }
+
+  @Test
+  public void truncationInsideLastRecordDropsOnlyThatRecord() throws IOException {
+    comments.add("kept", 1);
+    comments.add("torn by the crash", 2);
+    byte[] log = read();
+    int tornOffset = recordOffsets(log).get(1);
+    int end = recordEnd(log, tornOffset);
+
+    // Cut inside the length, the checksum and the payload.
+    for (int cut : new int[] {tornOffset + 2, tornOffset + 6, tornOffset + 12, end - 1}) {
+      MappedCommentRepository reopened = reopen(Arrays.copyOf(log, cut));
+
+      Assert.assertEquals(Arrays.asList("kept"), bodies(reopened.getNewest(-1)));
+    }
+  }
+
+  @Test
+  public void appendAfterTornTailSurvivesReopen() throws IOException {
+    comments.add("kept", 1);
+    comments.add("a much longer comment that is torn by the crash", 2);
+    byte[] log = read();
+    int tornOffset = recordOffsets(log).get(1);
+
+    // The crash left the start of the record, and a shorter record is then appended over it.
+    MappedCommentRepository recovered = reopen(Arrays.copyOf(log, recordEnd(log, tornOffset) - 4));
+    recovered.add("short", 3);
+
+    // Nothing of the torn record is left after the new one.
+    byte[] recoveredLog = read();
+    int end = recordEnd(recoveredLog, tornOffset);
+    for (int i = end; i < recoveredLog.length; i++) {
+      Assert.assertEquals("Byte at offset " + i, 0, recoveredLog[i]);
+    }
+
+    MappedCommentRepository reopened = reopen(recoveredLog);
+    Assert.assertEquals(Arrays.asList("short", "kept"), bodies(reopened.getNewest(-1)));
+  }
+
+  @Test
+  public void corruptPayloadSkipsOnlyThatRecord() throws IOException {
+    comments.add("first", 1);
+    comments.add("second", 2);
+    comments.add("third", 3);
+    byte[] log = read();
+    int corruptOffset = recordOffsets(log).get(1);
+    log[recordEnd(log, corruptOffset) - 2] ^= 0x20;
+
+    MappedCommentRepository recovered = reopen(log);
+
+    Assert.assertEquals(Arrays.asList(3L, 1L), ids(recovered.getNewest(-1)));
+    Assert.assertEquals(4, recovered.add("fourth", 4).getId());
+
+    // Recovery rewrote the log, so it opens cleanly the next time too.
+    MappedCommentRepository reopened = reopen(read());
+    Assert.assertEquals(Arrays.asList("fourth", "third", "first"),
+        bodies(reopened.getNewest(-1)));
+  }
+
+  @Test
+  public void corruptLengthSkipsOnlyThatRecord() throws IOException {
+    comments.add("first", 1);
+    comments.add("second", 2);
+    comments.add("third", 3);
+    byte[] log = read();
+    int corruptOffset = recordOffsets(log).get(1);
+    ByteBuffer.wrap(log).putInt(corruptOffset, 1_000_000);
+
+    MappedCommentRepository reopened = reopen(log);
+
+    Assert.assertEquals(Arrays.asList("third", "first"), bodies(reopened.getNewest(-1)));
+  }
+
+  @Test
+  public void compactionKeepsLiveCommentsAndLatestScores() throws IOException {
+    for (int i = 1; i <= 4; i++) {
+      comments.add("comment " + i, i);
+    }
+    comments.setSentimentScores(scores(3L, 0.1f));
+    comments.setSentimentScores(scores(3L, 0.9f));
+    comments.deleteBatch(null, 2);
+    int sizeBefore = recordOffsets(read()).size();
+
+    // A purge compacts the log once it finds nothing more to delete.
+    Assert.assertEquals(0, comments.deleteBatch("4", 10).getDeletedCount());
+
+    byte[] log = read();
+    // Two comments and one score are left.
+    Assert.assertEquals(3, recordOffsets(log).size());
+    Assert.assertTrue(recordOffsets(log).size() < sizeBefore);
+    Assert.assertFalse(Files.exists(path.resolveSibling("comments.log.compact")));
+
+    MappedCommentRepository reopened = reopen(log);
+    List<Comment> newest = reopened.getNewest(-1);
+    Assert.assertEquals(Arrays.asList(4L, 3L), ids(newest));
+    Assert.assertEquals(0.9f, newest.get(1).getSentimentScore(), 0);
+  }
+
+  @Test
+  public void nextIdHeaderKeepsIdsOfPurgedCommentsFromBeingReused() throws IOException {
+    comments.add("first", 1);
+    comments.add("second", 2);
+    comments.deleteBatch(null, 10);
+    comments.deleteBatch("2", 10);
+
+    byte[] log = read();
+    Assert.assertEquals(Collections.emptyList(), recordOffsets(log));
+    Assert.assertEquals(3, ByteBuffer.wrap(log).getLong(HEADER_LENGTH - 8));
+
+    MappedCommentRepository reopened = reopen(log);
+    Assert.assertTrue(reopened.getNewest(-1).isEmpty());
+    Assert.assertEquals(3, reopened.add("third", 3).getId());
+  }
+
+  @Test(expected = UncheckedIOException.class)
+  public void rejectsFilesThatAreNotCommentLogs() throws IOException {
+    reopen("not a comment log".getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /** @return the current contents of the log, as a crash would leave them on disk */
+  private byte[] read() throws IOException {
+    return Files.readAllBytes(path);
+  }
+
+  /** Opens a repository on a new log with the given contents. */
+  private MappedCommentRepository reopen(byte[] log) throws IOException {
+    path = folder.newFolder().toPath().resolve("comments.log");
+    Files.write(path, log);
+    return new MappedCommentRepository(path);
+  }
+
+  /** @return the offsets of the intact-looking records, found by following their lengths */
+  private static List<Integer> recordOffsets(byte[] log) {
+    ByteBuffer buffer = ByteBuffer.wrap(log);
+    List<Integer> offsets = new ArrayList<>();
+    int offset = HEADER_LENGTH;
+    while (offset + FRAME_LENGTH <= log.length && buffer.getInt(offset) > 0) {
+      offsets.add(offset);
+      offset = recordEnd(log, offset);
+    }
+    return offsets;
+  }
+
+  private static int recordEnd(byte[] log, int offset) {
+    return offset + FRAME_LENGTH + ByteBuffer.wrap(log).getInt(offset);
+  }
+
+  private static Map<Long, Float> scores(long id, float score) {
+    Map<Long, Float> scores = new HashMap<>();
+    scores.put(id, score);
+    return scores;
+  }
+
+  private static List<Long> ids(List<Comment> comments) {
+    List<Long> ids = new ArrayList<>();
+    for (Comment comment : comments) {
+      ids.add(comment.getId());
+    }
+    return ids;
+  }
+
+  private static List<String> bodies(List<Comment> comments) {
+    List<String> bodies = new ArrayList<>();
+    for (Comment comment : comments) {
+      bodies.add(comment.getBody());
+    }
+    return bodies;
+  }
+
+  private static List<Long> timestamps(List<Comment> comments) {
+    List<Long> timestamps = new ArrayList<>();
+    for (Comment comment : comments) {
+      timestamps.add(comment.getTimestamp());
+    }
+    return timestamps;
+  }
+}
@@ -0,0 +1,231 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A dataset saved as binary columns, so it loads with a few bulk copies instead of being parsed.
+ *
+ * <p>The format is little-endian throughout:
+ *
+ * <pre>
+ *   int    magic, "SPSC"
+ *   int    format version
+ *   int    row count
+ *   int    column count
+ *   long   CRC-32 of everything after the header
+ *   byte[] column types (1 = double, 2 = int), padded to 8 bytes
+ *   the columns, one after the other, each padded to 8 bytes
+ * </pre>
+ */
+public final class ColumnSnapshot {
+  private static final int MAGIC = 0x43535053;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 24;
+
+  private static final byte DOUBLE_COLUMN = 1;
+  private static final byte INT_COLUMN = 2;
+
+  private final int rowCount;
+  private final byte[] types;
+  private final ByteBuffer[] columns;
+
+  private ColumnSnapshot(int rowCount, byte[] types, ByteBuffer[] columns) {
+    this.rowCount = rowCount;
+    this.types = types;
+    this.columns = columns;
+  }
+
+  /** Collects the columns of a new snapshot. Every column must have the same number of rows. */
+  public static final class Builder {
+    private final List<Object> columns = new ArrayList<>();
+    private int rowCount = -1;
+
+    public Builder addDoubles(double[] column) {
+      checkRowCount(column.length);
+      columns.add(column);
+      return this;
+    }
+
+    public Builder addInts(int[] column) {
+      checkRowCount(column.length);
+      columns.add(column);
+      return this;
+    }
+
+    private void checkRowCount(int length) {
+      if (rowCount != -1 && length != rowCount) {
+        throw new IllegalArgumentException("Expected " + rowCount + " rows but got " + length);
+      }
+      rowCount = length;
+    }
+
+    /** Writes the snapshot to a temporary file and then moves it over the old one, if any. */
+    public void writeTo(Path file) throws IOException {
+      int rows = Math.max(rowCount, 0);
+      long length = HEADER_BYTES + padded(columns.size());
+      for (Object column : columns) {
+        length += padded((long) rows * (column instanceof double[] ? Double.BYTES : Integer.BYTES));
+      }
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Snapshots must be smaller than 2 GB");
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns.size()).putLong(0);
+      for (Object column : columns) {
+        buffer.put(column instanceof double[] ? DOUBLE_COLUMN : INT_COLUMN);
+      }
+      skipToPadding(buffer);
+      for (Object column : columns) {
+        if (column instanceof double[]) {
+          buffer.asDoubleBuffer().put((double[]) column);
+          skip(buffer, rows * Double.BYTES);
+        } else {
+          buffer.asIntBuffer().put((int[]) column);
+          skip(buffer, rows * Integer.BYTES);
+        }
+        skipToPadding(buffer);
+      }
+      buffer.putLong(16, checksum(buffer));
+
+      Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.write(temporaryFile, buffer.array());
+      Files.move(temporaryFile, file,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /**
+   * Reads a snapshot, usually one mapped by {@link MappedFiles}. The columns are not copied until
+   * they are asked for.
+   *
+   * @throws IOException if the data is not a snapshot of this version, or fails its checksum
+   */
+  public static ColumnSnapshot read(ByteBuffer data) throws IOException {
+    ByteBuffer buffer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a snapshot");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+    }
+
+    int rowCount = buffer.getInt(8);
+    int columnCount = buffer.getInt(12);
+    if (rowCount < 0 || columnCount < 0
+        || HEADER_BYTES + padded(columnCount) > buffer.limit()) {
+      throw new IOException("Corrupt snapshot header");
+    }
+
+    byte[] types = new byte[columnCount];
+    ByteBuffer[] columns = new ByteBuffer[columnCount];
+    long offset = HEADER_BYTES + padded(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      types[i] = buffer.get(HEADER_BYTES + i);
+      long length;
+      if (types[i] == DOUBLE_COLUMN) {
+        length = (long) rowCount * Double.BYTES;
+      } else if (types[i] == INT_COLUMN) {
+        length = (long) rowCount * Integer.BYTES;
+      } else {
+        throw new IOException("Unknown type " + types[i] + " of column " + i);
+      }
+      if (offset + length > buffer.limit()) {
+        throw new IOException("Snapshot is truncated");
+      }
+      columns[i] = slice(buffer, (int) offset, (int) length);
+      offset += padded(length);
+    }
+    if (offset != buffer.limit()) {
+      throw new IOException("Snapshot has " + (buffer.limit() - offset) + " extra bytes");
+    }
+    if (buffer.getLong(16) != checksum(buffer)) {
+      throw new IOException("Snapshot fails its checksum");
+    }
+
+    return new ColumnSnapshot(rowCount, types, columns);
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /** @throws IllegalArgumentException if the column does not hold doubles */
+  public double[] getDoubles(int column) {
+    checkType(column, DOUBLE_COLUMN);
+    double[] values = new double[rowCount];
+    columns[column].duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+    return values;
+  }
+
+  /** @throws IllegalArgumentException if the column does not hold ints */
+  public int[] getInts(int column) {
+    checkType(column, INT_COLUMN);
+    int[] values = new int[rowCount];
+    columns[column].duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+    return values;
+  }
+
+  private void checkType(int column, byte type) {
+    if (column >= columns.length) {
+      throw new IllegalArgumentException("The snapshot has only " + columns.length + " columns");
+    }
+    if (types[column] != type) {
+      throw new IllegalArgumentException("Column " + column + " has type " + types[column]);
+    }
+  }
+
+  /** @return the CRC-32 of everything after the header */
+  private static long checksum(ByteBuffer buffer) {
+    CRC32 crc = new CRC32();
+    crc.update(slice(buffer, HEADER_BYTES, buffer.limit() - HEADER_BYTES));
+    return crc.getValue();
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+    // Buffer casts keep this working on Java 8, whose ByteBuffer doesn't override these methods.
+    ByteBuffer duplicate = buffer.duplicate();
+    ((Buffer) duplicate).limit(offset + length);
+    ((Buffer) duplicate).position(offset);
+    return duplicate.slice();
+  }
+
+  private static void skip(ByteBuffer buffer, int bytes) {
+    ((Buffer) buffer).position(buffer.position() + bytes);
+  }
+
+  private static void skipToPadding(ByteBuffer buffer) {
+    ((Buffer) buffer).position((int) padded(buffer.position()));
+  }
+
+  private static long padded(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+}
@@ -0,0 +1,265 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+/**
+ * Loads CSV files of numbers into column arrays. The file is parsed byte by byte, straight from the
+ * buffer that {@link MappedFiles} mapped it into, so no String is created per line or cell. Large
+ * files can be split into chunks at line boundaries and parsed on several threads.
+ *
+ * <p>Every non-blank line is a row, cells are separated by commas, and there is no header.
+ */
+public final class CsvLoader {
+  /** Files are only split into chunks of at least this size, smaller ones aren't worth a thread. */
+  private static final int MIN_CHUNK_BYTES = 1 << 20;
+
+  /** Integers up to 2^53 and powers of ten up to 10^22 are exact doubles. */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  private CsvLoader() {}
+
+  /**
+   * Parses every row of the CSV into columns, so that cell i of row j ends up in result[i][j].
+   *
+   * @param parallelism the most threads to parse with, 1 to parse on the calling thread only
+   * @throws IllegalArgumentException if a row has fewer cells than columnCount, or a cell is not a
+   *     number
+   */
+  public static double[][] readColumns(ByteBuffer data, int columnCount, int parallelism) {
+    int chunkCount = Math.max(1, Math.min(parallelism, data.limit() / MIN_CHUNK_BYTES));
+    int[] chunkStart = splitAtLines(data, chunkCount);
+
+    // Count the rows first so that every chunk knows where its rows go in the columns.
+    int[] firstRow = new int[chunkCount + 1];
+    forEachChunk(chunkCount, chunk ->
+        firstRow[chunk + 1] = countRows(data, chunkStart[chunk], chunkStart[chunk + 1]));
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      firstRow[chunk + 1] += firstRow[chunk];
+    }
+
+    double[][] columns = new double[columnCount][firstRow[chunkCount]];
+    forEachChunk(chunkCount, chunk ->
+        parseRows(data, chunkStart[chunk], chunkStart[chunk + 1], firstRow[chunk], columns));
+    return columns;
+  }
+
+  /**
+   * Converts a column that {@link #readColumns} parsed into ints.
+   *
+   * @param index the index of the column, for the error message
+   * @throws IllegalArgumentException if a value is not an int, e.g. 2.5 or 3e9
+   */
+  public static int[] toInts(double[] column, int index) {
+    int[] ints = new int[column.length];
+    for (int row = 0; row < column.length; row++) {
+      ints[row] = (int) column[row];
+      if (ints[row] != column[row]) {
+        throw new IllegalArgumentException(
+            "Row " + (row + 1) + " of column " + index + " is not an int: " + column[row]);
+      }
+    }
+    return ints;
+  }
+
+  /** @return chunkCount + 1 offsets, each chunk starting at the beginning of a line */
+  private static int[] splitAtLines(ByteBuffer data, int chunkCount) {
+    int[] chunkStart = new int[chunkCount + 1];
+    for (int chunk = 1; chunk < chunkCount; chunk++) {
+      int position = Math.max(
+          (int) ((long) data.limit() * chunk / chunkCount), chunkStart[chunk - 1]);
+      position = indexOf(data, (byte) '\n', position, data.limit());
+      chunkStart[chunk] = Math.min(position + 1, data.limit());
+    }
+    chunkStart[chunkCount] = data.limit();
+    return chunkStart;
+  }
+
+  /**
+   * Runs the task for every chunk, on one thread per chunk if there is more than one. Whatever a
+   * worker thread throws, Errors such as OutOfMemoryError included, is rethrown to the caller.
+   */
+  static void forEachChunk(int chunkCount, IntConsumer task) {
+    if (chunkCount == 1) {
+      task.accept(0);
+      return;
+    }
+
+    Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[chunkCount];
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      int currentChunk = chunk;
+      threads[chunk] = new Thread(() -> {
+        try {
+          task.accept(currentChunk);
+        } catch (Throwable e) {
+          synchronized (failure) {
+            failure[0] = e;
+          }
+        }
+      });
+      threads[chunk].start();
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while parsing", e);
+    }
+    synchronized (failure) {
+      if (failure[0] instanceof RuntimeException) {
+        throw (RuntimeException) failure[0];
+      }
+      if (failure[0] instanceof Error) {
+        throw (Error) failure[0];
+      }
+      if (failure[0] != null) {
+        throw new IllegalStateException("Parsing failed", failure[0]);
+      }
+    }
+  }
+
+  private static int countRows(ByteBuffer data, int start, int end) {
+    int rows = 0;
+    int position = start;
+    while (position < end) {
+      int lineEnd = indexOf(data, (byte) '\n', position, end);
+      if (!isBlank(data, position, lineEnd)) {
+        rows++;
+      }
+      position = lineEnd + 1;
+    }
+    return rows;
+  }
+
+  private static void parseRows(
+      ByteBuffer data, int start, int end, int row, double[][] columns) {
+    int position = start;
+    while (position < end) {
+      int lineEnd = indexOf(data, (byte) '\n', position, end);
+      if (!isBlank(data, position, lineEnd)) {
+        int cellStart = position;
+        for (int column = 0; column < columns.length; column++) {
+          boolean last = column == columns.length - 1;
+          int cellEnd = last ? lineEnd : indexOf(data, (byte) ',', cellStart, lineEnd);
+          if (cellEnd == lineEnd && !last) {
+            throw new IllegalArgumentException(
+                "Row " + (row + 1) + " has fewer than " + columns.length + " cells");
+          }
+          columns[column][row] = parseNumber(data, cellStart, cellEnd, row);
+          cellStart = cellEnd + 1;
+        }
+        row++;
+      }
+      position = lineEnd + 1;
+    }
+  }
+
+  /**
+   * Parses plain decimal numbers like -122.7144313 straight from the bytes. The result is exactly
+   * what Double.parseDouble would return: the digits form an exact double, and so does the power of
+   * ten they are divided by. Anything else, such as exponents or more digits than a double holds
+   * exactly, falls back to Double.parseDouble.
+   */
+  private static double parseNumber(ByteBuffer data, int start, int end, int row) {
+    while (start < end && isSpace(data.get(start))) {
+      start++;
+    }
+    while (end > start && isSpace(data.get(end - 1))) {
+      end--;
+    }
+
+    int position = start;
+    boolean negative = false;
+    if (position < end && (data.get(position) == '-' || data.get(position) == '+')) {
+      negative = data.get(position) == '-';
+      position++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean seenPoint = false;
+    for (; position < end; position++) {
+      byte b = data.get(position);
+      if (b >= '0' && b <= '9') {
+        if (mantissa > (MAX_EXACT_MANTISSA - 9) / 10) {
+          return parseSlowly(data, start, end, row);
+        }
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (seenPoint) {
+          fractionDigits++;
+        }
+      } else if (b == '.' && !seenPoint) {
+        seenPoint = true;
+      } else {
+        return parseSlowly(data, start, end, row);
+      }
+    }
+    if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+      return parseSlowly(data, start, end, row);
+    }
+
+    double value = mantissa / POWERS_OF_TEN[fractionDigits];
+    return negative ? -value : value;
+  }
+
+  private static double parseSlowly(ByteBuffer data, int start, int end, int row) {
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = data.get(start + i);
+    }
+    String text = new String(bytes, StandardCharsets.US_ASCII);
+    try {
+      return Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Row " + (row + 1) + " has a cell that is not a number: '"
+          + text + "'");
+    }
+  }
+
+  /** @return the position of the first b in [start, end), or end if there is none */
+  private static int indexOf(ByteBuffer data, byte b, int start, int end) {
+    for (int position = start; position < end; position++) {
+      if (data.get(position) == b) {
+        return position;
+      }
+    }
+    return end;
+  }
+
+  private static boolean isBlank(ByteBuffer data, int start, int end) {
+    for (int position = start; position < end; position++) {
+      if (!isSpace(data.get(position))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.servlet.ServletContext;
+
+/** Maps the data files of the web app into memory. */
+public final class MappedFiles {
+  private MappedFiles() {}
+
+  /**
+   * Maps a file of the web app into memory. If the servlet container can't name a file for it, for
+   * example because the app runs from a packed WAR, the file is read into a buffer instead.
+   *
+   * @throws FileNotFoundException if the web app has no such file
+   */
+  public static ByteBuffer open(ServletContext context, String path) throws IOException {
+    String realPath = context.getRealPath(path);
+    if (realPath != null && Files.isRegularFile(Paths.get(realPath))) {
+      return map(Paths.get(realPath));
+    }
+
+    try (InputStream in = context.getResourceAsStream(path)) {
+      if (in == null) {
+        throw new FileNotFoundException(path);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+      return ByteBuffer.wrap(bytes.toByteArray());
+    }
+  }
+
+  /** Maps a file into memory. Files must be smaller than 2 GB. */
+  public static ByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+}
@@ -0,0 +1,178 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link ColumnSnapshot} reads back what it wrote, and nothing that was damaged. */
+@RunWith(JUnit4.class)
+public final class ColumnSnapshotTest {
+  private static final double[] LATS = {38.4404675, -0.0, Double.NaN, Double.NEGATIVE_INFINITY};
+  private static final int[] YEARS = {1950, Integer.MIN_VALUE, Integer.MAX_VALUE, 0};
+  // Three rows of ints end in padding, which the checksum covers as well.
+  private static final int[] ODD_INTS = {1, 2, 3};
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void readsBackEveryColumn() throws IOException {
+    Path file = write(new ColumnSnapshot.Builder().addDoubles(LATS).addInts(YEARS));
+
+    ColumnSnapshot snapshot = ColumnSnapshot.read(MappedFiles.map(file));
+
+    Assert.assertEquals(4, snapshot.getRowCount());
+    Assert.assertEquals(2, snapshot.getColumnCount());
+    Assert.assertEquals(bits(LATS), bits(snapshot.getDoubles(0)));
+    Assert.assertArrayEquals(YEARS, snapshot.getInts(1));
+  }
+
+  @Test
+  public void readsBackPaddedColumns() throws IOException {
+    Path file = write(new ColumnSnapshot.Builder().addInts(ODD_INTS).addInts(ODD_INTS));
+
+    ColumnSnapshot snapshot = ColumnSnapshot.read(MappedFiles.map(file));
+
+    Assert.assertArrayEquals(ODD_INTS, snapshot.getInts(0));
+    Assert.assertArrayEquals(ODD_INTS, snapshot.getInts(1));
+  }
+
+  @Test
+  public void readsBackEmptySnapshots() throws IOException {
+    ColumnSnapshot noColumns = ColumnSnapshot.read(bytes(new ColumnSnapshot.Builder()));
+    Assert.assertEquals(0, noColumns.getRowCount());
+    Assert.assertEquals(0, noColumns.getColumnCount());
+
+    ColumnSnapshot noRows =
+        ColumnSnapshot.read(bytes(new ColumnSnapshot.Builder().addDoubles(new double[0])));
+    Assert.assertEquals(0, noRows.getRowCount());
+    Assert.assertEquals(0, noRows.getDoubles(0).length);
+  }
+
+  @Test
+  public void replacesTheOldFile() throws IOException {
+    Path file = write(new ColumnSnapshot.Builder().addInts(YEARS));
+    new ColumnSnapshot.Builder().addInts(ODD_INTS).writeTo(file);
+
+    Assert.assertArrayEquals(ODD_INTS, ColumnSnapshot.read(MappedFiles.map(file)).getInts(0));
+    Assert.assertArrayEquals(
+        new String[] {file.getFileName().toString()}, folder.getRoot().list());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsColumnsOfDifferentLengths() {
+    new ColumnSnapshot.Builder().addDoubles(LATS).addInts(ODD_INTS);
+  }
+
+  @Test
+  public void rejectsReadsOfTheWrongType() throws IOException {
+    ColumnSnapshot snapshot =
+        ColumnSnapshot.read(bytes(new ColumnSnapshot.Builder().addDoubles(LATS).addInts(YEARS)));
+
+    assertRejectsRead(() -> snapshot.getInts(0));
+    assertRejectsRead(() -> snapshot.getDoubles(1));
+    assertRejectsRead(() -> snapshot.getInts(2));
+  }
+
+  @Test
+  public void rejectsOtherFiles() {
+    assertCorrupt(new byte[0]);
+    assertCorrupt(
+        "latitude,longitude\n38.4404675,-122.7144313\n".getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @Test
+  public void rejectsOtherVersions() throws IOException {
+    ByteBuffer data = bytes(new ColumnSnapshot.Builder().addInts(YEARS));
+    data.order(ByteOrder.LITTLE_ENDIAN).putInt(4, 2);
+
+    assertCorrupt(data.array());
+  }
+
+  @Test
+  public void rejectsTruncatedSnapshots() throws IOException {
+    byte[] data = bytes(new ColumnSnapshot.Builder().addDoubles(LATS).addInts(YEARS)).array();
+
+    for (int length = 0; length < data.length; length++) {
+      assertCorrupt(Arrays.copyOf(data, length));
+    }
+  }
+
+  @Test
+  public void rejectsExtraBytes() throws IOException {
+    byte[] data = bytes(new ColumnSnapshot.Builder().addInts(YEARS)).array();
+
+    assertCorrupt(Arrays.copyOf(data, data.length + 8));
+  }
+
+  @Test
+  public void rejectsEveryFlippedBit() throws IOException {
+    byte[] data = bytes(new ColumnSnapshot.Builder().addDoubles(LATS).addInts(YEARS)).array();
+
+    for (int bit = 0; bit < data.length * 8; bit++) {
+      byte[] damaged = data.clone();
+      damaged[bit / 8] ^= 1 << (bit % 8);
+      assertCorrupt(damaged);
+    }
+  }
+
+  private Path write(ColumnSnapshot.Builder builder) throws IOException {
+    Path file = folder.getRoot().toPath().resolve("data.bin");
+    builder.writeTo(file);
+    return file;
+  }
+
+  private ByteBuffer bytes(ColumnSnapshot.Builder builder) throws IOException {
+    return ByteBuffer.wrap(Files.readAllBytes(write(builder)));
+  }
+
+  private static void assertCorrupt(byte[] data) {
+    try {
+      ColumnSnapshot.read(ByteBuffer.wrap(data));
+      Assert.fail("Read " + data.length + " damaged bytes as a snapshot");
+    } catch (IOException expected) {
+      // Expected.
+    }
+  }
+
+  private static void assertRejectsRead(Runnable read) {
+    try {
+      read.run();
+      Assert.fail("Read a column as the wrong type");
+    } catch (IllegalArgumentException expected) {
+      // Expected.
+    }
+  }
+
+  /** Compares the bits, so that NaN and -0 are told apart too. */
+  private static String bits(double[] values) {
+    long[] bits = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bits[i] = Double.doubleToRawLongBits(values[i]);
+    }
+    return Arrays.toString(bits);
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link CsvLoader} parses exactly the same doubles as Double.parseDouble. */
+@RunWith(JUnit4.class)
+public final class CsvLoaderTest {
+  private static final List<String> NUMBERS = Arrays.asList(
+      "0", "-0", "+0", "-0.0", "1.", "-1.", ".5", "-.5", "+5", "+0.25", "  7 ", "\t-3\t",
+      "1e5", "1E-3", "-2.5e+10", "6.02214076e23", "4.9e-324", "1.7976931348623157e308",
+      "0.1", "0.3", "-122.7144313", "47.6062095", "9007199254740991", "9007199254740993",
+      "12345678901234567", "123456789012345678901", "3.141592653589793238",
+      "1234567890.1234567890123", "0.0000000000000000000001", "0.00000000000000000000001",
+      "99999999999999999999999999.5");
+
+  @Test
+  public void parsesNumbersLikeParseDouble() {
+    String csv = String.join("\n", NUMBERS) + "\n";
+
+    double[] column = CsvLoader.readColumns(bytes(csv), 1, 1)[0];
+
+    Assert.assertEquals(NUMBERS.size(), column.length);
+    for (int i = 0; i < NUMBERS.size(); i++) {
+      assertSameDouble(NUMBERS.get(i), Double.parseDouble(NUMBERS.get(i)), column[i]);
+    }
+  }
+
+  @Test
+  public void skipsBlankLinesAndCarriageReturns() {
+    String csv = "\r\n1,2\r\n\r\n   \n\t\r\n-3.5,+4\r\n\n5,6";
+
+    double[][] columns = CsvLoader.readColumns(bytes(csv), 2, 1);
+
+    Assert.assertArrayEquals(new double[] {1, -3.5, 5}, columns[0], 0);
+    Assert.assertArrayEquals(new double[] {2, 4, 6}, columns[1], 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsShortRows() {
+    CsvLoader.readColumns(bytes("1,2\n3\n"), 2, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsLongRows() {
+    CsvLoader.readColumns(bytes("1,2,3\n"), 2, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsCellsThatAreNotNumbers() {
+    CsvLoader.readColumns(bytes("1,2\n3,x\n"), 2, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsEmptyCells() {
+    CsvLoader.readColumns(bytes("1,\n"), 2, 1);
+  }
+
+  @Test
+  public void parsesChunksLikeOneThread() {
+    // Rows of varying length, so the points where the file is split fall inside rows.
+    Random random = new Random(42);
+    StringBuilder csv = new StringBuilder();
+    List<String[]> rows = new ArrayList<>();
+    while (csv.length() < 5 << 20) {
+      String[] row = {
+          String.format(Locale.ROOT, "%.7f", random.nextDouble() * 180 - 90),
+          Double.toString(random.nextDouble() * 360 - 180),
+          NUMBERS.get(random.nextInt(NUMBERS.size())).trim()};
+      rows.add(row);
+      csv.append(String.join(",", row)).append(random.nextBoolean() ? "\r\n" : "\n");
+      if (random.nextInt(100) == 0) {
+        csv.append("\n");
+      }
+    }
+    ByteBuffer data = bytes(csv.toString());
+    Assert.assertNotEquals('\n', data.get(data.limit() / 4 - 1));
+
+    double[][] columns = CsvLoader.readColumns(data, 3, 4);
+
+    Assert.assertEquals(rows.size(), columns[0].length);
+    for (int row = 0; row < rows.size(); row++) {
+      for (int column = 0; column < 3; column++) {
+        String cell = rows.get(row)[column];
+        assertSameDouble(cell, Double.parseDouble(cell), columns[column][row]);
+      }
+    }
+  }
+
+  @Test
+  public void convertsWholeNumbersToInts() {
+    double[] column = {0, -0.0, 1950, -7, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+    Assert.assertArrayEquals(new int[] {0, 0, 1950, -7, Integer.MAX_VALUE, Integer.MIN_VALUE},
+        CsvLoader.toInts(column, 0));
+  }
+
+  @Test
+  public void rejectsNumbersThatAreNotInts() {
+    double[] notInts = {2.5, -0.1, 3e9, -3e9, Double.NaN, Double.POSITIVE_INFINITY};
+    for (double notInt : notInts) {
+      try {
+        CsvLoader.toInts(new double[] {1, notInt}, 1);
+        Assert.fail(notInt + " was accepted as an int");
+      } catch (IllegalArgumentException expected) {
+        Assert.assertEquals(
+            "Row 2 of column 1 is not an int: " + notInt, expected.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void rethrowsErrorsFromWorkerThreads() {
+    try {
+      CsvLoader.forEachChunk(4, chunk -> {
+        if (chunk == 2) {
+          throw new WorkerError();
+        }
+      });
+      Assert.fail("The worker's Error was lost");
+    } catch (WorkerError expected) {
+      // Expected.
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rethrowsExceptionsFromWorkerThreads() {
+    CsvLoader.forEachChunk(4, chunk -> {
+      if (chunk == 3) {
+        throw new IllegalArgumentException();
+      }
+    });
+  }
+
+  private static ByteBuffer bytes(String csv) {
+    return ByteBuffer.wrap(csv.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /** Compares the bits, so that 0 and -0 are told apart. */
+  private static void assertSameDouble(String cell, double expected, double actual) {
+    Assert.assertEquals(
+        "'" + cell + "'", Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+  }
+
+  /** Stands in for Errors such as OutOfMemoryError. */
+  private static final class WorkerError extends Error {}
+}
@@ -0,0 +1,158 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A response body that never changes, encoded once into bytes plus a gzip copy. Serving it is one
+ * write of the right array, and clients that send back its ETag get a 304 without a body.
+ */
+public final class PrecomputedResponse {
+  private final String contentType;
+  private final byte[] body;
+  /** Null if compressing doesn't make the body smaller, as with very short bodies. */
+  private final byte[] gzippedBody;
+  private final String etag;
+  private final String gzippedEtag;
+
+  public PrecomputedResponse(String contentType, byte[] body) {
+    this.contentType = contentType;
+    this.body = body;
+
+    byte[] gzipped = gzip(body);
+    gzippedBody = gzipped.length < body.length ? gzipped : null;
+
+    String hash = hash(body);
+    etag = "\"" + hash + "\"";
+    // The compressed copy is a different representation, so it needs its own strong ETag.
+    gzippedEtag = "\"" + hash + "-gzip\"";
+  }
+
+  public static PrecomputedResponse ofText(String contentType, String text) {
+    return new PrecomputedResponse(contentType, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Writes the body, compressed if the client accepts gzip, or a 304 if the client has it. */
+  public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    boolean gzipped = gzippedBody != null && acceptsGzip(request.getHeader("Accept-Encoding"));
+    if (gzippedBody != null) {
+      response.addHeader("Vary", "Accept-Encoding");
+    }
+    response.setHeader("ETag", gzipped ? gzippedEtag : etag);
+
+    if (matches(request.getHeader("If-None-Match"))) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    byte[] bytes = gzipped ? gzippedBody : body;
+    response.setContentType(contentType);
+    if (gzipped) {
+      response.setHeader("Content-Encoding", "gzip");
+    }
+    response.setContentLength(bytes.length);
+    if (!request.getMethod().equals("HEAD")) {
+      response.getOutputStream().write(bytes);
+    }
+  }
+
+  /** @return whether If-None-Match names either encoding of this body */
+  boolean matches(String ifNoneMatch) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag) || tag.equals(gzippedEtag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether Accept-Encoding gives gzip a quality above zero. An entry for gzip itself
+   *         takes precedence over the * wildcard, wherever either appears in the list.
+   */
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    double gzipQuality = -1;
+    double wildcardQuality = -1;
+    for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      if (name.equals("gzip")) {
+        gzipQuality = Math.max(gzipQuality, quality(parts));
+      } else if (name.equals("*")) {
+        wildcardQuality = Math.max(wildcardQuality, quality(parts));
+      }
+    }
+    return (gzipQuality >= 0 ? gzipQuality : wildcardQuality) > 0;
+  }
+
+  /** @return the q parameter of one Accept-Encoding entry, 1 if it has none, or 0 if it is bad */
+  private static double quality(String[] parts) {
+    for (int i = 1; i < parts.length; i++) {
+      String parameter = parts[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(bytes);
+    } catch (IOException e) {
+      throw new AssertionError("Writing to memory failed", e);
+    }
+    return compressed.toByteArray();
+  }
+
+  /** @return the first 64 bits of the SHA-256 of the bytes, in hex */
+  private static String hash(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      StringBuilder hex = new StringBuilder();
+      for (int i = 0; i < 8; i++) {
+        hex.append(String.format("%02x", digest[i]));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError("Every JVM has SHA-256", e);
+    }
+  }
+}
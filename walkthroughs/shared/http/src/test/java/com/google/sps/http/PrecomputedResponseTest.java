@@ -0,0 +1,245 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests how {@link PrecomputedResponse} negotiates gzip, ETags and HEAD requests. */
+@RunWith(JUnit4.class)
+public final class PrecomputedResponseTest {
+  private static final String TEXT = repeat("All that is gold does not glitter. ", 20);
+
+  private final PrecomputedResponse response = PrecomputedResponse.ofText("text/plain", TEXT);
+
+  @Test
+  public void acceptsGzipWithAQualityAboveZero() {
+    Assert.assertTrue(PrecomputedResponse.acceptsGzip("gzip"));
+    Assert.assertTrue(PrecomputedResponse.acceptsGzip("GZip"));
+    Assert.assertTrue(PrecomputedResponse.acceptsGzip("deflate, gzip;q=0.001, br"));
+    Assert.assertTrue(PrecomputedResponse.acceptsGzip(" gzip ; q=0.5 "));
+    Assert.assertTrue(PrecomputedResponse.acceptsGzip("*"));
+
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip(null));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip(""));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("deflate, br, identity"));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("gzip;q=0"));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("gzip;q=0.000"));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("gzip;q=high"));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("*;q=0"));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("x-gzip"));
+  }
+
+  @Test
+  public void prefersTheGzipEntryOverTheWildcard() {
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("gzip;q=0, *"));
+    Assert.assertFalse(PrecomputedResponse.acceptsGzip("*, gzip;q=0"));
+    Assert.assertTrue(PrecomputedResponse.acceptsGzip("*;q=0, gzip"));
+    Assert.assertTrue(PrecomputedResponse.acceptsGzip("gzip;q=0.5, *;q=0"));
+  }
+
+  @Test
+  public void matchesEitherEtag() throws IOException {
+    String etag = serve(response, "GET", null, null).getHeader("ETag");
+    String gzippedEtag = serve(response, "GET", "gzip", null).getHeader("ETag");
+    Assert.assertNotEquals(etag, gzippedEtag);
+
+    Assert.assertTrue(response.matches(etag));
+    Assert.assertTrue(response.matches(gzippedEtag));
+    Assert.assertTrue(response.matches("W/" + etag));
+    Assert.assertTrue(response.matches("\"other\", " + gzippedEtag + " ,\"more\""));
+    Assert.assertTrue(response.matches("*"));
+
+    Assert.assertFalse(response.matches(null));
+    Assert.assertFalse(response.matches(""));
+    Assert.assertFalse(response.matches("\"other\""));
+    Assert.assertFalse(response.matches(etag.replace("\"", "")));
+    Assert.assertFalse(PrecomputedResponse.ofText("text/plain", TEXT + "!").matches(etag));
+  }
+
+  @Test
+  public void servesTheBodyAsItIs() throws IOException {
+    FakeResponse served = serve(response, "GET", "deflate", null);
+
+    Assert.assertEquals(HttpServletResponse.SC_OK, served.status);
+    Assert.assertEquals("text/plain", served.contentType);
+    Assert.assertEquals("Accept-Encoding", served.getHeader("Vary"));
+    Assert.assertNull(served.getHeader("Content-Encoding"));
+    Assert.assertEquals(TEXT, served.body.toString("UTF-8"));
+    Assert.assertEquals(served.body.size(), served.contentLength);
+  }
+
+  @Test
+  public void servesTheGzipCopyToClientsThatAcceptIt() throws IOException {
+    FakeResponse served = serve(response, "GET", "gzip, deflate", null);
+
+    Assert.assertEquals("gzip", served.getHeader("Content-Encoding"));
+    Assert.assertEquals("Accept-Encoding", served.getHeader("Vary"));
+    Assert.assertTrue(served.body.size() < TEXT.length());
+    Assert.assertEquals(served.body.size(), served.contentLength);
+    Assert.assertEquals(TEXT, gunzip(served.body.toByteArray()));
+  }
+
+  @Test
+  public void servesShortBodiesUncompressed() throws IOException {
+    PrecomputedResponse quote = PrecomputedResponse.ofText("text/html;charset=UTF-8", "Hi\n");
+
+    FakeResponse served = serve(quote, "GET", "gzip", null);
+
+    Assert.assertNull(served.getHeader("Content-Encoding"));
+    Assert.assertNull(served.getHeader("Vary"));
+    Assert.assertEquals("Hi\n", served.body.toString("UTF-8"));
+  }
+
+  @Test
+  public void answersHeadRequestsWithoutABody() throws IOException {
+    FakeResponse get = serve(response, "GET", "gzip", null);
+    FakeResponse head = serve(response, "HEAD", "gzip", null);
+
+    Assert.assertEquals(HttpServletResponse.SC_OK, head.status);
+    Assert.assertEquals(get.headers, head.headers);
+    Assert.assertEquals(get.contentType, head.contentType);
+    Assert.assertEquals(get.contentLength, head.contentLength);
+    Assert.assertEquals(0, head.body.size());
+  }
+
+  @Test
+  public void answersMatchingRequestsWithNotModified() throws IOException {
+    String gzippedEtag = serve(response, "GET", "gzip", null).getHeader("ETag");
+
+    for (String method : new String[] {"GET", "HEAD"}) {
+      FakeResponse served = serve(response, method, "gzip", gzippedEtag);
+
+      Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, served.status);
+      Assert.assertEquals(gzippedEtag, served.getHeader("ETag"));
+      Assert.assertNull(served.getHeader("Content-Encoding"));
+      Assert.assertEquals(-1, served.contentLength);
+      Assert.assertEquals(0, served.body.size());
+    }
+  }
+
+  private static FakeResponse serve(PrecomputedResponse precomputed, String method,
+      String acceptEncoding, String ifNoneMatch) throws IOException {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Accept-Encoding", acceptEncoding);
+    headers.put("If-None-Match", ifNoneMatch);
+    HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(), new Class<?>[] {HttpServletRequest.class},
+        (proxy, called, args) -> {
+          switch (called.getName()) {
+            case "getMethod":
+              return method;
+            case "getHeader":
+              return headers.get((String) args[0]);
+            default:
+              throw new UnsupportedOperationException(called.getName());
+          }
+        });
+
+    FakeResponse served = new FakeResponse();
+    precomputed.serve(request, served.asServletResponse());
+    return served;
+  }
+
+  /** Records what is set on a response. Only the methods that PrecomputedResponse calls work. */
+  private static final class FakeResponse {
+    final Map<String, String> headers = new HashMap<>();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    int status = HttpServletResponse.SC_OK;
+    String contentType;
+    int contentLength = -1;
+
+    String getHeader(String name) {
+      return headers.get(name);
+    }
+
+    HttpServletResponse asServletResponse() {
+      ServletOutputStream out = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+          body.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+          throw new UnsupportedOperationException();
+        }
+      };
+      return (HttpServletResponse) Proxy.newProxyInstance(
+          HttpServletResponse.class.getClassLoader(), new Class<?>[] {HttpServletResponse.class},
+          (proxy, called, args) -> {
+            switch (called.getName()) {
+              case "setHeader":
+              case "addHeader":
+                Assert.assertNull(
+                    "Repeated " + args[0], headers.put((String) args[0], (String) args[1]));
+                return null;
+              case "setStatus":
+                status = (Integer) args[0];
+                return null;
+              case "setContentType":
+                contentType = (String) args[0];
+                return null;
+              case "setContentLength":
+                contentLength = (Integer) args[0];
+                return null;
+              case "getOutputStream":
+                return out;
+              default:
+                throw new UnsupportedOperationException(called.getName());
+            }
+          });
+    }
+  }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[4096];
+      for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+        text.write(buffer, 0, read);
+      }
+    }
+    return new String(text.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static String repeat(String text, int times) {
+    StringBuilder repeated = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      repeated.append(text);
+    }
+    return repeated.toString();
+  }
+}
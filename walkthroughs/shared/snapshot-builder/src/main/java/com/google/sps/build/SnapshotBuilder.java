@@ -0,0 +1,61 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.build;
+
+import com.google.sps.data.ColumnSnapshot;
+import com.google.sps.data.CsvLoader;
+import com.google.sps.data.MappedFiles;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Build step that converts a CSV dataset into a {@link ColumnSnapshot}, so the servlet can load it
+ * at startup without parsing any text. Run by the exec-maven-plugin with the CSV file, the snapshot
+ * file, and the type of every column, e.g. "double,double". It lives in a module of its own so that
+ * it only runs at build time and never ships in a WAR.
+ */
+public final class SnapshotBuilder {
+  private SnapshotBuilder() {}
+
+  public static void main(String[] args) throws IOException {
+    Path csvFile = Paths.get(args[0]);
+    Path snapshotFile = Paths.get(args[1]);
+    String[] types = args[2].split(",");
+
+    double[][] columns = CsvLoader.readColumns(
+        MappedFiles.map(csvFile), types.length, Runtime.getRuntime().availableProcessors());
+
+    ColumnSnapshot.Builder snapshot = new ColumnSnapshot.Builder();
+    for (int i = 0; i < types.length; i++) {
+      switch (types[i]) {
+        case "double":
+          snapshot.addDoubles(columns[i]);
+          break;
+        case "int":
+          snapshot.addInts(CsvLoader.toInts(columns[i], i));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown column type: " + types[i]);
+      }
+    }
+
+    Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+    snapshot.writeTo(snapshotFile);
+    System.out.println(csvFile.getFileName() + ": " + Files.size(csvFile) + " -> "
+        + snapshotFile.getFileName() + ": " + Files.size(snapshotFile) + " bytes");
+  }
+}
@@ -0,0 +1,173 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.counters;
+
+import com.google.sps.storage.PageViewRepository;
+import com.google.sps.storage.Repositories;
+import com.google.sps.storage.ViewsPage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts page views per path. Views are added to striped LongAdder cells, so concurrent requests
+ * never contend on a shared count, and every {@link #FLUSH_INTERVAL_MILLIS} one request writes some
+ * of the views gathered since the last flush to storage and reads a page of the stored totals,
+ * which include the views counted by other instances. Both steps are bounded, so the request that
+ * flushes is never held up by more than a few Datastore calls.
+ */
+public final class PageViewCounter {
+  private static final long FLUSH_INTERVAL_MILLIS = 10_000;
+
+  /** Paths come from the client, so only this many are counted separately. */
+  private static final int MAX_PATHS = 1_000;
+  private static final String OTHER_PATH = "(other)";
+
+  /** Each path written is a transaction, so a flush writes this many and leaves the rest. */
+  private static final int MAX_PATHS_PER_FLUSH = 10;
+  /** How many stored counters a flush reads. */
+  private static final int COUNTERS_PER_FLUSH = 500;
+
+  private static final PageViewCounter INSTANCE = new PageViewCounter(Repositories.pageViews());
+
+  private final PageViewRepository repository;
+  private final Map<String, LongAdder> unflushedViews = new ConcurrentHashMap<>();
+  private volatile Map<String, Long> storedViews = new ConcurrentHashMap<>();
+
+  /** Held by the request that flushes; the fields below are only used under it. */
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private volatile long nextFlushMillis = 0;
+  /** The path the previous flush wrote last, so the next one carries on after it. */
+  private String lastWrittenPath = "";
+  /** Totals read so far by the scan in progress, and where it continues. */
+  private Map<String, Long> scannedViews = new HashMap<>();
+  private String scanCursor = null;
+
+  private PageViewCounter(PageViewRepository repository) {
+    this.repository = repository;
+  }
+
+  public static PageViewCounter getInstance() {
+    return INSTANCE;
+  }
+
+  public void recordView(String path) {
+    LongAdder views = unflushedViews.get(path);
+    if (views == null) {
+      String countedPath = unflushedViews.size() < MAX_PATHS ? path : OTHER_PATH;
+      views = unflushedViews.computeIfAbsent(countedPath, unused -> new LongAdder());
+    }
+    views.increment();
+
+    flushIfDue();
+  }
+
+  /** @return the views of the path, including those not yet written to storage */
+  public long getViews(String path) {
+    LongAdder unflushed = unflushedViews.get(path);
+    return storedViews.getOrDefault(path, 0L) + (unflushed == null ? 0 : unflushed.sum());
+  }
+
+  /** @return the views of all paths, including those not yet written to storage */
+  public long getTotalViews() {
+    long total = 0;
+    for (long views : storedViews.values()) {
+      total += views;
+    }
+    for (LongAdder views : unflushedViews.values()) {
+      total += views.sum();
+    }
+    return total;
+  }
+
+  /** Only one request flushes at a time, and the others don't wait for it. */
+  private void flushIfDue() {
+    long now = System.currentTimeMillis();
+    if (now < nextFlushMillis || !flushLock.tryLock()) {
+      return;
+    }
+    try {
+      if (now >= nextFlushMillis) {
+        nextFlushMillis = now + FLUSH_INTERVAL_MILLIS;
+        writeViews();
+        readViews();
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /** Writes up to {@link #MAX_PATHS_PER_FLUSH} paths, taking turns so every path gets written. */
+  private void writeViews() {
+    NavigableMap<String, Long> pending = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> entry : unflushedViews.entrySet()) {
+      long views = entry.getValue().sum();
+      if (views > 0) {
+        pending.put(entry.getKey(), views);
+      }
+    }
+    List<Map.Entry<String, Long>> inTurn =
+        new ArrayList<>(pending.tailMap(lastWrittenPath, false).entrySet());
+    inTurn.addAll(pending.headMap(lastWrittenPath, true).entrySet());
+
+    int count = Math.min(inTurn.size(), MAX_PATHS_PER_FLUSH);
+    for (Map.Entry<String, Long> entry : inTurn.subList(0, count)) {
+      String path = entry.getKey();
+      long views = entry.getValue();
+      lastWrittenPath = path;
+      try {
+        repository.addViews(path, views);
+      } catch (RuntimeException e) {
+        // The views stay unflushed for a later flush rather than get lost.
+        System.err.println("Could not store page views of " + path + ": " + e);
+        continue;
+      }
+
+      // Moved across in this order, the views are never missing from getViews(). Only the views
+      // that were written are taken off, so those counted in the meantime stay unflushed.
+      storedViews.merge(path, views, Long::sum);
+      unflushedViews.get(path).add(-views);
+    }
+  }
+
+  /**
+   * Reads the next page of stored counters. Once the last page is read, the totals replace the
+   * stored views, except where what this instance has written since makes those larger.
+   */
+  private void readViews() {
+    ViewsPage page;
+    try {
+      page = repository.getViews(scanCursor, COUNTERS_PER_FLUSH);
+    } catch (RuntimeException e) {
+      System.err.println("Could not load page views: " + e);
+      return;
+    }
+    page.getViews().forEach((path, views) -> scannedViews.merge(path, views, Long::sum));
+
+    scanCursor = page.getNextCursor();
+    if (scanCursor == null) {
+      // Counts only grow, so the larger of the two is the more recent.
+      storedViews.forEach((path, views) -> scannedViews.merge(path, views, Math::max));
+      storedViews = new ConcurrentHashMap<>(scannedViews);
+      scannedViews = new HashMap<>();
+    }
+  }
+}
@@ -14,6 +14,7 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.counters.PageViewCounter;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -23,15 +24,29 @@ import javax.servlet.http.HttpServletResponse;
 /** Servlet that returns HTML that contains the page view count. */
 @WebServlet("/page-views")
 public class PageViewServlet extends HttpServlet {
-
-  private int pageViews = 0;
+  private static final int MAX_PATH_LENGTH = 200;
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    pageViews++;
+    String path = getPath(request);
+
+    PageViewCounter counter = PageViewCounter.getInstance();
+    counter.recordView(path);
 
     response.setContentType("text/html;");
     response.getWriter().println("<h1>Page Views</h1>");
-    response.getWriter().println("<p>This page has been viewed " + pageViews + " times.</p>");
+    response.getWriter().println(
+        "<p>This page has been viewed " + counter.getViews(path) + " times.</p>");
+    response.getWriter().println(
+        "<p>All pages have been viewed " + counter.getTotalViews() + " times.</p>");
+  }
+
+  /** @return the page being viewed, from the path parameter, which defaults to "/" */
+  private static String getPath(HttpServletRequest request) {
+    String path = request.getParameter("path");
+    if (path == null || path.isEmpty()) {
+      return "/";
+    }
+    return path.length() > MAX_PATH_LENGTH ? path.substring(0, MAX_PATH_LENGTH) : path;
   }
 }
@@ -0,0 +1,90 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stores page view counts as sharded counters. Each path's count is split over
+ * {@link #NUM_SHARDS} PageViewShard entities and every write goes to a random one, so writes from
+ * many instances rarely land on the same entity, which Datastore can only update about once a
+ * second. The count of a path is the sum of its shards.
+ */
+public final class DatastorePageViewRepository implements PageViewRepository {
+  private static final String KIND = "PageViewShard";
+  private static final int NUM_SHARDS = 20;
+
+  @Override
+  public void addViews(String path, long views) {
+    int shard = ThreadLocalRandom.current().nextInt(NUM_SHARDS);
+    Key key = KeyFactory.createKey(KIND, path + "#" + shard);
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity shardEntity;
+      try {
+        shardEntity = datastore.get(transaction, key);
+      } catch (EntityNotFoundException e) {
+        shardEntity = new Entity(key);
+        shardEntity.setProperty("path", path);
+        shardEntity.setUnindexedProperty("count", 0L);
+      }
+
+      long count = (long) shardEntity.getProperty("count");
+      shardEntity.setUnindexedProperty("count", count + views);
+      datastore.put(transaction, shardEntity);
+      transaction.commit();
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  @Override
+  public ViewsPage getViews(String cursor, int limit) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(limit);
+    if (cursor != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    QueryResultList<Entity> shards =
+        datastore.prepare(new Query(KIND)).asQueryResultList(fetchOptions);
+
+    Map<String, Long> viewsByPath = new HashMap<>();
+    for (Entity shardEntity : shards) {
+      String path = (String) shardEntity.getProperty("path");
+      long count = (long) shardEntity.getProperty("count");
+      viewsByPath.merge(path, count, Long::sum);
+    }
+    String nextCursor = shards.size() < limit ? null : shards.getCursor().toWebSafeString();
+    return new ViewsPage(viewsByPath, nextCursor);
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/** Keeps page view counts in memory, for running and profiling the servlet without App Engine. */
+public final class InMemoryPageViewRepository implements PageViewRepository {
+  private final ConcurrentNavigableMap<String, Long> viewsByPath = new ConcurrentSkipListMap<>();
+
+  @Override
+  public void addViews(String path, long views) {
+    viewsByPath.merge(path, views, Long::sum);
+  }
+
+  /** Pages through the paths in order, and the cursor is the last path read. */
+  @Override
+  public ViewsPage getViews(String cursor, int limit) {
+    Map<String, Long> remaining =
+        cursor == null ? viewsByPath : viewsByPath.tailMap(cursor, false);
+
+    Map<String, Long> views = new HashMap<>();
+    String lastPath = null;
+    for (Map.Entry<String, Long> entry : remaining.entrySet()) {
+      if (views.size() == limit) {
+        return new ViewsPage(views, lastPath);
+      }
+      views.put(entry.getKey(), entry.getValue());
+      lastPath = entry.getKey();
+    }
+    return new ViewsPage(views, null);
+  }
+}
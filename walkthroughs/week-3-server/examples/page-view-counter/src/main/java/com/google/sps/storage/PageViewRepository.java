@@ -0,0 +1,29 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+/** Stores page view counts. Implementations must be thread-safe. */
+public interface PageViewRepository {
+  /** Adds views to the stored count of the path. */
+  void addViews(String path, long views);
+
+  /**
+   * Reads the stored counts a part at a time, so no single call has to go through all of them.
+   *
+   * @param cursor where the previous page ended, or null to start from the beginning
+   * @param limit the most stored counters to read
+   */
+  ViewsPage getViews(String cursor, int limit);
+}
@@ -0,0 +1,41 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import java.util.Map;
+
+/** Stored view counts read by one call to {@link PageViewRepository#getViews}. */
+public final class ViewsPage {
+  private final Map<String, Long> views;
+  private final String nextCursor;
+
+  public ViewsPage(Map<String, Long> views, String nextCursor) {
+    this.views = views;
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * @return the views read, by path. A path's count can be split over pages, so the counts of all
+   *         pages have to be added up.
+   */
+  public Map<String, Long> getViews() {
+    return views;
+  }
+
+  /** @return where the next page starts, or null if this was the last page */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
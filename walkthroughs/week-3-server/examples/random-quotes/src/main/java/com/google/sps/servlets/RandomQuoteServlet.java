@@ -14,6 +14,7 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.http.PrecomputedResponse;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -22,11 +23,15 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that returns a random quote. */
+/**
+ * Servlet that returns a random quote. Every quote is encoded once in init and served as bytes with
+ * an ETag, so a client that happens to get the quote it already has gets a 304 instead.
+ */
 @WebServlet("/random-quote")
 public final class RandomQuoteServlet extends HttpServlet {
 
   private List<String> quotes;
+  private List<PrecomputedResponse> responses;
 
   @Override
   public void init() {
@@ -46,13 +51,16 @@ public final class RandomQuoteServlet extends HttpServlet {
         "Sometimes it is the people no one can imagine anything of "
             + "who do the things no one can imagine. - Alan Turing");
     quotes.add("Those who can imagine anything, can create the impossible. - Alan Turing");
+
+    responses = new ArrayList<>();
+    for (String quote : quotes) {
+      responses.add(PrecomputedResponse.ofText("text/html;charset=UTF-8", quote + "\n"));
+    }
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    String quote = quotes.get((int) (Math.random() * quotes.size()));
-
-    response.setContentType("text/html;");
-    response.getWriter().println(quote);
+    PrecomputedResponse quote = responses.get((int) (Math.random() * responses.size()));
+    quote.serve(request, response);
   }
 }
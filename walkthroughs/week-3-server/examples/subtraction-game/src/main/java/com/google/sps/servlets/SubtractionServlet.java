@@ -26,13 +26,14 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/subtraction-game")
 public final class SubtractionServlet extends HttpServlet {
 
+  private static final Gson GSON = new Gson();
+
   private SubtractionGame game = new SubtractionGame();
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     response.setContentType("application/json");
-    String json = new Gson().toJson(game);
-    response.getWriter().println(json);
+    GSON.toJson(game, response.getWriter());
   }
 
   @Override
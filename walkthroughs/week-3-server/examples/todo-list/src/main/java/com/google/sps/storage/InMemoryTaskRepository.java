@@ -0,0 +1,59 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Task;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps tasks in memory, for running and load-testing the servlets without App Engine. Tasks are
+ * kept sorted the way the Datastore query returns them: newest first, ties broken by ID.
+ */
+public final class InMemoryTaskRepository implements TaskRepository {
+  private static final Comparator<Task> NEWEST_FIRST =
+      Comparator.comparingLong(Task::getTimestamp).reversed().thenComparingLong(Task::getId);
+
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final Map<Long, Task> tasksById = new ConcurrentHashMap<>();
+  private final NavigableSet<Task> tasksByTime = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+
+  @Override
+  public Task add(String title, long timestamp) {
+    Task task = new Task(nextId.getAndIncrement(), title, timestamp);
+    tasksById.put(task.getId(), task);
+    tasksByTime.add(task);
+    return task;
+  }
+
+  @Override
+  public List<Task> getAll() {
+    return new ArrayList<>(tasksByTime);
+  }
+
+  @Override
+  public void delete(long id) {
+    Task task = tasksById.remove(id);
+    if (task != null) {
+      tasksByTime.remove(task);
+    }
+  }
+}
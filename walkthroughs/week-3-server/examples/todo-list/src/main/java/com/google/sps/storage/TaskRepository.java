@@ -0,0 +1,30 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Task;
+import java.util.List;
+
+/** Stores the tasks on the todo list. Implementations must be thread-safe. */
+public interface TaskRepository {
+  /** Stores a new task and returns it with the ID it was assigned. */
+  Task add(String title, long timestamp);
+
+  /** Returns every task, newest first. */
+  List<Task> getAll();
+
+  /** Deletes the task with the given ID, if there is one. */
+  void delete(long id);
+}
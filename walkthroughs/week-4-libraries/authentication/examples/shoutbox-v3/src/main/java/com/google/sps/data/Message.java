@@ -0,0 +1,41 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/** A message posted to the shoutbox. */
+public final class Message {
+
+  private final String text;
+  private final String email;
+  private final long timestamp;
+
+  public Message(String text, String email, long timestamp) {
+    this.text = text;
+    this.email = email;
+    this.timestamp = timestamp;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+}
@@ -14,14 +14,10 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
+import com.google.sps.data.Message;
+import com.google.sps.storage.Repositories;
 import java.io.IOException;
 import java.io.PrintWriter;
 import javax.servlet.annotation.WebServlet;
@@ -55,13 +51,8 @@ public class ShoutboxServlet extends HttpServlet {
 
     // Everybody can see the messages
     out.println("<ul>");
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("Message").addSort("timestamp", SortDirection.DESCENDING);
-    PreparedQuery results = datastore.prepare(query);
-    for (Entity entity : results.asIterable()) {
-      String text = (String) entity.getProperty("text");
-      String email = (String) entity.getProperty("email");
-      out.println("<li>" + email + ": " + text + "</li>");
+    for (Message message : Repositories.messages().getNewest()) {
+      out.println("<li>" + message.getEmail() + ": " + message.getText() + "</li>");
     }
     out.println("</ul>");
   }
@@ -80,12 +71,7 @@ public class ShoutboxServlet extends HttpServlet {
     String text = request.getParameter("text");
     String email = userService.getCurrentUser().getEmail();
 
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Entity messageEntity = new Entity("Message");
-    messageEntity.setProperty("text", text);
-    messageEntity.setProperty("email", email);
-    messageEntity.setProperty("timestamp", System.currentTimeMillis());
-    datastore.put(messageEntity);
+    Repositories.messages().add(new Message(text, email, System.currentTimeMillis()));
 
     // Redirect to /shoutbox. The request will be routed to the doGet() function above.
     response.sendRedirect("/shoutbox");
@@ -0,0 +1,62 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Message;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps messages in memory, for running and load-testing the servlet without App Engine. Messages
+ * come back newest first like the Datastore query; ties keep the order they were posted in.
+ */
+public final class InMemoryMessageRepository implements MessageRepository {
+  private static final Comparator<StoredMessage> NEWEST_FIRST =
+      Comparator.<StoredMessage>comparingLong(stored -> stored.message.getTimestamp())
+          .reversed()
+          .thenComparingLong(stored -> stored.sequence);
+
+  private final AtomicLong nextSequence = new AtomicLong();
+  private final NavigableSet<StoredMessage> messages = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+
+  @Override
+  public void add(Message message) {
+    messages.add(new StoredMessage(nextSequence.getAndIncrement(), message));
+  }
+
+  @Override
+  public List<Message> getNewest() {
+    List<Message> newest = new ArrayList<>();
+    for (StoredMessage stored : messages) {
+      newest.add(stored.message);
+    }
+    return newest;
+  }
+
+  /** Messages have no ID, so each one is tagged with its insertion order to keep them distinct. */
+  private static final class StoredMessage {
+    final long sequence;
+    final Message message;
+
+    StoredMessage(long sequence, Message message) {
+      this.sequence = sequence;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Keeps nicknames in memory, for running and load-testing the servlets without App Engine. */
+public final class InMemoryUserInfoRepository implements UserInfoRepository {
+  private final Map<String, String> nicknames = new ConcurrentHashMap<>();
+
+  @Override
+  public String getNickname(String id) {
+    return nicknames.get(id);
+  }
+
+  @Override
+  public void setNickname(String id, String nickname) {
+    nicknames.put(id, nickname);
+  }
+}
@@ -0,0 +1,24 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+/** Stores the nickname each user has chosen. Implementations must be thread-safe. */
+public interface UserInfoRepository {
+  /** Returns the nickname of the user with id, or null if the user has not set a nickname. */
+  String getNickname(String id);
+
+  /** Sets the nickname of the user with id, replacing any earlier one. */
+  void setNickname(String id, String nickname);
+}
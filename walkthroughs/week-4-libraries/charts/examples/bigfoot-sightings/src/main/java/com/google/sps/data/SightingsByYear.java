@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Sighting counts for a range of consecutive years, stored in an int array indexed by the year's
+ * offset from the first year. A prefix-sum array built alongside it gives the total of any range of
+ * years in constant time.
+ */
+public final class SightingsByYear {
+  private final int firstYear;
+  private final int[] counts;
+
+  /** sums[i] is the total of counts[0] to counts[i - 1], so sums[0] is 0. */
+  private final long[] sums;
+
+  /**
+   * Years may come in any order and with gaps, which count as years without sightings. Repeated
+   * years are added up.
+   */
+  public SightingsByYear(int[] years, int[] sightings) {
+    if (years.length != sightings.length) {
+      throw new IllegalArgumentException(
+          years.length + " years but " + sightings.length + " sighting counts");
+    }
+
+    int first = Integer.MAX_VALUE;
+    int last = Integer.MIN_VALUE;
+    for (int year : years) {
+      first = Math.min(first, year);
+      last = Math.max(last, year);
+    }
+    if (years.length == 0) {
+      first = 0;
+      last = -1;
+    }
+
+    firstYear = first;
+    counts = new int[last - first + 1];
+    for (int i = 0; i < years.length; i++) {
+      counts[years[i] - firstYear] += sightings[i];
+    }
+
+    sums = new long[counts.length + 1];
+    for (int i = 0; i < counts.length; i++) {
+      sums[i + 1] = sums[i] + counts[i];
+    }
+  }
+
+  /** @return whether there are no years at all */
+  public boolean isEmpty() {
+    return counts.length == 0;
+  }
+
+  public int getFirstYear() {
+    return firstYear;
+  }
+
+  public int getLastYear() {
+    return firstYear + counts.length - 1;
+  }
+
+  /** @return the sightings in the year, 0 for years outside the dataset */
+  public int getCount(int year) {
+    int offset = year - firstYear;
+    return offset >= 0 && offset < counts.length ? counts[offset] : 0;
+  }
+
+  /** @return the total sightings from fromYear to toYear, both inclusive */
+  public long sum(int fromYear, int toYear) {
+    int from = clampOffset(fromYear);
+    int to = clampOffset((long) toYear + 1);
+    return from < to ? sums[to] - sums[from] : 0;
+  }
+
+  /** @return the offset of the year into sums, where offsets outside the dataset are clamped */
+  private int clampOffset(long year) {
+    return (int) Math.max(0, Math.min(year - firstYear, counts.length));
+  }
+}
@@ -15,41 +15,201 @@
 package com.google.sps.servlets;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.ColumnSnapshot;
+import com.google.sps.data.CsvLoader;
+import com.google.sps.data.MappedFiles;
+import com.google.sps.data.SightingsByYear;
+import com.google.sps.http.PrecomputedResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.Scanner;
+import java.util.Map;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}] */
+/**
+ * Returns bigfoot data as a JSON object, e.g. {"2017": 52, "2018": 34}
+ *
+ * <p>Optional parameters:
+ *
+ * <ul>
+ *   <li>from and to limit the result to a range of years, both inclusive.
+ *   <li>bucket=decade or bucket=N adds up the sightings per decade or per N years, starting at the
+ *       first year, e.g. {"1950-1959": 20, "1960-1969": 113}.
+ *   <li>average=N returns the average sightings per year over the N years up to and including
+ *       each year, e.g. {"2017": 49.2, "2018": 45.8}.
+ * </ul>
+ *
+ * <p>Responses are encoded once and then served as bytes with an ETag, gzip-compressed for clients
+ * that accept it.
+ */
 @WebServlet("/bigfoot-data")
 public class BigfootDataServlet extends HttpServlet {
 
-  private LinkedHashMap<Integer, Integer> bigfootSightings = new LinkedHashMap<>();
+  private static final Gson GSON = new Gson();
+
+  /** The longest bucket or moving average window, in years. */
+  private static final int MAX_YEARS = 1000;
+
+  /** The most encoded responses to queries kept in memory. */
+  private static final int MAX_CACHED_RESPONSES = 256;
+
+  private static final String CSV_PATH = "/WEB-INF/bigfoot-sightings-by-year.csv";
+  /** Written from the CSV at build time by SnapshotBuilder, see walkthroughs/shared. */
+  private static final String SNAPSHOT_PATH = "/WEB-INF/bigfoot-sightings-by-year.bin";
+
+  private SightingsByYear bigfootSightings;
+
+  /** The response without parameters, every year, encoded once in init. */
+  private PrecomputedResponse allYears;
+
+  /** Encoded responses by their normalized parameters, least recently used first. */
+  private final Map<String, PrecomputedResponse> responseCache = Collections.synchronizedMap(
+      new LinkedHashMap<String, PrecomputedResponse>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PrecomputedResponse> eldest) {
+          return size() > MAX_CACHED_RESPONSES;
+        }
+      });
 
   @Override
-  public void init() {
-    Scanner scanner = new Scanner(getServletContext().getResourceAsStream(
-        "/WEB-INF/bigfoot-sightings-by-year.csv"));
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      String[] cells = line.split(",");
+  public void init() throws ServletException {
+    int[][] columns;
+    try {
+      columns = loadColumns();
+    } catch (IOException e) {
+      throw new ServletException("Could not read the bigfoot data", e);
+    }
 
-      Integer year = Integer.valueOf(cells[0]);
-      Integer sightings = Integer.valueOf(cells[1]);
+    bigfootSightings = new SightingsByYear(columns[0], columns[1]);
 
-      bigfootSightings.put(year, sightings);
+    try {
+      allYears = new PrecomputedResponse("application/json", encode(bigfootSightings,
+          bigfootSightings.getFirstYear(), bigfootSightings.getLastYear(), false, 1, 1));
+    } catch (IOException e) {
+      throw new AssertionError("Writing to memory failed", e);
     }
-    scanner.close();
+  }
+
+  /**
+   * Loads the years and sighting counts from the binary snapshot, or parses the CSV if there is no
+   * usable one.
+   */
+  private int[][] loadColumns() throws IOException {
+    try {
+      ColumnSnapshot snapshot =
+          ColumnSnapshot.read(MappedFiles.open(getServletContext(), SNAPSHOT_PATH));
+      return new int[][] {snapshot.getInts(0), snapshot.getInts(1)};
+    } catch (FileNotFoundException e) {
+      // The build step didn't run, e.g. when the app is started straight from the sources.
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Ignoring " + SNAPSHOT_PATH + ": " + e.getMessage());
+    }
+
+    ByteBuffer csv = MappedFiles.open(getServletContext(), CSV_PATH);
+    double[][] columns = CsvLoader.readColumns(csv, 2, Runtime.getRuntime().availableProcessors());
+    return new int[][] {CsvLoader.toInts(columns[0], 0), CsvLoader.toInts(columns[1], 1)};
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(bigfootSightings);
-    response.getWriter().println(json);
+    if (request.getQueryString() == null) {
+      allYears.serve(request, response);
+      return;
+    }
+
+    int from;
+    int to;
+    boolean decades = "decade".equals(request.getParameter("bucket"));
+    int bucketYears;
+    int averageYears;
+    try {
+      from = getIntParameter(request, "from", bigfootSightings.getFirstYear());
+      to = getIntParameter(request, "to", bigfootSightings.getLastYear());
+      bucketYears = decades ? 10 : getIntParameter(request, "bucket", 1);
+      averageYears = getIntParameter(request, "average", 1);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    if (bucketYears < 1 || bucketYears > MAX_YEARS
+        || averageYears < 1 || averageYears > MAX_YEARS) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "bucket and average must be between 1 and " + MAX_YEARS);
+      return;
+    }
+    if (bucketYears > 1 && averageYears > 1) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "bucket and average can't be combined");
+      return;
+    }
+
+    from = Math.max(from, bigfootSightings.getFirstYear());
+    to = Math.min(to, bigfootSightings.getLastYear());
+
+    String key = from + "/" + to + "/" + (decades ? "decade" : bucketYears) + "/" + averageYears;
+    PrecomputedResponse cached = responseCache.get(key);
+    if (cached == null) {
+      cached = new PrecomputedResponse("application/json",
+          encode(bigfootSightings, from, to, decades, bucketYears, averageYears));
+      responseCache.put(key, cached);
+    }
+    cached.serve(request, response);
+  }
+
+  /** Encodes the response to a query whose parameters have already been checked. */
+  static byte[] encode(SightingsByYear sightings, int from, int to, boolean decades,
+      int bucketYears, int averageYears) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    JsonWriter json = GSON.newJsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+    json.beginObject();
+    if (bucketYears > 1) {
+      // Decades line up with the calendar, other buckets start at the first year.
+      int start = decades ? Math.floorDiv(from, 10) * 10 : from;
+      for (int bucketStart = start; bucketStart <= to; bucketStart += bucketYears) {
+        int bucketEnd = bucketStart + bucketYears - 1;
+        json.name(bucketStart + "-" + bucketEnd);
+        json.value(sightings.sum(Math.max(bucketStart, from), Math.min(bucketEnd, to)));
+      }
+    } else if (averageYears > 1) {
+      for (int year = from; year <= to; year++) {
+        // Early years average over the years the dataset has.
+        int windowStart = Math.max(year - averageYears + 1, sightings.getFirstYear());
+        json.name(Integer.toString(year));
+        json.value((double) sightings.sum(windowStart, year) / (year - windowStart + 1));
+      }
+    } else {
+      for (int year = from; year <= to; year++) {
+        json.name(Integer.toString(year)).value(sightings.getCount(year));
+      }
+    }
+    json.endObject();
+    json.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return the int value of the parameter, or defaultValue if it is missing
+   * @throws NumberFormatException if the value is not an int
+   */
+  private static int getIntParameter(HttpServletRequest request, String name, int defaultValue) {
+    String value = request.getParameter(name);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new NumberFormatException(name + " is not a number: " + value);
+    }
   }
 }
@@ -17,7 +17,8 @@ google.charts.setOnLoadCallback(drawChart);
 
 /** Fetches bigfoot sightings data and uses it to create a chart. */
 function drawChart() {
-  fetch('/bigfoot-data').then(response => response.json())
+  const grouping = document.getElementById('grouping').value;
+  fetch('/bigfoot-data?' + grouping).then(response => response.json())
   .then((bigfootSightings) => {
     const data = new google.visualization.DataTable();
     data.addColumn('string', 'Year');
@@ -0,0 +1,77 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that the bigfoot dataset the app ships holds one whole count for every year. */
+@RunWith(JUnit4.class)
+public final class BigfootDataTest {
+  private static final Path CSV =
+      Paths.get("src/main/webapp/WEB-INF/bigfoot-sightings-by-year.csv");
+
+  private double[][] columns;
+
+  @Before
+  public void setUp() throws IOException {
+    columns = CsvLoader.readColumns(MappedFiles.map(CSV), 2, 1);
+  }
+
+  @Test
+  public void yearsAreConsecutive() {
+    double[] years = columns[0];
+    Assert.assertTrue(years.length > 0);
+    Assert.assertEquals(1950, years[0], 0);
+    for (int i = 1; i < years.length; i++) {
+      Assert.assertEquals(years[i - 1] + 1, years[i], 0);
+    }
+  }
+
+  @Test
+  public void countsAreWholeAndNotNegative() {
+    for (int row = 0; row < columns[1].length; row++) {
+      double count = columns[1][row];
+      Assert.assertTrue("Year " + columns[0][row], count >= 0 && count == Math.rint(count));
+    }
+  }
+
+  @Test
+  public void sightingsByYearKeepsEveryCount() {
+    int[] years = new int[columns[0].length];
+    int[] counts = new int[columns[0].length];
+    long total = 0;
+    for (int row = 0; row < years.length; row++) {
+      years[row] = (int) columns[0][row];
+      counts[row] = (int) columns[1][row];
+      total += counts[row];
+    }
+
+    SightingsByYear sightings = new SightingsByYear(years, counts);
+
+    Assert.assertEquals(years[0], sightings.getFirstYear());
+    Assert.assertEquals(years[years.length - 1], sightings.getLastYear());
+    for (int row = 0; row < years.length; row++) {
+      Assert.assertEquals(counts[row], sightings.getCount(years[row]));
+    }
+    Assert.assertEquals(total, sightings.sum(sightings.getFirstYear(), sightings.getLastYear()));
+  }
+}
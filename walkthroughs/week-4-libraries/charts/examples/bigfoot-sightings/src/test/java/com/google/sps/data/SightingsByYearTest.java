@@ -0,0 +1,106 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link SightingsByYear} adds up any range of years, in or out of the dataset. */
+@RunWith(JUnit4.class)
+public final class SightingsByYearTest {
+  private static final int[] YEARS = {1998, 1999, 2000, 2001, 2002, 2003};
+  private static final int[] COUNTS = {3, 5, 1, 7, 4, 10};
+
+  private final SightingsByYear sightings = new SightingsByYear(YEARS, COUNTS);
+
+  @Test
+  public void sumsEveryRangeInsideTheDataset() {
+    for (int from = 0; from < YEARS.length; from++) {
+      for (int to = from; to < YEARS.length; to++) {
+        long expected = 0;
+        for (int i = from; i <= to; i++) {
+          expected += COUNTS[i];
+        }
+        Assert.assertEquals(
+            YEARS[from] + "-" + YEARS[to], expected, sightings.sum(YEARS[from], YEARS[to]));
+      }
+    }
+  }
+
+  @Test
+  public void clampsBoundsOutsideTheDataset() {
+    Assert.assertEquals(30, sightings.sum(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Assert.assertEquals(8, sightings.sum(1900, 1999));
+    Assert.assertEquals(14, sightings.sum(2002, 2100));
+    Assert.assertEquals(0, sightings.sum(1900, 1997));
+    Assert.assertEquals(0, sightings.sum(2004, 2100));
+    Assert.assertEquals(0, sightings.sum(Integer.MIN_VALUE, Integer.MIN_VALUE));
+    Assert.assertEquals(0, sightings.sum(Integer.MAX_VALUE, Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void sumsNothingWhenTheRangeIsReversed() {
+    Assert.assertEquals(0, sightings.sum(2001, 1999));
+    Assert.assertEquals(0, sightings.sum(Integer.MAX_VALUE, Integer.MIN_VALUE));
+  }
+
+  @Test
+  public void countsNothingOutsideTheDataset() {
+    Assert.assertEquals(3, sightings.getCount(1998));
+    Assert.assertEquals(10, sightings.getCount(2003));
+    Assert.assertEquals(0, sightings.getCount(1997));
+    Assert.assertEquals(0, sightings.getCount(2004));
+    Assert.assertEquals(0, sightings.getCount(Integer.MIN_VALUE));
+    Assert.assertEquals(0, sightings.getCount(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void fillsGapsAndAddsUpRepeatedYears() {
+    SightingsByYear unsorted =
+        new SightingsByYear(new int[] {2003, 1998, 2003}, new int[] {1, 2, 3});
+
+    Assert.assertEquals(1998, unsorted.getFirstYear());
+    Assert.assertEquals(2003, unsorted.getLastYear());
+    Assert.assertEquals(4, unsorted.getCount(2003));
+    Assert.assertEquals(0, unsorted.getCount(2000));
+    Assert.assertEquals(2, unsorted.sum(1998, 2002));
+  }
+
+  @Test
+  public void sumsPastTheIntRange() {
+    SightingsByYear large = new SightingsByYear(
+        new int[] {2000, 2001}, new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE});
+
+    Assert.assertEquals(2L * Integer.MAX_VALUE, large.sum(2000, 2001));
+  }
+
+  @Test
+  public void handlesEmptyDatasets() {
+    SightingsByYear empty = new SightingsByYear(new int[0], new int[0]);
+
+    Assert.assertTrue(empty.isEmpty());
+    Assert.assertTrue(empty.getFirstYear() > empty.getLastYear());
+    Assert.assertEquals(0, empty.getCount(empty.getFirstYear()));
+    Assert.assertEquals(0, empty.sum(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    Assert.assertFalse(sightings.isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsColumnsOfDifferentLengths() {
+    new SightingsByYear(YEARS, new int[] {1, 2});
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.SightingsByYear;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests the JSON that {@link BigfootDataServlet} encodes for each kind of query. */
+@RunWith(JUnit4.class)
+public final class BigfootDataServletTest {
+  // Counts whose averages over up to four years are exact doubles.
+  private static final SightingsByYear SIGHTINGS = new SightingsByYear(
+      new int[] {1998, 1999, 2000, 2001, 2002, 2003}, new int[] {3, 5, 1, 7, 4, 10});
+
+  @Test
+  public void encodesEveryYear() throws IOException {
+    Assert.assertEquals("{\"1998\":3,\"1999\":5,\"2000\":1,\"2001\":7,\"2002\":4,\"2003\":10}",
+        encode(SIGHTINGS, 1998, 2003, false, 1, 1));
+    Assert.assertEquals("{\"2001\":7}", encode(SIGHTINGS, 2001, 2001, false, 1, 1));
+  }
+
+  @Test
+  public void alignsDecadesWithTheCalendar() throws IOException {
+    // The first and last decades only count the years from 1999 to 2002.
+    Assert.assertEquals("{\"1990-1999\":5,\"2000-2009\":12}",
+        encode(SIGHTINGS, 1999, 2002, true, 10, 1));
+    Assert.assertEquals("{\"2000-2009\":22}", encode(SIGHTINGS, 2000, 2003, true, 10, 1));
+  }
+
+  @Test
+  public void startsOtherBucketsAtTheFirstYear() throws IOException {
+    Assert.assertEquals("{\"1999-2002\":17,\"2003-2006\":10}",
+        encode(SIGHTINGS, 1999, 2003, false, 4, 1));
+    Assert.assertEquals("{\"1998-2000\":9,\"2001-2003\":21}",
+        encode(SIGHTINGS, 1998, 2003, false, 3, 1));
+  }
+
+  @Test
+  public void averagesTheFirstYearsOverTheYearsThereAre() throws IOException {
+    // 1998 to 2000 have fewer than four years up to them, so they are averaged over one to three.
+    Assert.assertEquals(
+        "{\"1998\":3.0,\"1999\":4.0,\"2000\":3.0,\"2001\":4.0,\"2002\":4.25,\"2003\":5.5}",
+        encode(SIGHTINGS, 1998, 2003, false, 1, 4));
+  }
+
+  @Test
+  public void averagesOverYearsBeforeFrom() throws IOException {
+    Assert.assertEquals("{\"2002\":4.25,\"2003\":5.5}", encode(SIGHTINGS, 2002, 2003, false, 1, 4));
+  }
+
+  @Test
+  public void encodesNothingForEmptyRanges() throws IOException {
+    Assert.assertEquals("{}", encode(SIGHTINGS, 2003, 1998, false, 1, 1));
+    Assert.assertEquals("{}", encode(SIGHTINGS, 2003, 1998, true, 10, 1));
+    Assert.assertEquals("{}", encode(SIGHTINGS, 2003, 1998, false, 1, 4));
+  }
+
+  @Test
+  public void encodesNothingForEmptyDatasets() throws IOException {
+    SightingsByYear empty = new SightingsByYear(new int[0], new int[0]);
+    int from = empty.getFirstYear();
+    int to = empty.getLastYear();
+
+    Assert.assertEquals("{}", encode(empty, from, to, false, 1, 1));
+    Assert.assertEquals("{}", encode(empty, from, to, true, 10, 1));
+    Assert.assertEquals("{}", encode(empty, from, to, false, 5, 1));
+    Assert.assertEquals("{}", encode(empty, from, to, false, 1, 4));
+  }
+
+  private static String encode(SightingsByYear sightings, int from, int to, boolean decades,
+      int bucketYears, int averageYears) throws IOException {
+    return new String(
+        BigfootDataServlet.encode(sightings, from, to, decades, bucketYears, averageYears),
+        StandardCharsets.UTF_8);
+  }
+}
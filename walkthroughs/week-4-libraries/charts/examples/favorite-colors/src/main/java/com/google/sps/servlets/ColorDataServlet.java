@@ -15,10 +15,11 @@
 package com.google.sps.servlets;
 
 import com.google.gson.Gson;
+import com.google.sps.votes.VoteTally;
+import com.google.sps.votes.Window;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Scanner;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -28,21 +29,42 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/color-data")
 public class ColorDataServlet extends HttpServlet {
 
-  private Map<String, Integer> colorVotes = new HashMap<>();
+  private static final Gson GSON = new Gson();
 
+  /**
+   * Returns the votes for each color. The optional window parameter, "minute", "hour" or "day",
+   * limits them to that much recent time; without it, all votes ever cast are counted.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String windowName = request.getParameter("window");
+
+    Map<String, Long> votes;
+    if (windowName == null || windowName.isEmpty() || windowName.equals("all")) {
+      votes = VoteTally.getInstance().getVotes();
+    } else {
+      Window window;
+      try {
+        window = Window.valueOf(windowName.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown window: " + windowName);
+        return;
+      }
+      votes = VoteTally.getInstance().getVotes(window);
+    }
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(colorVotes);
-    response.getWriter().println(json);
+    GSON.toJson(votes, response.getWriter());
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     String color = request.getParameter("color");
-    int currentVotes = colorVotes.containsKey(color) ? colorVotes.get(color) : 0;
-    colorVotes.put(color, currentVotes + 1);
+    if (color == null || color.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    }
+    VoteTally.getInstance().recordVote(color);
 
     response.sendRedirect("/index.html");
   }
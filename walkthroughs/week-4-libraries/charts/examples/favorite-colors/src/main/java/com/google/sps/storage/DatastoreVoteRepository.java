@@ -0,0 +1,77 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores votes as one ColorVotes entity per color, named after the color. A batch is applied in a
+ * single cross-group transaction, so either all of its counts are updated or none are.
+ */
+public final class DatastoreVoteRepository implements VoteRepository {
+  private static final String KIND = "ColorVotes";
+
+  @Override
+  public void addVotes(Map<String, Long> votesByColor) {
+    List<Key> keys = new ArrayList<>();
+    for (String color : votesByColor.keySet()) {
+      keys.add(KeyFactory.createKey(KIND, color));
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+    try {
+      Map<Key, Entity> existing = datastore.get(transaction, keys);
+
+      List<Entity> updated = new ArrayList<>();
+      for (Key key : keys) {
+        Entity colorEntity = existing.containsKey(key) ? existing.get(key) : new Entity(key);
+        Long votes = (Long) colorEntity.getProperty("votes");
+        long newVotes = (votes == null ? 0 : votes) + votesByColor.get(key.getName());
+        colorEntity.setUnindexedProperty("votes", newVotes);
+        updated.add(colorEntity);
+      }
+
+      datastore.put(transaction, updated);
+      transaction.commit();
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  @Override
+  public Map<String, Long> getVotes() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+    Map<String, Long> votesByColor = new HashMap<>();
+    for (Entity colorEntity : datastore.prepare(new Query(KIND)).asIterable()) {
+      votesByColor.put(colorEntity.getKey().getName(), (long) colorEntity.getProperty("votes"));
+    }
+    return votesByColor;
+  }
+}
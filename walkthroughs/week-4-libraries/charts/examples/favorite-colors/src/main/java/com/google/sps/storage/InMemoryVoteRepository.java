@@ -0,0 +1,35 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Keeps votes in memory, for running and profiling the servlet without App Engine. */
+public final class InMemoryVoteRepository implements VoteRepository {
+  private final Map<String, Long> votesByColor = new HashMap<>();
+
+  @Override
+  public synchronized void addVotes(Map<String, Long> votes) {
+    for (Map.Entry<String, Long> entry : votes.entrySet()) {
+      votesByColor.merge(entry.getKey(), entry.getValue(), Long::sum);
+    }
+  }
+
+  @Override
+  public synchronized Map<String, Long> getVotes() {
+    return new HashMap<>(votesByColor);
+  }
+}
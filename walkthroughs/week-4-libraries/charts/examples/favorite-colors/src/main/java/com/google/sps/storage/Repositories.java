@@ -0,0 +1,41 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+/**
+ * Chooses where votes are kept. Datastore is used unless the sps.storage system property says
+ * otherwise, e.g. -Dsps.storage=memory to run and profile the servlet on a plain machine.
+ */
+public final class Repositories {
+  private static final VoteRepository VOTES = createVoteRepository();
+
+  private Repositories() {}
+
+  public static VoteRepository votes() {
+    return VOTES;
+  }
+
+  private static VoteRepository createVoteRepository() {
+    String storage = System.getProperty("sps.storage", "datastore");
+    switch (storage) {
+      case "datastore":
+        return new DatastoreVoteRepository();
+      case "memory":
+        return new InMemoryVoteRepository();
+      default:
+        throw new IllegalStateException("Unknown sps.storage: " + storage);
+    }
+  }
+}
@@ -0,0 +1,26 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import java.util.Map;
+
+/** Stores the number of votes for each color. Implementations must be thread-safe. */
+public interface VoteRepository {
+  /** Adds votes to the stored counts in one batch. */
+  void addVotes(Map<String, Long> votesByColor);
+
+  /** @return the stored vote count of every color that has been voted for */
+  Map<String, Long> getVotes();
+}
@@ -0,0 +1,62 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.votes;
+
+/**
+ * Counts events over a sliding {@link Window}, in a ring of per-bucket counts. The total of the
+ * window is kept up to date as events arrive and buckets expire, so reading it costs the same no
+ * matter how many events there were. The window slides one bucket at a time.
+ */
+final class RollingCounter {
+  private final long bucketMillis;
+  private final long[] counts;
+  /** The bucket number, counted from the epoch, of the newest bucket in the ring. */
+  private long newestBucket;
+  private long total = 0;
+
+  RollingCounter(Window window, long nowMillis) {
+    this.bucketMillis = window.getBucketMillis();
+    this.counts = new long[window.getBucketCount()];
+    this.newestBucket = nowMillis / bucketMillis;
+  }
+
+  synchronized void increment(long nowMillis) {
+    advance(nowMillis);
+    counts[(int) (newestBucket % counts.length)]++;
+    total++;
+  }
+
+  synchronized long getTotal(long nowMillis) {
+    advance(nowMillis);
+    return total;
+  }
+
+  /** Clears the buckets that have slid out of the window since the last call. */
+  private void advance(long nowMillis) {
+    long bucket = nowMillis / bucketMillis;
+    if (bucket <= newestBucket) {
+      return;
+    }
+
+    // After a full turn of the ring every bucket is stale, however long the gap was.
+    long expired = Math.min(bucket - newestBucket, counts.length);
+    for (long i = 1; i <= expired; i++) {
+      int index = (int) ((newestBucket + i) % counts.length);
+      total -= counts[index];
+      counts[index] = 0;
+    }
+    newestBucket = bucket;
+  }
+}
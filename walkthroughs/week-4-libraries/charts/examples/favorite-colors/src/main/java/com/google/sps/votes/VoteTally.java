@@ -0,0 +1,202 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.votes;
+
+import com.google.sps.storage.Repositories;
+import com.google.sps.storage.VoteRepository;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts votes per color. Votes are added to striped LongAdder cells, so concurrent votes never
+ * contend on a shared count, and every {@link #FLUSH_INTERVAL_MILLIS} one request writes the votes
+ * gathered since the last flush to storage as one batch and reloads the stored totals, which
+ * include the votes counted by other instances.
+ *
+ * <p>Votes over the last minute, hour and day are also kept, in {@link RollingCounter}s. Those
+ * are only held in memory and cover the votes this instance received.
+ */
+public final class VoteTally {
+  static final long FLUSH_INTERVAL_MILLIS = 10_000;
+
+  /**
+   * Colors come from the client, so only this many are counted separately, and the rest as
+   * {@link #OTHER_COLOR}. Together they make 25 entity groups, the most one Datastore transaction
+   * may touch, so a flush always fits in one.
+   */
+  static final int MAX_COLORS = 24;
+  static final String OTHER_COLOR = "Other";
+
+  private static final VoteTally INSTANCE =
+      new VoteTally(Repositories.votes(), System::currentTimeMillis);
+
+  private final VoteRepository repository;
+  private final LongSupplier clock;
+  /** Every vote this instance has counted. The cells are never reset. */
+  private final Map<String, LongAdder> localVotes = new ConcurrentHashMap<>();
+  /** One counter for each {@link Window}, in declaration order, for every color. */
+  private final Map<String, RollingCounter[]> recentVotes = new ConcurrentHashMap<>();
+  /** Held by the request that flushes, so two flushes never send the same votes. */
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private volatile long nextFlushMillis = 0;
+  private volatile Flushed flushed = new Flushed(Collections.emptyMap(), Collections.emptyMap());
+
+  VoteTally(VoteRepository repository, LongSupplier clock) {
+    this.repository = repository;
+    this.clock = clock;
+  }
+
+  public static VoteTally getInstance() {
+    return INSTANCE;
+  }
+
+  public void recordVote(String color) {
+    long now = clock.getAsLong();
+    LongAdder votes = localVotes.get(color);
+    RollingCounter[] counters = recentVotes.get(color);
+    if (votes == null || counters == null) {
+      // New colors are checked and added under the lock, so racing votes can't add too many.
+      synchronized (localVotes) {
+        int colors = localVotes.size() - (localVotes.containsKey(OTHER_COLOR) ? 1 : 0);
+        String countedColor =
+            localVotes.containsKey(color) || colors < MAX_COLORS ? color : OTHER_COLOR;
+        votes = localVotes.computeIfAbsent(countedColor, unused -> new LongAdder());
+        counters =
+            recentVotes.computeIfAbsent(countedColor, unused -> createRollingCounters(now));
+      }
+    }
+
+    votes.increment();
+    for (RollingCounter counter : counters) {
+      counter.increment(now);
+    }
+
+    flushIfDue();
+  }
+
+  /** @return the number of votes for each color within the window */
+  public Map<String, Long> getVotes(Window window) {
+    long now = clock.getAsLong();
+
+    Map<String, Long> votes = new HashMap<>();
+    for (Map.Entry<String, RollingCounter[]> entry : recentVotes.entrySet()) {
+      long total = entry.getValue()[window.ordinal()].getTotal(now);
+      if (total > 0) {
+        votes.put(entry.getKey(), total);
+      }
+    }
+    return votes;
+  }
+
+  private static RollingCounter[] createRollingCounters(long now) {
+    Window[] windows = Window.values();
+    RollingCounter[] counters = new RollingCounter[windows.length];
+    for (int i = 0; i < windows.length; i++) {
+      counters[i] = new RollingCounter(windows[i], now);
+    }
+    return counters;
+  }
+
+  /**
+   * @return a copy of the vote counts, including votes not yet written to storage. Later votes
+   *         don't change it, so it can be serialized safely while voting goes on.
+   */
+  public Map<String, Long> getVotes() {
+    flushIfDue();
+
+    Flushed current = flushed;
+    Map<String, Long> votes = new HashMap<>(current.storedVotes);
+    for (Map.Entry<String, LongAdder> entry : localVotes.entrySet()) {
+      long unflushed =
+          entry.getValue().sum() - current.localVotes.getOrDefault(entry.getKey(), 0L);
+      if (unflushed > 0) {
+        votes.merge(entry.getKey(), unflushed, Long::sum);
+      }
+    }
+    return votes;
+  }
+
+  /** Only one request flushes at a time, and the others don't wait for it. */
+  private void flushIfDue() {
+    long now = clock.getAsLong();
+    if (now < nextFlushMillis || !flushLock.tryLock()) {
+      return;
+    }
+    try {
+      if (now >= nextFlushMillis) {
+        nextFlushMillis = now + FLUSH_INTERVAL_MILLIS;
+        flush();
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private void flush() {
+    Flushed previous = flushed;
+    Map<String, Long> localSnapshot = new HashMap<>();
+    Map<String, Long> batch = new HashMap<>();
+    for (Map.Entry<String, LongAdder> entry : localVotes.entrySet()) {
+      long votes = entry.getValue().sum();
+      localSnapshot.put(entry.getKey(), votes);
+
+      long unflushed = votes - previous.localVotes.getOrDefault(entry.getKey(), 0L);
+      if (unflushed > 0) {
+        batch.put(entry.getKey(), unflushed);
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      try {
+        repository.addVotes(batch);
+      } catch (RuntimeException e) {
+        // The batch is all or nothing, so if it failed it is simply sent again next time.
+        System.err.println("Could not store votes: " + e);
+        return;
+      }
+
+      // The batch is stored, so it is marked as flushed before anything else can fail and have
+      // it sent twice. Until the reload, the stored totals are the old ones plus the batch.
+      Map<String, Long> storedVotes = new HashMap<>(previous.storedVotes);
+      batch.forEach((color, votes) -> storedVotes.merge(color, votes, Long::sum));
+      flushed = new Flushed(storedVotes, localSnapshot);
+    }
+
+    try {
+      flushed = new Flushed(repository.getVotes(), localSnapshot);
+    } catch (RuntimeException e) {
+      System.err.println("Could not load votes: " + e);
+    }
+  }
+
+  /**
+   * The stored totals and how many of this instance's votes they include. Both are replaced
+   * together, so readers never count a flushed vote twice or miss it.
+   */
+  private static final class Flushed {
+    final Map<String, Long> storedVotes;
+    final Map<String, Long> localVotes;
+
+    Flushed(Map<String, Long> storedVotes, Map<String, Long> localVotes) {
+      this.storedVotes = storedVotes;
+      this.localVotes = localVotes;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.votes;
+
+import java.util.concurrent.TimeUnit;
+
+/** A span of recent time over which votes are totaled, split into equal buckets. */
+public enum Window {
+  MINUTE(60, TimeUnit.SECONDS.toMillis(1)),
+  HOUR(60, TimeUnit.MINUTES.toMillis(1)),
+  DAY(24, TimeUnit.HOURS.toMillis(1));
+
+  private final int bucketCount;
+  private final long bucketMillis;
+
+  Window(int bucketCount, long bucketMillis) {
+    this.bucketCount = bucketCount;
+    this.bucketMillis = bucketMillis;
+  }
+
+  int getBucketCount() {
+    return bucketCount;
+  }
+
+  long getBucketMillis() {
+    return bucketMillis;
+  }
+}
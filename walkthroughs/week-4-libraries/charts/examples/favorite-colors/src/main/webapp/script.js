@@ -15,9 +15,10 @@
 google.charts.load('current', {'packages':['corechart']});
 google.charts.setOnLoadCallback(drawChart);
 
-/** Fetches color data and uses it to create a chart. */
+/** Fetches color data for the selected time window and uses it to create a chart. */
 function drawChart() {
-  fetch('/color-data').then(response => response.json())
+  const timeWindow = document.getElementById('window').value;
+  fetch('/color-data?window=' + timeWindow).then(response => response.json())
   .then((colorVotes) => {
     const data = new google.visualization.DataTable();
     data.addColumn('string', 'Color');
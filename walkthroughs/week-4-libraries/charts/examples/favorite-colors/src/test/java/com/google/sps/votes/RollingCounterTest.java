@@ -0,0 +1,104 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.votes;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link RollingCounter} drops events as whole buckets slide out of its window. */
+@RunWith(JUnit4.class)
+public final class RollingCounterTest {
+  // Minute windows have 60 buckets of one second.
+  private static final long START = 1_000_000;
+
+  @Test
+  public void countsEventsWithinTheWindow() {
+    RollingCounter counter = new RollingCounter(Window.MINUTE, START);
+    counter.increment(START);
+    counter.increment(START + 500);
+    counter.increment(START + 59_999);
+
+    Assert.assertEquals(3, counter.getTotal(START + 59_999));
+  }
+
+  @Test
+  public void bucketExpiresOnceTheWindowHasSlidPastIt() {
+    RollingCounter counter = new RollingCounter(Window.MINUTE, START);
+    // Both land in the bucket that starts at START, however late in it they are.
+    counter.increment(START);
+    counter.increment(START + 999);
+
+    Assert.assertEquals(2, counter.getTotal(START + 59_999));
+    Assert.assertEquals(0, counter.getTotal(START + 60_000));
+  }
+
+  @Test
+  public void onlyExpiredBucketsAreDropped() {
+    RollingCounter counter = new RollingCounter(Window.MINUTE, START);
+    for (int second = 0; second < 60; second++) {
+      counter.increment(START + second * 1000L);
+    }
+
+    Assert.assertEquals(60, counter.getTotal(START + 59_000));
+    Assert.assertEquals(50, counter.getTotal(START + 69_000));
+    Assert.assertEquals(1, counter.getTotal(START + 118_000));
+    Assert.assertEquals(0, counter.getTotal(START + 119_000));
+  }
+
+  @Test
+  public void incrementAfterRolloverReusesBucket() {
+    RollingCounter counter = new RollingCounter(Window.MINUTE, START);
+    counter.increment(START);
+    counter.increment(START + 60_000);
+
+    Assert.assertEquals(1, counter.getTotal(START + 60_000));
+    Assert.assertEquals(0, counter.getTotal(START + 120_000));
+  }
+
+  @Test
+  public void gapLongerThanTheWindowClearsEverything() {
+    RollingCounter counter = new RollingCounter(Window.HOUR, START);
+    counter.increment(START);
+    counter.increment(START + 30 * 60_000);
+
+    Assert.assertEquals(0, counter.getTotal(START + 1000L * 24 * 60 * 60_000));
+    counter.increment(START + 1000L * 24 * 60 * 60_000);
+    Assert.assertEquals(1, counter.getTotal(START + 1000L * 24 * 60 * 60_000));
+  }
+
+  @Test
+  public void earlierTimesDoNotExpireBuckets() {
+    RollingCounter counter = new RollingCounter(Window.MINUTE, START);
+    counter.increment(START + 10_000);
+    // Another thread may pass a slightly older time.
+    counter.increment(START + 9_000);
+
+    Assert.assertEquals(2, counter.getTotal(START));
+    Assert.assertEquals(2, counter.getTotal(START + 69_999));
+    Assert.assertEquals(0, counter.getTotal(START + 70_000));
+  }
+
+  @Test
+  public void dayWindowUsesHourBuckets() {
+    RollingCounter counter = new RollingCounter(Window.DAY, 0);
+    counter.increment(0);
+    counter.increment(23 * 3_600_000L);
+
+    Assert.assertEquals(2, counter.getTotal(24 * 3_600_000L - 1));
+    Assert.assertEquals(1, counter.getTotal(24 * 3_600_000L));
+  }
+}
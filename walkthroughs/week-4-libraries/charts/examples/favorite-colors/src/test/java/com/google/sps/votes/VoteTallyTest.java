@@ -0,0 +1,195 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.votes;
+
+import com.google.sps.storage.InMemoryVoteRepository;
+import com.google.sps.storage.VoteRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link VoteTally} flushes votes in batches and never counts one twice. */
+@RunWith(JUnit4.class)
+public final class VoteTallyTest {
+  private RecordingRepository repository;
+  private long now;
+  private VoteTally tally;
+
+  @Before
+  public void setUp() {
+    repository = new RecordingRepository();
+    now = 1_000_000;
+    tally = new VoteTally(repository, () -> now);
+  }
+
+  @Test
+  public void countsVotesBeforeTheyAreFlushed() {
+    tally.recordVote("red");
+    tally.recordVote("red");
+    tally.recordVote("blue");
+
+    Assert.assertEquals(votes("red", 2L, "blue", 1L), tally.getVotes());
+  }
+
+  @Test
+  public void flushesAtMostOncePerInterval() {
+    // The first vote is flushed right away, and the rest wait for the interval to pass.
+    tally.recordVote("red");
+    tally.recordVote("red");
+    tally.recordVote("blue");
+    now += VoteTally.FLUSH_INTERVAL_MILLIS - 1;
+    tally.recordVote("red");
+
+    Assert.assertEquals(Collections.singletonList(votes("red", 1L)), repository.batches);
+
+    now += 1;
+    Assert.assertEquals(votes("red", 3L, "blue", 1L), tally.getVotes());
+    Assert.assertEquals(votes("red", 2L, "blue", 1L), repository.batches.get(1));
+    Assert.assertEquals(votes("red", 3L, "blue", 1L), repository.getVotes());
+  }
+
+  @Test
+  public void doesNotFlushWhenThereAreNoNewVotes() {
+    tally.recordVote("red");
+    now += VoteTally.FLUSH_INTERVAL_MILLIS;
+    tally.getVotes();
+
+    Assert.assertEquals(1, repository.batches.size());
+  }
+
+  @Test
+  public void includesVotesStoredByOtherInstances() {
+    repository.addVotes(votes("green", 5L));
+    repository.batches.clear();
+
+    tally.recordVote("red");
+
+    Assert.assertEquals(votes("red", 1L, "green", 5L), tally.getVotes());
+  }
+
+  @Test
+  public void failedBatchIsSentAgainWithLaterVotes() {
+    repository.failuresLeft = 1;
+    tally.recordVote("red");
+    Assert.assertEquals(votes("red", 1L), tally.getVotes());
+
+    tally.recordVote("red");
+    now += VoteTally.FLUSH_INTERVAL_MILLIS;
+    tally.recordVote("blue");
+
+    Assert.assertEquals(Collections.singletonList(votes("red", 2L, "blue", 1L)),
+        repository.batches);
+    Assert.assertEquals(votes("red", 2L, "blue", 1L), tally.getVotes());
+  }
+
+  @Test
+  public void failedReloadDoesNotCountTheBatchTwice() {
+    tally.recordVote("red");
+    repository.reloadFailuresLeft = 1;
+    now += VoteTally.FLUSH_INTERVAL_MILLIS;
+    tally.recordVote("red");
+
+    Assert.assertEquals(votes("red", 2L), tally.getVotes());
+
+    now += VoteTally.FLUSH_INTERVAL_MILLIS;
+    Assert.assertEquals(votes("red", 2L), tally.getVotes());
+    Assert.assertEquals(votes("red", 2L), repository.getVotes());
+  }
+
+  @Test
+  public void countsColorsBeyondTheLimitAsOther() {
+    List<String> colors = new ArrayList<>();
+    for (int i = 0; i < VoteTally.MAX_COLORS + 5; i++) {
+      colors.add("color" + i);
+    }
+    for (String color : colors) {
+      tally.recordVote(color);
+    }
+    // Colors that are already counted keep their own count.
+    tally.recordVote("color0");
+
+    Map<String, Long> votes = tally.getVotes();
+    Assert.assertEquals(VoteTally.MAX_COLORS + 1, votes.size());
+    Assert.assertEquals(Long.valueOf(2), votes.get("color0"));
+    Assert.assertEquals(Long.valueOf(5), votes.get(VoteTally.OTHER_COLOR));
+    Assert.assertFalse(votes.containsKey("color" + VoteTally.MAX_COLORS));
+
+    now += VoteTally.FLUSH_INTERVAL_MILLIS;
+    tally.getVotes();
+    for (Map<String, Long> batch : repository.batches) {
+      Assert.assertTrue(batch.size() <= VoteTally.MAX_COLORS + 1);
+    }
+  }
+
+  @Test
+  public void windowsOnlyCountRecentVotes() {
+    tally.recordVote("red");
+    now += 30_000;
+    tally.recordVote("red");
+    tally.recordVote("blue");
+
+    Assert.assertEquals(votes("red", 2L, "blue", 1L), tally.getVotes(Window.MINUTE));
+
+    now += 31_000;
+    Assert.assertEquals(votes("red", 1L, "blue", 1L), tally.getVotes(Window.MINUTE));
+    Assert.assertEquals(votes("red", 2L, "blue", 1L), tally.getVotes(Window.HOUR));
+
+    now += 60_000;
+    Assert.assertEquals(Collections.emptyMap(), tally.getVotes(Window.MINUTE));
+    Assert.assertEquals(votes("red", 2L, "blue", 1L), tally.getVotes(Window.DAY));
+  }
+
+  private static Map<String, Long> votes(Object... colorsAndCounts) {
+    Map<String, Long> votes = new HashMap<>();
+    for (int i = 0; i < colorsAndCounts.length; i += 2) {
+      votes.put((String) colorsAndCounts[i], (Long) colorsAndCounts[i + 1]);
+    }
+    return votes;
+  }
+
+  /** Remembers every batch and fails on request. */
+  private static final class RecordingRepository implements VoteRepository {
+    final InMemoryVoteRepository stored = new InMemoryVoteRepository();
+    final List<Map<String, Long>> batches = new ArrayList<>();
+    int failuresLeft = 0;
+    int reloadFailuresLeft = 0;
+
+    @Override
+    public synchronized void addVotes(Map<String, Long> votes) {
+      if (failuresLeft > 0) {
+        failuresLeft--;
+        throw new IllegalStateException("Storage is down");
+      }
+      batches.add(new HashMap<>(votes));
+      stored.addVotes(votes);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getVotes() {
+      if (reloadFailuresLeft > 0) {
+        reloadFailuresLeft--;
+        throw new IllegalStateException("Storage is down");
+      }
+      return stored.getVotes();
+    }
+  }
+}
@@ -0,0 +1,152 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohashes name ever smaller cells of the map: every character splits the cell of the characters
+ * before it into 32 parts. All the points in a cell have geohashes that start with the cell's
+ * geohash, so an index sorted by geohash can list a cell's points with one range scan.
+ */
+public final class Geohash {
+  private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+  private Geohash() {}
+
+  /** @return the geohash of the cell of the given length that contains the point */
+  public static String encode(double lat, double lng, int precision) {
+    int bits = precision * 5;
+    long column = cellOf(lng + 180, 360, (bits + 1) / 2);
+    long row = cellOf(lat + 90, 180, bits / 2);
+
+    // Interleave the bits, starting with longitude, then read them five at a time.
+    StringBuilder geohash = new StringBuilder(precision);
+    int lngBit = (bits + 1) / 2;
+    int latBit = bits / 2;
+    int value = 0;
+    for (int bit = 0; bit < bits; bit++) {
+      value <<= 1;
+      if (bit % 2 == 0) {
+        value |= (int) (column >> --lngBit) & 1;
+      } else {
+        value |= (int) (row >> --latBit) & 1;
+      }
+      if (bit % 5 == 4) {
+        geohash.append(BASE32.charAt(value));
+        value = 0;
+      }
+    }
+    return geohash.toString();
+  }
+
+  /**
+   * Finds the smallest cells that cover the box in at most maxCells cells, trying lengths from
+   * maxPrecision down. A box too big for even that gets all the one-character cells it overlaps.
+   */
+  public static List<String> cover(BoundingBox box, int maxCells, int maxPrecision) {
+    int precision = maxPrecision;
+    while (precision > 1 && countCells(box, precision) > maxCells) {
+      precision--;
+    }
+
+    int bits = precision * 5;
+    int lngBits = (bits + 1) / 2;
+    int latBits = bits / 2;
+    double cellWidth = 360.0 / (1L << lngBits);
+    double cellHeight = 180.0 / (1L << latBits);
+
+    List<String> cells = new ArrayList<>();
+    long firstColumn = cellOf(box.getWest() + 180, 360, lngBits);
+    long columns = columnCount(box, lngBits);
+    for (long row = cellOf(box.getSouth() + 90, 180, latBits);
+        row <= cellOf(box.getNorth() + 90, 180, latBits); row++) {
+      for (long i = 0; i < columns; i++) {
+        long column = (firstColumn + i) % (1L << lngBits);
+        cells.add(encode(
+            (row + 0.5) * cellHeight - 90, (column + 0.5) * cellWidth - 180, precision));
+      }
+    }
+    return cells;
+  }
+
+  /** @return the 32 cells one character longer that the cell is split into */
+  public static List<String> children(String geohash) {
+    List<String> children = new ArrayList<>(BASE32.length());
+    for (int i = 0; i < BASE32.length(); i++) {
+      children.add(geohash + BASE32.charAt(i));
+    }
+    return children;
+  }
+
+  /** @return whether the cell and the box have any point in common */
+  public static boolean overlaps(String geohash, BoundingBox box) {
+    // Read the bits back into the cell's row and column, as encode wrote them.
+    long column = 0;
+    long row = 0;
+    int lngBits = 0;
+    int latBits = 0;
+    for (int i = 0; i < geohash.length(); i++) {
+      int value = BASE32.indexOf(geohash.charAt(i));
+      if (value < 0) {
+        throw new IllegalArgumentException("Not a geohash: " + geohash);
+      }
+      for (int bit = 4; bit >= 0; bit--) {
+        if ((i * 5 + 4 - bit) % 2 == 0) {
+          column = column << 1 | (value >> bit & 1);
+          lngBits++;
+        } else {
+          row = row << 1 | (value >> bit & 1);
+          latBits++;
+        }
+      }
+    }
+
+    double cellWidth = 360.0 / (1L << lngBits);
+    double cellHeight = 180.0 / (1L << latBits);
+    double south = row * cellHeight - 90;
+    double west = column * cellWidth - 180;
+    if (south > box.getNorth() || south + cellHeight < box.getSouth()) {
+      return false;
+    }
+    return box.crossesAntimeridian()
+        ? west + cellWidth >= box.getWest() || west <= box.getEast()
+        : west + cellWidth >= box.getWest() && west <= box.getEast();
+  }
+
+  private static long countCells(BoundingBox box, int precision) {
+    int bits = precision * 5;
+    long rows = cellOf(box.getNorth() + 90, 180, bits / 2)
+        - cellOf(box.getSouth() + 90, 180, bits / 2) + 1;
+    return rows * columnCount(box, (bits + 1) / 2);
+  }
+
+  private static long columnCount(BoundingBox box, int lngBits) {
+    long first = cellOf(box.getWest() + 180, 360, lngBits);
+    long last = cellOf(box.getEast() + 180, 360, lngBits);
+    if (!box.crossesAntimeridian()) {
+      return last - first + 1;
+    }
+    // The box wraps around, and covers every column if both edges fall in the same one.
+    return first == last ? 1L << lngBits : last - first + 1 + (1L << lngBits);
+  }
+
+  /** @return which of 2^bits equal parts of [0, range] the value falls in */
+  private static long cellOf(double value, double range, int bits) {
+    long cells = 1L << bits;
+    return Math.min(Math.max((long) Math.floor(value / range * cells), 0), cells - 1);
+  }
+}
@@ -17,6 +17,9 @@ package com.google.sps.data;
 /** Represents a marker on the map. */
 public class Marker {
 
+  /** The length of the stored geohashes, which name cells of about 5 by 5 meters. */
+  public static final int GEOHASH_PRECISION = 9;
+
   private final double lat;
   private final double lng;
   private final String content;
@@ -38,4 +41,9 @@ public class Marker {
   public String getContent() {
     return content;
   }
+
+  /** @return the geohash of the marker's position, for finding markers by area */
+  public String getGeohash() {
+    return Geohash.encode(lat, lng, GEOHASH_PRECISION);
+  }
 }
@@ -0,0 +1,49 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.storage.DatastoreMarkerRepository;
+import com.google.sps.storage.Repositories;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Adds geohashes to the markers stored before markers had one. Cron calls this every few minutes,
+ * see cron.xml, and only administrators can call it otherwise, see web.xml. Every call works for
+ * at most {@link #TIME_BUDGET_MILLIS} and leaves the rest to the next one. Once the backfill is
+ * done, a call costs a single Datastore read.
+ */
+@WebServlet("/admin/backfill-geohashes")
+public class BackfillGeohashesServlet extends HttpServlet {
+  /** Well within the deadline of any request, cron or not. */
+  private static final long TIME_BUDGET_MILLIS = 30_000;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("text/plain");
+    if (!Repositories.usesDatastore()) {
+      response.getWriter().println("Markers are not kept in Datastore, so there is nothing to do.");
+      return;
+    }
+
+    boolean done = DatastoreMarkerRepository.backfillGeohashes(
+        System.currentTimeMillis() + TIME_BUDGET_MILLIS);
+    response.getWriter().println(
+        done ? "Every marker has a geohash." : "Not done yet, the next call continues.");
+  }
+}
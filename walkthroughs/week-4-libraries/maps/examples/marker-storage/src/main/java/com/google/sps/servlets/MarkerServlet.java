@@ -14,16 +14,17 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
+import com.google.sps.data.BoundingBox;
+import com.google.sps.data.Geohash;
 import com.google.sps.data.Marker;
+import com.google.sps.storage.MarkerRepository;
+import com.google.sps.storage.Repositories;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -35,16 +36,93 @@ import org.jsoup.safety.Whitelist;
 @WebServlet("/markers")
 public class MarkerServlet extends HttpServlet {
 
-  /** Responds with a JSON array containing marker data. */
+  private static final Gson GSON = new Gson();
+
+  /** The most geohash cells, and so range queries, that one bounding box is split into. */
+  private static final int MAX_CELLS = 16;
+
+  /**
+   * Cells are never smaller than geohashes of this length, about 1.2 by 0.6 km, so that nearby
+   * viewports share cached cells.
+   */
+  private static final int MAX_CELL_PRECISION = 6;
+
+  /**
+   * The most range queries one request makes. A cell that comes back with
+   * {@link MarkerRepository#MAX_MARKERS_PER_CELL} markers may hold more, so while this allows it is
+   * split into the smaller cells that overlap the box, which are read instead.
+   */
+  private static final int MAX_QUERIES = 128;
+
+  /** The response to a bbox query. */
+  private static final class MarkersInBox {
+    private final List<Marker> markers = new ArrayList<>();
+    /** Whether crowded cells were left unsplit, so zooming in may show more markers. */
+    private boolean truncated;
+  }
+
+  /**
+   * Responds with a JSON array containing marker data. With a bbox=south,west,north,east parameter
+   * only the markers inside that area are returned, as {"markers": [...], "truncated": false}.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
+    String bboxParameter = request.getParameter("bbox");
+    if (bboxParameter == null) {
+      response.setContentType("application/json");
+      GSON.toJson(Repositories.markers().getAll(), response.getWriter());
+      return;
+    }
+
+    BoundingBox box;
+    try {
+      box = BoundingBox.parse(bboxParameter);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    // The cells cover the box, so only the markers near its edges need to be filtered out.
+    List<String> cells = Geohash.cover(box, MAX_CELLS, MAX_CELL_PRECISION);
+    int queries = cells.size();
+    MarkersInBox result = new MarkersInBox();
+    while (!cells.isEmpty()) {
+      Map<String, Collection<Marker>> cellMarkers = Repositories.markers().getInCells(cells);
+      List<String> splitCells = new ArrayList<>();
+      for (String cell : cells) {
+        Collection<Marker> markers = cellMarkers.get(cell);
+        if (markers.size() >= MarkerRepository.MAX_MARKERS_PER_CELL) {
+          List<String> children = getChildrenInBox(cell, box);
+          // Cells longer than the stored geohashes would hold no markers at all.
+          if (cell.length() < Marker.GEOHASH_PRECISION
+              && queries + children.size() <= MAX_QUERIES) {
+            queries += children.size();
+            splitCells.addAll(children);
+            continue;
+          }
+          result.truncated = true;
+        }
+        for (Marker marker : markers) {
+          if (box.contains(marker.getLat(), marker.getLng())) {
+            result.markers.add(marker);
+          }
+        }
+      }
+      cells = splitCells;
+    }
 
-    Collection<Marker> markers = getMarkers();
-    Gson gson = new Gson();
-    String json = gson.toJson(markers);
+    response.setContentType("application/json");
+    GSON.toJson(result, response.getWriter());
+  }
 
-    response.getWriter().println(json);
+  private static List<String> getChildrenInBox(String cell, BoundingBox box) {
+    List<String> children = new ArrayList<>();
+    for (String child : Geohash.children(cell)) {
+      if (Geohash.overlaps(child, box)) {
+        children.add(child);
+      }
+    }
+    return children;
   }
 
   /** Accepts a POST request containing a new marker. */
@@ -55,36 +133,6 @@ public class MarkerServlet extends HttpServlet {
     String content = Jsoup.clean(request.getParameter("content"), Whitelist.none());
 
     Marker marker = new Marker(lat, lng, content);
-    storeMarker(marker);
-  }
-
-  /** Fetches markers from Datastore. */
-  private Collection<Marker> getMarkers() {
-    Collection<Marker> markers = new ArrayList<>();
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("Marker");
-    PreparedQuery results = datastore.prepare(query);
-
-    for (Entity entity : results.asIterable()) {
-      double lat = (double) entity.getProperty("lat");
-      double lng = (double) entity.getProperty("lng");
-      String content = (String) entity.getProperty("content");
-
-      Marker marker = new Marker(lat, lng, content);
-      markers.add(marker);
-    }
-    return markers;
-  }
-
-  /** Stores a marker in Datastore. */
-  public void storeMarker(Marker marker) {
-    Entity markerEntity = new Entity("Marker");
-    markerEntity.setProperty("lat", marker.getLat());
-    markerEntity.setProperty("lng", marker.getLng());
-    markerEntity.setProperty("content", marker.getContent());
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    datastore.put(markerEntity);
+    Repositories.markers().add(marker);
   }
 }
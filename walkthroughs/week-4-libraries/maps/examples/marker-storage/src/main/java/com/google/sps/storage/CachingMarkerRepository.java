@@ -0,0 +1,112 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Marker;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the markers of recently read cells in memory, in front of another repository. Adding a
+ * marker only drops the cached cells that contain it. Other instances don't see that, so cached
+ * cells also expire after {@link #TTL_MILLIS}.
+ */
+public final class CachingMarkerRepository implements MarkerRepository {
+  private static final long TTL_MILLIS = 60_000;
+
+  /** The cache is emptied when it grows past this many cells. */
+  private static final int MAX_CACHED_CELLS = 10_000;
+
+  private static final class CachedCell {
+    final Collection<Marker> markers;
+    final long loadedAtMillis;
+
+    CachedCell(Collection<Marker> markers, long loadedAtMillis) {
+      this.markers = markers;
+      this.loadedAtMillis = loadedAtMillis;
+    }
+  }
+
+  private final MarkerRepository repository;
+  private final Map<String, CachedCell> cells = new ConcurrentHashMap<>();
+
+  /** Counts adds, so that a read that overlapped one doesn't cache what may be missing it. */
+  private final AtomicLong addCount = new AtomicLong();
+
+  public CachingMarkerRepository(MarkerRepository repository) {
+    this.repository = repository;
+  }
+
+  @Override
+  public void add(Marker marker) {
+    repository.add(marker);
+    addCount.incrementAndGet();
+
+    // Only the cells whose geohash is a prefix of the marker's contain it.
+    String geohash = marker.getGeohash();
+    for (int length = 1; length <= geohash.length(); length++) {
+      cells.remove(geohash.substring(0, length));
+    }
+  }
+
+  @Override
+  public Collection<Marker> getAll() {
+    return repository.getAll();
+  }
+
+  @Override
+  public Map<String, Collection<Marker>> getInCells(Collection<String> cellsToRead) {
+    long now = System.currentTimeMillis();
+    Map<String, Collection<Marker>> markers = new HashMap<>();
+    List<String> missingCells = new ArrayList<>();
+    for (String cell : cellsToRead) {
+      CachedCell cached = cells.get(cell);
+      if (cached != null && now - cached.loadedAtMillis < TTL_MILLIS) {
+        markers.put(cell, cached.markers);
+      } else {
+        missingCells.add(cell);
+      }
+    }
+    if (missingCells.isEmpty()) {
+      return markers;
+    }
+
+    long addCountBefore = addCount.get();
+    Map<String, Collection<Marker>> loaded = repository.getInCells(missingCells);
+    boolean cacheable = addCount.get() == addCountBefore;
+    if (cells.size() > MAX_CACHED_CELLS) {
+      cells.clear();
+    }
+    for (Map.Entry<String, Collection<Marker>> cell : loaded.entrySet()) {
+      Collection<Marker> cellMarkers =
+          Collections.unmodifiableList(new ArrayList<>(cell.getValue()));
+      markers.put(cell.getKey(), cellMarkers);
+      if (cacheable) {
+        cells.put(cell.getKey(), new CachedCell(cellMarkers, now));
+      }
+    }
+    if (cacheable && addCount.get() != addCountBefore) {
+      // A marker was added while the cells were being cached, possibly after it dropped them.
+      cells.keySet().removeAll(loaded.keySet());
+    }
+    return markers;
+  }
+}
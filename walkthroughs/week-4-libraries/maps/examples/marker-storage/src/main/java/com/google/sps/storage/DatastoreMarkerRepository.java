@@ -0,0 +1,177 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.sps.data.Marker;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Stores markers as Marker entities in Datastore. Every entity has an indexed geohash property, so
+ * the markers of a cell are one range scan of the built-in single-property index.
+ */
+public final class DatastoreMarkerRepository implements MarkerRepository {
+  private static final Logger logger = Logger.getLogger(DatastoreMarkerRepository.class.getName());
+
+  /** Sorts after every geohash character, so cell + RANGE_END ends the cell's range. */
+  private static final String RANGE_END = "{";
+
+  /** Exists once every Marker entity has a geohash, so the backfill only runs until then. */
+  private static final Key BACKFILL_DONE_KEY = KeyFactory.createKey("Migration", "marker-geohash");
+  /** Holds the cursor the backfill stopped at, so the next call resumes there. */
+  private static final Key BACKFILL_PROGRESS_KEY =
+      KeyFactory.createKey("Migration", "marker-geohash-progress");
+  private static final int BACKFILL_BATCH_SIZE = 500;
+
+  @Override
+  public void add(Marker marker) {
+    Entity markerEntity = new Entity("Marker");
+    markerEntity.setProperty("lat", marker.getLat());
+    markerEntity.setProperty("lng", marker.getLng());
+    markerEntity.setProperty("content", marker.getContent());
+    markerEntity.setProperty("geohash", marker.getGeohash());
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    datastore.put(markerEntity);
+  }
+
+  @Override
+  public Collection<Marker> getAll() {
+    Collection<Marker> markers = new ArrayList<>();
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Query query = new Query("Marker");
+    PreparedQuery results = datastore.prepare(query);
+
+    for (Entity entity : results.asIterable()) {
+      markers.add(toMarker(entity));
+    }
+    return markers;
+  }
+
+  @Override
+  public Map<String, Collection<Marker>> getInCells(Collection<String> cells) {
+    // Start every cell's query before reading any of them, so that they run at the same time.
+    AsyncDatastoreService datastore = DatastoreServiceFactory.getAsyncDatastoreService();
+    Map<String, List<Entity>> pendingResults = new LinkedHashMap<>();
+    for (String cell : cells) {
+      Query query = new Query("Marker").setFilter(CompositeFilterOperator.and(
+          new FilterPredicate("geohash", FilterOperator.GREATER_THAN_OR_EQUAL, cell),
+          new FilterPredicate("geohash", FilterOperator.LESS_THAN, cell + RANGE_END)));
+      FetchOptions fetchOptions = FetchOptions.Builder.withLimit(MAX_MARKERS_PER_CELL);
+      pendingResults.put(cell, datastore.prepare(query).asList(fetchOptions));
+    }
+
+    Map<String, Collection<Marker>> markers = new HashMap<>();
+    for (Map.Entry<String, List<Entity>> results : pendingResults.entrySet()) {
+      Collection<Marker> cellMarkers = new ArrayList<>();
+      for (Entity entity : results.getValue()) {
+        cellMarkers.add(toMarker(entity));
+      }
+      markers.put(results.getKey(), cellMarkers);
+    }
+    return markers;
+  }
+
+  /**
+   * Gives a geohash to the Marker entities stored before markers had one. Those are missing from
+   * the geohash index, so {@link #getInCells} would never find them. The markers are updated in
+   * batches until all of them are done or the deadline passes. The cursor after every batch is
+   * saved, so the next call carries on where this one stopped.
+   *
+   * @return whether every marker has a geohash
+   */
+  public static boolean backfillGeohashes(long deadlineMillis) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      datastore.get(BACKFILL_DONE_KEY);
+      return true;
+    } catch (EntityNotFoundException e) {
+      // Not done yet.
+    }
+
+    Entity progress;
+    try {
+      progress = datastore.get(BACKFILL_PROGRESS_KEY);
+    } catch (EntityNotFoundException e) {
+      progress = new Entity(BACKFILL_PROGRESS_KEY);
+    }
+    String cursor = (String) progress.getProperty("cursor");
+    long updated = progress.hasProperty("updated") ? (long) progress.getProperty("updated") : 0;
+
+    while (System.currentTimeMillis() < deadlineMillis) {
+      FetchOptions fetchOptions = FetchOptions.Builder.withLimit(BACKFILL_BATCH_SIZE);
+      if (cursor != null) {
+        fetchOptions.startCursor(Cursor.fromWebSafeString(cursor));
+      }
+      QueryResultList<Entity> batch =
+          datastore.prepare(new Query("Marker")).asQueryResultList(fetchOptions);
+
+      List<Entity> missingGeohashes = new ArrayList<>();
+      for (Entity entity : batch) {
+        if (!entity.hasProperty("geohash")) {
+          entity.setProperty("geohash", toMarker(entity).getGeohash());
+          missingGeohashes.add(entity);
+        }
+      }
+      if (!missingGeohashes.isEmpty()) {
+        datastore.put(missingGeohashes);
+        updated += missingGeohashes.size();
+      }
+
+      if (batch.size() < BACKFILL_BATCH_SIZE) {
+        datastore.put(new Entity(BACKFILL_DONE_KEY));
+        datastore.delete(BACKFILL_PROGRESS_KEY);
+        logger.info("Added geohashes to " + updated + " markers, the backfill is done");
+        return true;
+      }
+
+      cursor = batch.getCursor().toWebSafeString();
+      progress.setUnindexedProperty("cursor", cursor);
+      progress.setUnindexedProperty("updated", updated);
+      datastore.put(progress);
+    }
+    logger.info("Added geohashes to " + updated + " markers so far, the next call continues");
+    return false;
+  }
+
+  private static Marker toMarker(Entity entity) {
+    double lat = (double) entity.getProperty("lat");
+    double lng = (double) entity.getProperty("lng");
+    String content = (String) entity.getProperty("content");
+
+    return new Marker(lat, lng, content);
+  }
+}
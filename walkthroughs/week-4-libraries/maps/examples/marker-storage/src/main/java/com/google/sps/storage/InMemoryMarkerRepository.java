@@ -0,0 +1,64 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Marker;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps markers in memory, for running and load-testing the servlet without App Engine. Like the
+ * geohash index in Datastore, markers are sorted by geohash, so a cell is one range of the map.
+ */
+public final class InMemoryMarkerRepository implements MarkerRepository {
+  /** Sorts after every geohash character, so cell + RANGE_END ends the cell's range. */
+  private static final String RANGE_END = "{";
+
+  /** Markers by geohash plus a sequence number, which keeps markers at the same spot apart. */
+  private final ConcurrentNavigableMap<String, Marker> markers = new ConcurrentSkipListMap<>();
+  private final AtomicLong nextId = new AtomicLong();
+
+  @Override
+  public void add(Marker marker) {
+    markers.put(marker.getGeohash() + "#" + nextId.getAndIncrement(), marker);
+  }
+
+  @Override
+  public Collection<Marker> getAll() {
+    return new ArrayList<>(markers.values());
+  }
+
+  @Override
+  public Map<String, Collection<Marker>> getInCells(Collection<String> cells) {
+    Map<String, Collection<Marker>> cellMarkers = new HashMap<>();
+    for (String cell : cells) {
+      List<Marker> inCell = new ArrayList<>();
+      for (Marker marker : markers.subMap(cell, cell + RANGE_END).values()) {
+        if (inCell.size() == MAX_MARKERS_PER_CELL) {
+          break;
+        }
+        inCell.add(marker);
+      }
+      cellMarkers.put(cell, inCell);
+    }
+    return cellMarkers;
+  }
+}
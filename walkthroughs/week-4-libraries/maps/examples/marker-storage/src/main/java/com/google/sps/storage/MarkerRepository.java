@@ -0,0 +1,39 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+import com.google.sps.data.Marker;
+import java.util.Collection;
+import java.util.Map;
+
+/** Stores the markers shown on the map. Implementations must be thread-safe. */
+public interface MarkerRepository {
+  /** The most markers returned for one cell, so a crowded cell can't make a response huge. */
+  int MAX_MARKERS_PER_CELL = 500;
+
+  /** Stores a new marker. */
+  void add(Marker marker);
+
+  /** Returns every stored marker. */
+  Collection<Marker> getAll();
+
+  /**
+   * Returns the markers in each of the cells, keyed by the cell's geohash, at most
+   * {@link #MAX_MARKERS_PER_CELL} per cell. A marker is in a cell if its
+   * {@link Marker#getGeohash geohash} starts with the cell's. A full cell may hold more markers,
+   * which are read by asking for its {@link com.google.sps.data.Geohash#children children} instead.
+   */
+  Map<String, Collection<Marker>> getInCells(Collection<String> cells);
+}
@@ -0,0 +1,49 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.storage;
+
+/**
+ * Chooses where markers are kept. Datastore is used unless the sps.storage system property says
+ * otherwise, e.g. -Dsps.storage=memory to run and profile the servlet on a plain machine. Either
+ * way, recently read cells are cached in front of it.
+ */
+public final class Repositories {
+  private static final String STORAGE = System.getProperty("sps.storage", "datastore");
+
+  private static final MarkerRepository MARKERS =
+      new CachingMarkerRepository(createMarkerRepository());
+
+  private Repositories() {}
+
+  public static MarkerRepository markers() {
+    return MARKERS;
+  }
+
+  /** @return whether markers are kept in Datastore, e.g. so that migrations know to run */
+  public static boolean usesDatastore() {
+    return STORAGE.equals("datastore");
+  }
+
+  private static MarkerRepository createMarkerRepository() {
+    switch (STORAGE) {
+      case "datastore":
+        return new DatastoreMarkerRepository();
+      case "memory":
+        return new InMemoryMarkerRepository();
+      default:
+        throw new IllegalStateException("Unknown sps.storage: " + STORAGE);
+    }
+  }
+}
@@ -17,6 +17,10 @@ let map;
 /* Editable marker that displays when a user clicks in the map. */
 let editMarker;
 
+/* Markers from the backend that are currently shown on the map. */
+let displayMarkers = [];
+let latestRequest = 0;
+
 /** Creates a map that allows users to add markers. */
 function createMap() {
   map = new google.maps.Map(
@@ -29,22 +33,44 @@ function createMap() {
     createMarkerForEdit(event.latLng.lat(), event.latLng.lng());
   });
 
-  fetchMarkers();
+  // Idle fires once the map has settled after loading, panning, or zooming.
+  map.addListener('idle', fetchMarkers);
 }
 
-/** Fetches markers from the backend and adds them to the map. */
+/**
+ * Fetches the markers in the visible part of the map from the backend and
+ * shows them instead of the previous ones. If the area is too crowded to
+ * show every marker, a notice asks the user to zoom in.
+ */
 function fetchMarkers() {
-  fetch('/markers').then(response => response.json()).then((markers) => {
-    markers.forEach(
-        (marker) => {
-            createMarkerForDisplay(marker.lat, marker.lng, marker.content)});
-  });
+  const bounds = map.getBounds();
+  const southWest = bounds.getSouthWest();
+  const northEast = bounds.getNorthEast();
+  const bbox = [southWest.lat(), southWest.lng(), northEast.lat(),
+                northEast.lng()].join(',');
+
+  const request = ++latestRequest;
+  fetch('/markers?bbox=' + bbox).then(response => response.json())
+      .then(({markers, truncated}) => {
+        if (request !== latestRequest) {
+          // The map moved again while this request was in flight.
+          return;
+        }
+
+        displayMarkers.forEach((marker) => marker.setMap(null));
+        displayMarkers = [];
+        markers.forEach(
+            (marker) => {
+                createMarkerForDisplay(marker.lat, marker.lng, marker.content)});
+        document.getElementById('truncated-notice').hidden = !truncated;
+      });
 }
 
 /** Creates a marker that shows a read-only info window when clicked. */
 function createMarkerForDisplay(lat, lng, content) {
   const marker =
       new google.maps.Marker({position: {lat: lat, lng: lng}, map: map});
+  displayMarkers.push(marker);
 
   const infoWindow = new google.maps.InfoWindow({content: content});
   marker.addListener('click', () => {
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * An area of the map between two latitudes and two longitudes. A box whose west edge is east of its
+ * east edge crosses the antimeridian.
+ */
+public final class BoundingBox {
+  private final double south;
+  private final double west;
+  private final double north;
+  private final double east;
+
+  public BoundingBox(double south, double west, double north, double east) {
+    if (!(south <= north) || south < -90 || north > 90) {
+      throw new IllegalArgumentException("Invalid latitude range: " + south + " to " + north);
+    }
+    if (!(west >= -180 && west <= 180 && east >= -180 && east <= 180)) {
+      throw new IllegalArgumentException("Invalid longitude range: " + west + " to " + east);
+    }
+    this.south = south;
+    this.west = west;
+    this.north = north;
+    this.east = east;
+  }
+
+  /**
+   * Parses a box written as south,west,north,east, e.g. 32.5,-124.5,42,-114.
+   *
+   * @throws IllegalArgumentException if the value is not four numbers describing a valid box
+   */
+  public static BoundingBox parse(String value) {
+    String[] parts = value.split(",");
+    if (parts.length != 4) {
+      throw new IllegalArgumentException("Expected south,west,north,east but got: " + value);
+    }
+    double[] edges = new double[4];
+    for (int i = 0; i < 4; i++) {
+      try {
+        edges[i] = Double.parseDouble(parts[i].trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Not a number: " + parts[i]);
+      }
+    }
+    return new BoundingBox(edges[0], edges[1], edges[2], edges[3]);
+  }
+
+  public double getSouth() {
+    return south;
+  }
+
+  public double getWest() {
+    return west;
+  }
+
+  public double getNorth() {
+    return north;
+  }
+
+  public double getEast() {
+    return east;
+  }
+
+  public boolean crossesAntimeridian() {
+    return west > east;
+  }
+
+  public boolean contains(double lat, double lng) {
+    if (lat < south || lat > north) {
+      return false;
+    }
+    return crossesAntimeridian() ? lng >= west || lng <= east : lng >= west && lng <= east;
+  }
+}
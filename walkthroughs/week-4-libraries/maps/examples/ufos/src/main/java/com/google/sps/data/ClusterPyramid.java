@@ -0,0 +1,184 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Clusters of sightings for every zoom level of a Web Mercator map, computed once at load time.
+ *
+ * <p>Every 256 pixel map tile is split into a 4x4 grid of 64 pixel cells, and each level stores
+ * one cluster per non-empty cell. Cells double in size from one zoom level to the next, so every
+ * level is built by merging the 2x2 cells of the level below it rather than by going back to the
+ * points. A tile therefore holds at most 16 clusters however many sightings it covers.
+ */
+public final class ClusterPyramid {
+  public static final int MAX_ZOOM = 18;
+
+  /** The number of cells along each side of a tile. */
+  private static final int CELLS_PER_TILE = 4;
+  private static final int CELL_BITS_PER_TILE = 2;
+
+  /** Web Mercator stops at the latitude that makes the world square. */
+  private static final double MAX_LATITUDE = 85.0511287798;
+
+  /** Receives the clusters found by {@link #forEachCluster}. */
+  public interface ClusterVisitor {
+    void visit(double lat, double lng, int count) throws IOException;
+  }
+
+  /**
+   * The clusters of one zoom level, sorted by cell key. A cell key holds the cell's row in its
+   * high bits and its column in the low {@link #columnBits} bits.
+   */
+  private static final class Level {
+    final int columnBits;
+    final long[] keys;
+    final int[] counts;
+    final double[] lats;
+    final double[] lngs;
+
+    Level(int columnBits, long[] keys) {
+      this.columnBits = columnBits;
+      this.keys = keys;
+      this.counts = new int[keys.length];
+      this.lats = new double[keys.length];
+      this.lngs = new double[keys.length];
+    }
+
+    /** @return the index of the cluster in the cell, or -1 if the cell is empty */
+    int indexOf(long key) {
+      int index = Arrays.binarySearch(keys, key);
+      return index >= 0 ? index : -1;
+    }
+
+    void add(int index, double lat, double lng, int count) {
+      counts[index] += count;
+      lats[index] += lat * count;
+      lngs[index] += lng * count;
+    }
+
+    /** Turns the weighted sums collected by {@link #add} into centroids. */
+    void finish() {
+      for (int i = 0; i < keys.length; i++) {
+        lats[i] /= counts[i];
+        lngs[i] /= counts[i];
+      }
+    }
+  }
+
+  private final Level[] levels = new Level[MAX_ZOOM + 1];
+
+  public ClusterPyramid(UfoSightings sightings) {
+    int columnBits = MAX_ZOOM + CELL_BITS_PER_TILE;
+    long[] pointKeys = new long[sightings.size()];
+    for (int i = 0; i < sightings.size(); i++) {
+      long column = toCell(mercatorX(sightings.getLng(i)), columnBits);
+      long row = toCell(mercatorY(sightings.getLat(i)), columnBits);
+      pointKeys[i] = row << columnBits | column;
+    }
+
+    Level level = new Level(columnBits, uniqueSorted(pointKeys.clone()));
+    for (int i = 0; i < sightings.size(); i++) {
+      level.add(level.indexOf(pointKeys[i]), sightings.getLat(i), sightings.getLng(i), 1);
+    }
+    level.finish();
+    levels[MAX_ZOOM] = level;
+
+    for (int zoom = MAX_ZOOM - 1; zoom >= 0; zoom--) {
+      levels[zoom] = merge(levels[zoom + 1]);
+    }
+  }
+
+  /**
+   * Calls the visitor with every cluster in the tile. Tiles are numbered like Google Maps tiles,
+   * from 0 to 2^zoom - 1 starting at the north-west corner.
+   *
+   * @throws IllegalArgumentException if there is no such tile
+   */
+  public void forEachCluster(int zoom, int x, int y, ClusterVisitor visitor)
+      throws IOException {
+    if (zoom < 0 || zoom > MAX_ZOOM || x < 0 || y < 0 || x >= 1 << zoom || y >= 1 << zoom) {
+      throw new IllegalArgumentException("No tile " + zoom + "/" + x + "/" + y);
+    }
+
+    Level level = levels[zoom];
+    long firstColumn = (long) x * CELLS_PER_TILE;
+    long firstRow = (long) y * CELLS_PER_TILE;
+    for (long row = firstRow; row < firstRow + CELLS_PER_TILE; row++) {
+      long firstKey = row << level.columnBits | firstColumn;
+      int index = Arrays.binarySearch(level.keys, firstKey);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      // The cells of one tile row are next to each other in key order.
+      for (; index < level.keys.length && level.keys[index] < firstKey + CELLS_PER_TILE; index++) {
+        visitor.visit(level.lats[index], level.lngs[index], level.counts[index]);
+      }
+    }
+  }
+
+  /** Builds the level above by merging every 2x2 block of cells into one. */
+  private static Level merge(Level child) {
+    int columnBits = child.columnBits - 1;
+    long[] parentKeys = new long[child.keys.length];
+    for (int i = 0; i < child.keys.length; i++) {
+      parentKeys[i] = parentKey(child.keys[i], child.columnBits);
+    }
+
+    Level parent = new Level(columnBits, uniqueSorted(parentKeys.clone()));
+    for (int i = 0; i < child.keys.length; i++) {
+      parent.add(parent.indexOf(parentKeys[i]), child.lats[i], child.lngs[i], child.counts[i]);
+    }
+    parent.finish();
+    return parent;
+  }
+
+  private static long parentKey(long key, int columnBits) {
+    long column = key & ((1L << columnBits) - 1);
+    long row = key >>> columnBits;
+    return (row >> 1) << (columnBits - 1) | (column >> 1);
+  }
+
+  /** Sorts the keys in place and returns them without duplicates. */
+  private static long[] uniqueSorted(long[] keys) {
+    Arrays.sort(keys);
+    int unique = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (unique == 0 || keys[i] != keys[unique - 1]) {
+        keys[unique++] = keys[i];
+      }
+    }
+    return Arrays.copyOf(keys, unique);
+  }
+
+  /** @return the cell along one axis of a world that is 2^bits cells wide */
+  private static long toCell(double fraction, int bits) {
+    long cells = 1L << bits;
+    return Math.min(Math.max((long) Math.floor(fraction * cells), 0), cells - 1);
+  }
+
+  /** @return the distance from the west edge of the world, from 0 to 1 */
+  private static double mercatorX(double lng) {
+    return (lng + 180) / 360;
+  }
+
+  /** @return the distance from the north edge of the world, from 0 to 1 */
+  private static double mercatorY(double lat) {
+    double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat))));
+    return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+  }
+}
@@ -0,0 +1,174 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+
+/**
+ * Buckets sightings into a grid of one-degree cells so a bounding box query only looks at the cells
+ * it overlaps. The points are stored cell by cell in two parallel arrays, and every cell keeps its
+ * count and centroid so that a large area can be summarized with one cluster per cell.
+ */
+public final class SightingIndex {
+  private static final int ROWS = 180;
+  private static final int COLUMNS = 360;
+
+  /** Receives the points found by {@link #forEachPoint}. */
+  public interface PointVisitor {
+    void visit(double lat, double lng) throws IOException;
+  }
+
+  /** Receives the clusters found by {@link #forEachCluster}. */
+  public interface ClusterVisitor {
+    void visit(double lat, double lng, int count) throws IOException;
+  }
+
+  /** The points of cell c are at indexes cellStart[c] (inclusive) to cellStart[c + 1]. */
+  private final int[] cellStart = new int[ROWS * COLUMNS + 1];
+  private final double[] lats;
+  private final double[] lngs;
+  private final double[] centroidLats = new double[ROWS * COLUMNS];
+  private final double[] centroidLngs = new double[ROWS * COLUMNS];
+
+  public SightingIndex(UfoSightings sightings) {
+    int size = sightings.size();
+    lats = new double[size];
+    lngs = new double[size];
+
+    // Counting sort: count the points per cell, turn the counts into start offsets, then place
+    // every point at the next free slot of its cell.
+    int[] cells = new int[size];
+    for (int i = 0; i < size; i++) {
+      cells[i] = cellOf(sightings.getLat(i), sightings.getLng(i));
+      cellStart[cells[i] + 1]++;
+    }
+    for (int cell = 0; cell < ROWS * COLUMNS; cell++) {
+      cellStart[cell + 1] += cellStart[cell];
+    }
+
+    int[] next = cellStart.clone();
+    for (int i = 0; i < size; i++) {
+      int slot = next[cells[i]]++;
+      lats[slot] = sightings.getLat(i);
+      lngs[slot] = sightings.getLng(i);
+      centroidLats[cells[i]] += sightings.getLat(i);
+      centroidLngs[cells[i]] += sightings.getLng(i);
+    }
+    for (int cell = 0; cell < ROWS * COLUMNS; cell++) {
+      int count = cellStart[cell + 1] - cellStart[cell];
+      if (count > 0) {
+        centroidLats[cell] /= count;
+        centroidLngs[cell] /= count;
+      }
+    }
+  }
+
+  public int size() {
+    return lats.length;
+  }
+
+  /** @return the number of points inside the box */
+  public int count(BoundingBox box) {
+    int[] count = new int[1];
+    try {
+      forEachCell(box, (cell, inside) -> {
+        if (inside) {
+          count[0] += cellStart[cell + 1] - cellStart[cell];
+          return;
+        }
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+          if (box.contains(lats[i], lngs[i])) {
+            count[0]++;
+          }
+        }
+      });
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return count[0];
+  }
+
+  /** Calls the visitor with every point inside the box. */
+  public void forEachPoint(BoundingBox box, PointVisitor visitor) throws IOException {
+    forEachCell(box, (cell, inside) -> {
+      for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+        if (inside || box.contains(lats[i], lngs[i])) {
+          visitor.visit(lats[i], lngs[i]);
+        }
+      }
+    });
+  }
+
+  /**
+   * Calls the visitor once for every non-empty cell that overlaps the box, with the centroid and
+   * count of all of the cell's points.
+   */
+  public void forEachCluster(BoundingBox box, ClusterVisitor visitor) throws IOException {
+    forEachCell(box, (cell, inside) -> {
+      int count = cellStart[cell + 1] - cellStart[cell];
+      if (count > 0) {
+        visitor.visit(centroidLats[cell], centroidLngs[cell], count);
+      }
+    });
+  }
+
+  private interface CellVisitor {
+    void visit(int cell, boolean inside) throws IOException;
+  }
+
+  /**
+   * Calls the visitor with every cell that overlaps the box, and whether the cell lies completely
+   * inside it so that its points need no checks.
+   */
+  private static void forEachCell(BoundingBox box, CellVisitor visitor) throws IOException {
+    int firstColumn = columnOf(box.getWest());
+    int lastColumn = columnOf(box.getEast());
+    int columns = lastColumn - firstColumn + 1;
+    if (box.crossesAntimeridian()) {
+      // The box wraps around, and covers every column if both edges fall in the same one.
+      columns = firstColumn == lastColumn ? COLUMNS : columns + COLUMNS;
+    }
+
+    for (int row = rowOf(box.getSouth()); row <= rowOf(box.getNorth()); row++) {
+      for (int i = 0; i < columns; i++) {
+        int column = (firstColumn + i) % COLUMNS;
+        visitor.visit(row * COLUMNS + column, isInside(row, column, box));
+      }
+    }
+  }
+
+  private static boolean isInside(int row, int column, BoundingBox box) {
+    double south = row - 90;
+    double west = column - 180;
+    if (south < box.getSouth() || south + 1 > box.getNorth()) {
+      return false;
+    }
+    return box.crossesAntimeridian()
+        ? west >= box.getWest() || west + 1 <= box.getEast()
+        : west >= box.getWest() && west + 1 <= box.getEast();
+  }
+
+  private static int cellOf(double lat, double lng) {
+    return rowOf(lat) * COLUMNS + columnOf(lng);
+  }
+
+  private static int rowOf(double lat) {
+    return Math.min(Math.max((int) Math.floor(lat + 90), 0), ROWS - 1);
+  }
+
+  private static int columnOf(double lng) {
+    return Math.min(Math.max((int) Math.floor(lng + 180), 0), COLUMNS - 1);
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * UFO sightings stored column by column in primitive arrays. A million sightings take 16 MB this
+ * way, instead of a million objects with headers and references on top of the same 16 MB.
+ */
+public final class UfoSightings {
+  /** Coordinates are written with at most this many decimals, about a millimeter. */
+  private static final int DECIMALS = 8;
+  private static final long SCALE = 100_000_000L;
+
+  private final double[] lats;
+  private final double[] lngs;
+
+  /** Takes ownership of the column arrays, which must not be changed afterwards. */
+  public UfoSightings(double[] lats, double[] lngs) {
+    if (lats.length != lngs.length) {
+      throw new IllegalArgumentException(
+          lats.length + " latitudes but " + lngs.length + " longitudes");
+    }
+    this.lats = lats;
+    this.lngs = lngs;
+  }
+
+  public int size() {
+    return lats.length;
+  }
+
+  public double getLat(int index) {
+    return lats[index];
+  }
+
+  public double getLng(int index) {
+    return lngs[index];
+  }
+
+  /**
+   * Writes the sightings as a JSON array, e.g. [{"lat":38.4404675,"lng":-122.7144313}]. The
+   * numbers are formatted into one reusable buffer, so nothing is allocated per sighting.
+   */
+  public void writeJson(Writer writer) throws IOException {
+    char[] buffer = new char[8192];
+    int length = 0;
+    buffer[length++] = '[';
+    for (int i = 0; i < lats.length; i++) {
+      // A sighting takes at most 50 characters.
+      if (length > buffer.length - 64) {
+        writer.write(buffer, 0, length);
+        length = 0;
+      }
+      if (i > 0) {
+        buffer[length++] = ',';
+      }
+      length = append(buffer, length, "{\"lat\":");
+      length = appendCoordinate(buffer, length, lats[i]);
+      length = append(buffer, length, ",\"lng\":");
+      length = appendCoordinate(buffer, length, lngs[i]);
+      buffer[length++] = '}';
+    }
+    buffer[length++] = ']';
+    writer.write(buffer, 0, length);
+  }
+
+  private static int append(char[] buffer, int length, String text) {
+    text.getChars(0, text.length(), buffer, length);
+    return length + text.length();
+  }
+
+  /** Writes a coordinate in plain decimal notation, without trailing zeros. */
+  private static int appendCoordinate(char[] buffer, int length, double value) {
+    long scaled = Math.round(value * SCALE);
+    if (scaled < 0) {
+      buffer[length++] = '-';
+      scaled = -scaled;
+    }
+    length = appendDigits(buffer, length, scaled / SCALE, 1);
+
+    long fraction = scaled % SCALE;
+    if (fraction != 0) {
+      int decimals = DECIMALS;
+      while (fraction % 10 == 0) {
+        fraction /= 10;
+        decimals--;
+      }
+      buffer[length++] = '.';
+      length = appendDigits(buffer, length, fraction, decimals);
+    }
+    return length;
+  }
+
+  /** Writes a non-negative number, padded with leading zeros to at least minDigits digits. */
+  private static int appendDigits(char[] buffer, int length, long value, int minDigits) {
+    int digits = 1;
+    for (long rest = value / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    digits = Math.max(digits, minDigits);
+    for (int i = length + digits - 1; i >= length; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+    return length + digits;
+  }
+}
@@ -14,45 +14,210 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.data.UfoSighting;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.BoundingBox;
+import com.google.sps.data.ClusterPyramid;
+import com.google.sps.data.ColumnSnapshot;
+import com.google.sps.data.CsvLoader;
+import com.google.sps.data.MappedFiles;
+import com.google.sps.data.SightingIndex;
+import com.google.sps.data.UfoSightings;
+import com.google.sps.http.PrecomputedResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Scanner;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}] */
-@WebServlet("/ufo-data")
+/**
+ * Returns UFO data as a JSON array, e.g. [{"lat": 38.4404675, "lng": -122.7144313}]
+ *
+ * <p>With a bbox=south,west,north,east parameter only the sightings inside that area are returned,
+ * as {"points": [...], "clusters": []}. Areas with more than {@link #MAX_POINTS} sightings get one
+ * cluster per grid cell instead, e.g. {"points": [], "clusters": [{"lat": 38.5, "lng": -122.4,
+ * "count": 12}]}.
+ *
+ * <p>/ufo-tiles/{z}/{x}/{y} returns the clusters of one map tile from a pyramid precomputed for
+ * zoom levels 0 to {@link ClusterPyramid#MAX_ZOOM}, as {"clusters": [...]} with at most 16 entries.
+ *
+ * <p>The full array and the tiles are encoded once and then served as bytes with an ETag,
+ * gzip-compressed for clients that accept it.
+ */
+@WebServlet({"/ufo-data", "/ufo-tiles/*"})
 public class UfoDataServlet extends HttpServlet {
 
-  private Collection<UfoSighting> ufoSightings;
+  private static final Gson GSON = new Gson();
+
+  /** The most raw points returned for one bounding box. */
+  private static final int MAX_POINTS = 500;
+
+  /** The most encoded tiles kept in memory, a few megabytes at most. */
+  private static final int MAX_CACHED_TILES = 4096;
+
+  private static final String CSV_PATH = "/WEB-INF/ufo-data.csv";
+  /** Written from the CSV at build time by SnapshotBuilder, see walkthroughs/shared. */
+  private static final String SNAPSHOT_PATH = "/WEB-INF/ufo-data.bin";
+
+  private UfoSightings ufoSightings;
+  private SightingIndex sightingIndex;
+  private ClusterPyramid clusterPyramid;
+
+  /** The response without a bbox, every sighting, encoded once in init. */
+  private PrecomputedResponse allSightings;
+
+  /** Encoded tiles by z/x/y, least recently used first. */
+  private final Map<String, PrecomputedResponse> tileCache = Collections.synchronizedMap(
+      new LinkedHashMap<String, PrecomputedResponse>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PrecomputedResponse> eldest) {
+          return size() > MAX_CACHED_TILES;
+        }
+      });
 
   @Override
-  public void init() {
-    ufoSightings = new ArrayList<>();
+  public void init() throws ServletException {
+    try {
+      ufoSightings = loadSightings();
+    } catch (IOException e) {
+      throw new ServletException("Could not read the UFO data", e);
+    }
 
-    Scanner scanner = new Scanner(getServletContext().getResourceAsStream("/WEB-INF/ufo-data.csv"));
-    while (scanner.hasNextLine()) {
-      String line = scanner.nextLine();
-      String[] cells = line.split(",");
+    sightingIndex = new SightingIndex(ufoSightings);
+    clusterPyramid = new ClusterPyramid(ufoSightings);
 
-      double lat = Double.parseDouble(cells[0]);
-      double lng = Double.parseDouble(cells[1]);
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    try (Writer writer = new OutputStreamWriter(json, StandardCharsets.UTF_8)) {
+      ufoSightings.writeJson(writer);
+    } catch (IOException e) {
+      throw new AssertionError("Writing to memory failed", e);
+    }
+    allSightings = new PrecomputedResponse("application/json", json.toByteArray());
+  }
 
-      ufoSightings.add(new UfoSighting(lat, lng));
+  /** Loads the binary snapshot of the sightings, or parses the CSV if there is no usable one. */
+  private UfoSightings loadSightings() throws IOException {
+    try {
+      ColumnSnapshot snapshot =
+          ColumnSnapshot.read(MappedFiles.open(getServletContext(), SNAPSHOT_PATH));
+      return new UfoSightings(snapshot.getDoubles(0), snapshot.getDoubles(1));
+    } catch (FileNotFoundException e) {
+      // The build step didn't run, e.g. when the app is started straight from the sources.
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Ignoring " + SNAPSHOT_PATH + ": " + e.getMessage());
     }
-    scanner.close();
+
+    ByteBuffer csv = MappedFiles.open(getServletContext(), CSV_PATH);
+    double[][] columns = CsvLoader.readColumns(csv, 2, Runtime.getRuntime().availableProcessors());
+    return new UfoSightings(columns[0], columns[1]);
   }
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (request.getServletPath().equals("/ufo-tiles")) {
+      writeTile(request, response);
+      return;
+    }
+
+    String bboxParameter = request.getParameter("bbox");
+    if (bboxParameter == null) {
+      allSightings.serve(request, response);
+      return;
+    }
+
+    BoundingBox box;
+    try {
+      box = BoundingBox.parse(bboxParameter);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    boolean clustered = sightingIndex.count(box) > MAX_POINTS;
+
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(ufoSightings);
-    response.getWriter().println(json);
+    JsonWriter json = GSON.newJsonWriter(response.getWriter());
+    json.beginObject();
+    json.name("points").beginArray();
+    if (!clustered) {
+      sightingIndex.forEachPoint(box, (lat, lng) ->
+          json.beginObject().name("lat").value(lat).name("lng").value(lng).endObject());
+    }
+    json.endArray();
+    json.name("clusters").beginArray();
+    if (clustered) {
+      sightingIndex.forEachCluster(box, (lat, lng, count) ->
+          json.beginObject()
+              .name("lat").value(lat)
+              .name("lng").value(lng)
+              .name("count").value(count)
+              .endObject());
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+
+  private void writeTile(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String pathInfo = request.getPathInfo();
+    String[] parts = pathInfo == null ? new String[0] : pathInfo.substring(1).split("/");
+    if (parts.length != 3) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    int zoom;
+    int x;
+    int y;
+    try {
+      zoom = Integer.parseInt(parts[0]);
+      x = Integer.parseInt(parts[1]);
+      y = Integer.parseInt(parts[2]);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    String key = zoom + "/" + x + "/" + y;
+    PrecomputedResponse tile = tileCache.get(key);
+    if (tile == null) {
+      try {
+        tile = new PrecomputedResponse("application/json", encodeTile(zoom, x, y));
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+      tileCache.put(key, tile);
+    }
+
+    response.setHeader("Cache-Control", "public, max-age=3600");
+    tile.serve(request, response);
+  }
+
+  private byte[] encodeTile(int zoom, int x, int y) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    JsonWriter json = GSON.newJsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+    json.beginObject();
+    json.name("clusters").beginArray();
+    clusterPyramid.forEachCluster(zoom, x, y, (lat, lng, count) ->
+        json.beginObject()
+            .name("lat").value(lat)
+            .name("lng").value(lng)
+            .name("count").value(count)
+            .endObject());
+    json.endArray();
+    json.endObject();
+    json.close();
+    return bytes.toByteArray();
   }
 }
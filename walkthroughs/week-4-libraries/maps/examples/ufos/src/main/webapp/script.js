@@ -12,16 +12,78 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches UFO sightings data from the server and displays it in a map. */
+/** The deepest zoom level the server has clusters for. */
+const MAX_TILE_ZOOM = 18;
+
+let map;
+let markers = [];
+let latestRequest = 0;
+
+/** Creates the map and shows the UFO sightings in whatever part of it is visible. */
 function createUfoSightingsMap() {
-  fetch('/ufo-data').then(response => response.json()).then((ufoSightings) => {
-    const map = new google.maps.Map(
-        document.getElementById('map'),
-        {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
-
-    ufoSightings.forEach((ufoSighting) => {
-      new google.maps.Marker(
-          {position: {lat: ufoSighting.lat, lng: ufoSighting.lng}, map: map});
+  map = new google.maps.Map(
+      document.getElementById('map'),
+      {center: {lat: 35.78613674, lng: -119.4491591}, zoom: 7});
+
+  // Idle fires once the map has settled after loading, panning, or zooming.
+  map.addListener('idle', fetchVisibleSightings);
+}
+
+/**
+ * Fetches the clustered sightings of every map tile in the visible area and replaces the markers
+ * with them. Tiles don't change, so the browser serves tiles it has seen before from its cache.
+ */
+function fetchVisibleSightings() {
+  const zoom = Math.min(Math.round(map.getZoom()), MAX_TILE_ZOOM);
+  const bounds = map.getBounds();
+  const tileCount = Math.pow(2, zoom);
+
+  const north = toTileY(bounds.getNorthEast().lat(), tileCount);
+  const south = toTileY(bounds.getSouthWest().lat(), tileCount);
+  const west = toTileX(bounds.getSouthWest().lng(), tileCount);
+  const east = toTileX(bounds.getNorthEast().lng(), tileCount);
+  // The visible area can wrap around the antimeridian, in which case east is smaller than west.
+  const columns = Math.min((east - west + tileCount) % tileCount + 1, tileCount);
+
+  const tiles = [];
+  for (let y = north; y <= south; y++) {
+    for (let i = 0; i < columns; i++) {
+      const x = (west + i) % tileCount;
+      tiles.push(fetch(`/ufo-tiles/${zoom}/${x}/${y}`).then(response => response.json()));
+    }
+  }
+
+  const request = ++latestRequest;
+  Promise.all(tiles).then((tileClusters) => {
+    if (request !== latestRequest) {
+      // The map moved again while these requests were in flight.
+      return;
+    }
+
+    markers.forEach((marker) => marker.setMap(null));
+    markers = [];
+
+    tileClusters.forEach((tile) => {
+      tile.clusters.forEach((cluster) => {
+        markers.push(new google.maps.Marker({
+          position: {lat: cluster.lat, lng: cluster.lng},
+          label: cluster.count > 1 ? String(cluster.count) : null,
+          title: cluster.count > 1 ? cluster.count + ' sightings' : null,
+          map: map
+        }));
+      });
     });
   });
 }
+
+/** Returns the column of the Web Mercator tile that contains the longitude. */
+function toTileX(lng, tileCount) {
+  return Math.min(Math.floor((lng + 180) / 360 * tileCount), tileCount - 1);
+}
+
+/** Returns the row of the Web Mercator tile that contains the latitude. */
+function toTileY(lat, tileCount) {
+  const sin = Math.sin(lat * Math.PI / 180);
+  const y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+  return Math.min(Math.max(Math.floor(y * tileCount), 0), tileCount - 1);
+}
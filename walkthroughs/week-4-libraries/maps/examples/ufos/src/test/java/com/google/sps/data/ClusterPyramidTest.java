@@ -0,0 +1,197 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link ClusterPyramid} puts every sighting in the right tile at every zoom level. */
+@RunWith(JUnit4.class)
+public final class ClusterPyramidTest {
+  private static final int MAX_CLUSTERS_PER_TILE = 16;
+  private static final double MAX_LATITUDE = 85.0511287798;
+
+  @Test
+  public void everyTileOfLowZoomsSumsToAllSightings() throws IOException {
+    UfoSightings sightings = randomSightings(new Random(1), 2000);
+    ClusterPyramid pyramid = new ClusterPyramid(sightings);
+
+    for (int zoom = 0; zoom <= 5; zoom++) {
+      int total = 0;
+      for (int x = 0; x < 1 << zoom; x++) {
+        for (int y = 0; y < 1 << zoom; y++) {
+          List<Cluster> clusters = clusters(pyramid, zoom, x, y);
+          Assert.assertTrue(clusters.size() <= MAX_CLUSTERS_PER_TILE);
+          total += count(clusters);
+          Assert.assertEquals(expectedCount(sightings, zoom, x, y), count(clusters));
+        }
+      }
+      Assert.assertEquals("Zoom " + zoom, sightings.size(), total);
+    }
+  }
+
+  @Test
+  public void tileOfEverySightingHoldsItAtEveryZoom() throws IOException {
+    UfoSightings sightings = randomSightings(new Random(2), 50);
+    ClusterPyramid pyramid = new ClusterPyramid(sightings);
+
+    for (int zoom = 0; zoom <= ClusterPyramid.MAX_ZOOM; zoom++) {
+      for (int i = 0; i < sightings.size(); i++) {
+        int x = tileX(sightings.getLng(i), zoom);
+        int y = tileY(sightings.getLat(i), zoom);
+        Assert.assertEquals(expectedCount(sightings, zoom, x, y),
+            count(clusters(pyramid, zoom, x, y)));
+      }
+    }
+  }
+
+  @Test
+  public void tileHoldsAtMostSixteenClusters() throws IOException {
+    UfoSightings sightings = randomSightings(new Random(3), 20_000);
+    ClusterPyramid pyramid = new ClusterPyramid(sightings);
+
+    // Spread over the whole world, the points fill every cell of the top tile.
+    List<Cluster> clusters = clusters(pyramid, 0, 0, 0);
+    Assert.assertEquals(MAX_CLUSTERS_PER_TILE, clusters.size());
+    Assert.assertEquals(sightings.size(), count(clusters));
+    for (int zoom = 1; zoom <= 3; zoom++) {
+      Assert.assertTrue(clusters(pyramid, zoom, 1, 1).size() <= MAX_CLUSTERS_PER_TILE);
+    }
+  }
+
+  @Test
+  public void clustersAreCentroidsOfTheirSightings() throws IOException {
+    ClusterPyramid pyramid = pyramid(10, 20, 12, 22, 11, 24, -40, -100);
+
+    // At zoom 0 a cell is 90 degrees of longitude wide, so the first three share one.
+    List<Cluster> clusters = clusters(pyramid, 0, 0, 0);
+    Assert.assertEquals(2, clusters.size());
+    Cluster merged = clusters.get(0).count == 3 ? clusters.get(0) : clusters.get(1);
+    Assert.assertEquals(11, merged.lat, 1e-9);
+    Assert.assertEquals(22, merged.lng, 1e-9);
+  }
+
+  @Test
+  public void sightingsOnTileEdgesGoToTheTileEastAndSouthOfThem() throws IOException {
+    ClusterPyramid pyramid = pyramid(0, 0);
+
+    Assert.assertEquals(0, count(clusters(pyramid, 1, 0, 0)));
+    Assert.assertEquals(0, count(clusters(pyramid, 1, 0, 1)));
+    Assert.assertEquals(0, count(clusters(pyramid, 1, 1, 0)));
+    Assert.assertEquals(1, count(clusters(pyramid, 1, 1, 1)));
+  }
+
+  @Test
+  public void sightingsBeyondTheMapAreClampedToItsEdges() throws IOException {
+    ClusterPyramid pyramid = pyramid(89, 180, -89, -180);
+    int last = (1 << ClusterPyramid.MAX_ZOOM) - 1;
+
+    Assert.assertEquals(1, count(clusters(pyramid, ClusterPyramid.MAX_ZOOM, last, 0)));
+    Assert.assertEquals(1, count(clusters(pyramid, ClusterPyramid.MAX_ZOOM, 0, last)));
+  }
+
+  @Test
+  public void rejectsTilesOutsideTheMap() throws IOException {
+    ClusterPyramid pyramid = pyramid(0, 0);
+    int[][] tiles = {{-1, 0, 0}, {ClusterPyramid.MAX_ZOOM + 1, 0, 0}, {0, 1, 0}, {0, 0, 1},
+        {2, -1, 0}, {2, 0, 4}};
+    for (int[] tile : tiles) {
+      try {
+        pyramid.forEachCluster(tile[0], tile[1], tile[2], (lat, lng, count) -> {});
+        Assert.fail("Accepted tile " + tile[0] + "/" + tile[1] + "/" + tile[2]);
+      } catch (IllegalArgumentException expected) {
+        // Expected.
+      }
+    }
+  }
+
+  /** A cluster found in a tile. */
+  private static final class Cluster {
+    final double lat;
+    final double lng;
+    final int count;
+
+    Cluster(double lat, double lng, int count) {
+      this.lat = lat;
+      this.lng = lng;
+      this.count = count;
+    }
+  }
+
+  private static List<Cluster> clusters(ClusterPyramid pyramid, int zoom, int x, int y)
+      throws IOException {
+    List<Cluster> clusters = new ArrayList<>();
+    pyramid.forEachCluster(
+        zoom, x, y, (lat, lng, count) -> clusters.add(new Cluster(lat, lng, count)));
+    return clusters;
+  }
+
+  private static int count(List<Cluster> clusters) {
+    int count = 0;
+    for (Cluster cluster : clusters) {
+      count += cluster.count;
+    }
+    return count;
+  }
+
+  private static int expectedCount(UfoSightings sightings, int zoom, int x, int y) {
+    int count = 0;
+    for (int i = 0; i < sightings.size(); i++) {
+      if (tileX(sightings.getLng(i), zoom) == x && tileY(sightings.getLat(i), zoom) == y) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** The usual slippy map tile formulas, kept independent of the code under test. */
+  private static int tileX(double lng, int zoom) {
+    int tiles = 1 << zoom;
+    return Math.min((int) Math.floor((lng + 180) / 360 * tiles), tiles - 1);
+  }
+
+  private static int tileY(double lat, int zoom) {
+    int tiles = 1 << zoom;
+    double radians = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+    double y = (1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2;
+    return Math.min(Math.max((int) Math.floor(y * tiles), 0), tiles - 1);
+  }
+
+  private static ClusterPyramid pyramid(double... latsAndLngs) {
+    double[] lats = new double[latsAndLngs.length / 2];
+    double[] lngs = new double[latsAndLngs.length / 2];
+    for (int i = 0; i < lats.length; i++) {
+      lats[i] = latsAndLngs[2 * i];
+      lngs[i] = latsAndLngs[2 * i + 1];
+    }
+    return new ClusterPyramid(new UfoSightings(lats, lngs));
+  }
+
+  private static UfoSightings randomSightings(Random random, int size) {
+    double[] lats = new double[size];
+    double[] lngs = new double[size];
+    for (int i = 0; i < size; i++) {
+      lats[i] = -85 + random.nextDouble() * 170;
+      lngs[i] = -180 + random.nextDouble() * 360;
+    }
+    return new UfoSightings(lats, lngs);
+  }
+}
@@ -0,0 +1,188 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that {@link SightingIndex} finds exactly the points a scan of every sighting would. */
+@RunWith(JUnit4.class)
+public final class SightingIndexTest {
+  @Test
+  public void matchesScanForRandomBoxes() throws IOException {
+    Random random = new Random(42);
+    UfoSightings sightings = randomSightings(random, 5000);
+    SightingIndex index = new SightingIndex(sightings);
+
+    for (int i = 0; i < 500; i++) {
+      double south = -90 + random.nextDouble() * 180;
+      double north = south + random.nextDouble() * (90 - south);
+      // Includes boxes whose west edge is east of their east edge, i.e. across the antimeridian.
+      double west = -180 + random.nextDouble() * 360;
+      double east = -180 + random.nextDouble() * 360;
+      assertMatchesScan(sightings, index, new BoundingBox(south, west, north, east));
+    }
+  }
+
+  @Test
+  public void matchesScanForBoxesOnCellEdges() throws IOException {
+    Random random = new Random(7);
+    UfoSightings sightings = randomGridSightings(random, 5000);
+    SightingIndex index = new SightingIndex(sightings);
+
+    for (int i = 0; i < 500; i++) {
+      int south = -90 + random.nextInt(180);
+      int north = south + random.nextInt(91 - south);
+      int west = -180 + random.nextInt(361);
+      int east = -180 + random.nextInt(361);
+      assertMatchesScan(sightings, index, new BoundingBox(south, west, north, east));
+    }
+  }
+
+  @Test
+  public void boxEdgesAreInclusive() throws IOException {
+    SightingIndex index = index(10, 20, 11, 21, 10.5, 20.5, 11.001, 21);
+
+    Assert.assertEquals(3, index.count(new BoundingBox(10, 20, 11, 21)));
+    assertPoints(index, new BoundingBox(11, 21, 11, 21), 11, 21);
+  }
+
+  @Test
+  public void boxAcrossAntimeridianFindsBothSides() throws IOException {
+    SightingIndex index = index(0, 179.5, 0, -179.5, 0, 180, 0, -180, 0, 0, 0, 178.9);
+
+    BoundingBox box = new BoundingBox(-1, 179, 1, -179);
+    Assert.assertTrue(box.crossesAntimeridian());
+    assertPoints(index, box, 0, -180, 0, -179.5, 0, 179.5, 0, 180);
+  }
+
+  @Test
+  public void boxAcrossAntimeridianWithEdgesInOneCellCoversAlmostEverything() throws IOException {
+    SightingIndex index = index(0, 10.1, 0, 10.5, 0, 10.8, 0, -170, 0, 170);
+
+    // Everything except the sliver between 10.2 and 10.7.
+    assertPoints(index, new BoundingBox(-1, 10.7, 1, 10.2), 0, -170, 0, 10.1, 0, 10.8, 0, 170);
+  }
+
+  @Test
+  public void poleAndAntimeridianPointsAreIndexed() throws IOException {
+    SightingIndex index = index(90, 180, -90, -180, 90, -180, -90, 180);
+
+    Assert.assertEquals(4, index.count(new BoundingBox(-90, -180, 90, 180)));
+    assertPoints(index, new BoundingBox(89.5, 179.5, 90, 180), 90, 180);
+    assertPoints(index, new BoundingBox(-90, -180, -89.5, -179.5), -90, -180);
+  }
+
+  @Test
+  public void clustersSummarizeWholeCells() throws IOException {
+    SightingIndex index = index(10.25, 20.25, 10.75, 20.75, 12.5, 22.5);
+
+    List<String> clusters = new ArrayList<>();
+    index.forEachCluster(new BoundingBox(10.9, 20.9, 11, 21),
+        (lat, lng, count) -> clusters.add(lat + "," + lng + "x" + count));
+
+    // The box only touches the first cell, but its cluster has both of the cell's points.
+    Assert.assertEquals(Collections.singletonList("10.5,20.5x2"), clusters);
+  }
+
+  @Test
+  public void emptyIndexFindsNothing() throws IOException {
+    SightingIndex index = index();
+    BoundingBox world = new BoundingBox(-90, -180, 90, 180);
+
+    Assert.assertEquals(0, index.size());
+    Assert.assertEquals(0, index.count(world));
+    index.forEachPoint(world, (lat, lng) -> Assert.fail());
+    index.forEachCluster(world, (lat, lng, count) -> Assert.fail());
+  }
+
+  private static void assertMatchesScan(
+      UfoSightings sightings, SightingIndex index, BoundingBox box) throws IOException {
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < sightings.size(); i++) {
+      if (box.contains(sightings.getLat(i), sightings.getLng(i))) {
+        expected.add(sightings.getLat(i) + "," + sightings.getLng(i));
+      }
+    }
+
+    List<String> actual = new ArrayList<>();
+    index.forEachPoint(box, (lat, lng) -> actual.add(lat + "," + lng));
+    Collections.sort(expected);
+    Collections.sort(actual);
+
+    String message = box.getSouth() + "," + box.getWest() + "," + box.getNorth() + ","
+        + box.getEast();
+    Assert.assertEquals(message, expected, actual);
+    Assert.assertEquals(message, expected.size(), index.count(box));
+
+    // Clusters stand for whole cells, so they hold at least the points inside the box.
+    int[] clustered = new int[1];
+    index.forEachCluster(box, (lat, lng, count) -> clustered[0] += count);
+    Assert.assertTrue(message, clustered[0] >= expected.size());
+  }
+
+  private static void assertPoints(SightingIndex index, BoundingBox box, double... latsAndLngs)
+      throws IOException {
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < latsAndLngs.length; i += 2) {
+      expected.add(latsAndLngs[i] + "," + latsAndLngs[i + 1]);
+    }
+    List<String> actual = new ArrayList<>();
+    index.forEachPoint(box, (lat, lng) -> actual.add(lat + "," + lng));
+    Collections.sort(expected);
+    Collections.sort(actual);
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(expected.size(), index.count(box));
+  }
+
+  private static SightingIndex index(double... latsAndLngs) {
+    double[] lats = new double[latsAndLngs.length / 2];
+    double[] lngs = new double[latsAndLngs.length / 2];
+    for (int i = 0; i < lats.length; i++) {
+      lats[i] = latsAndLngs[2 * i];
+      lngs[i] = latsAndLngs[2 * i + 1];
+    }
+    return new SightingIndex(new UfoSightings(lats, lngs));
+  }
+
+  private static UfoSightings randomSightings(Random random, int size) {
+    double[] lats = new double[size];
+    double[] lngs = new double[size];
+    for (int i = 0; i < size; i++) {
+      lats[i] = -90 + random.nextDouble() * 180;
+      lngs[i] = -180 + random.nextDouble() * 360;
+    }
+    return new UfoSightings(lats, lngs);
+  }
+
+  /** @return sightings on whole and half degrees, so many of them lie on cell and box edges */
+  private static UfoSightings randomGridSightings(Random random, int size) {
+    double[] lats = new double[size];
+    double[] lngs = new double[size];
+    for (int i = 0; i < size; i++) {
+      lats[i] = -90 + random.nextInt(361) / 2.0;
+      lngs[i] = -180 + random.nextInt(721) / 2.0;
+    }
+    return new UfoSightings(lats, lngs);
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests that the UFO dataset the app ships loads into sightings that fit on the map. */
+@RunWith(JUnit4.class)
+public final class UfoDataTest {
+  private static final Path CSV = Paths.get("src/main/webapp/WEB-INF/ufo-data.csv");
+
+  private List<String> lines;
+  private double[][] columns;
+
+  @Before
+  public void setUp() throws IOException {
+    lines = new ArrayList<>();
+    for (String line : Files.readAllLines(CSV, StandardCharsets.US_ASCII)) {
+      if (!line.trim().isEmpty()) {
+        lines.add(line);
+      }
+    }
+    columns = CsvLoader.readColumns(MappedFiles.map(CSV), 2, 4);
+  }
+
+  @Test
+  public void everyLineIsOneSighting() {
+    Assert.assertEquals(lines.size(), columns[0].length);
+    for (int row = 0; row < lines.size(); row++) {
+      String[] cells = lines.get(row).split(",");
+      Assert.assertEquals(lines.get(row), 2, cells.length);
+      Assert.assertEquals(lines.get(row), Double.parseDouble(cells[0]), columns[0][row], 0);
+      Assert.assertEquals(lines.get(row), Double.parseDouble(cells[1]), columns[1][row], 0);
+    }
+  }
+
+  @Test
+  public void everySightingIsOnTheMap() {
+    UfoSightings sightings = new UfoSightings(columns[0], columns[1]);
+    for (int i = 0; i < sightings.size(); i++) {
+      Assert.assertTrue(lines.get(i), Math.abs(sightings.getLat(i)) <= 90);
+      Assert.assertTrue(lines.get(i), Math.abs(sightings.getLng(i)) <= 180);
+    }
+
+    SightingIndex index = new SightingIndex(sightings);
+    Assert.assertEquals(sightings.size(), index.count(new BoundingBox(-90, -180, 90, 180)));
+  }
+}
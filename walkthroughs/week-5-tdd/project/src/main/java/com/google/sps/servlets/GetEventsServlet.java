@@ -24,13 +24,12 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/get-events")
 public class GetEventsServlet extends HttpServlet {
+  private static final Gson GSON = new Gson();
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
-    String jsonResponse = gson.toJson(Events.events);
-
-    // Send the JSON back as the response
+    // Send the events back as JSON, written straight to the response
     response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    GSON.toJson(Events.events, response.getWriter());
   }
 }
@@ -29,23 +29,20 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/query")
 public class QueryServlet extends HttpServlet {
+  private static final Gson GSON = new Gson();
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
-
     // Convert the JSON to an instance of MeetingRequest.
-    MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    MeetingRequest meetingRequest = GSON.fromJson(request.getReader(), MeetingRequest.class);
 
     // Find the possible meeting times.
     FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
     Collection<TimeRange> answer =
         findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
 
-    // Convert the times to JSON
-    String jsonResponse = gson.toJson(answer);
-
-    // Send the JSON back as the response
+    // Send the times back as JSON, written straight to the response
     response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    GSON.toJson(answer, response.getWriter());
   }
 }